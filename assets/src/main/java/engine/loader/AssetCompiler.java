@@ -0,0 +1,136 @@
+package engine.loader;
+
+import game.map.loader.LevelCompiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Properties;
+
+/**
+ * Build step that compiles the authoring formats in the resources folder into the formats the game
+ * loads fastest, run by the assets module (assets/pom.xml) or by hand:
+ * <ul>
+ * <li>.ply meshes and .dae models under models/, see MeshCompiler</li>
+ * <li>.lvl levels under levels/, see LevelCompiler</li>
+ * </ul>
+ * Every compiled file is written next to its source with a "b" appended to the extension. The
+ * loaders use it when it is not older than the source and fall back to the source otherwise.
+ * <p>
+ * Builds are incremental: the hash of the content of every source is kept in a manifest, and a
+ * source is only compiled again when its hash changed or its compiled file is missing. A skipped
+ * file that is older than its source, e.g. after a checkout touched the source, is touched so the
+ * loaders keep using it. Shaders are still compiled by the driver when the game starts, OpenGL 3.3
+ * has no portable binary format for them.
+ */
+public class AssetCompiler {
+
+    /**
+     * Part of every hash, change it when a compiled format changes so all assets are compiled again
+     */
+    private static final String FORMAT_VERSION = "mesh 1, level 1";
+
+    private final File root;
+    private final Properties hashes = new Properties();
+    private int compiled, skipped, failed;
+
+    private AssetCompiler(File root) {
+        this.root = root;
+    }
+
+    /**
+     * @param args Resources folder (resources by default) and manifest file (target/asset-hashes.properties
+     *             by default)
+     */
+    public static void main(String[] args) throws Exception {
+        File root = new File(args.length > 0 ? args[0] : "resources");
+        File manifest = new File(args.length > 1 ? args[1] : "target/asset-hashes.properties");
+
+        AssetCompiler compiler = new AssetCompiler(root);
+        if (manifest.isFile()) {
+            try (InputStream in = new FileInputStream(manifest)) {
+                compiler.hashes.load(in);
+            }
+        }
+
+        compiler.compileFolder(new File(root, "models"));
+        compiler.compileFolder(new File(root, "levels"));
+
+        File folder = manifest.getAbsoluteFile().getParentFile();
+        if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+            throw new Exception("Cannot create " + folder);
+        }
+        try (OutputStream out = new FileOutputStream(manifest)) {
+            compiler.hashes.store(out, "Content hashes of the compiled assets");
+        }
+        System.out.println("Assets: " + compiler.compiled + " compiled, " + compiler.skipped + " up to date, "
+                + compiler.failed + " failed");
+    }
+
+    private void compileFolder(File folder) throws Exception {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                compileFolder(file);
+            } else if (name.endsWith(".ply") || name.endsWith(".dae") || name.endsWith(".lvl")) {
+                compileFile(file);
+            }
+        }
+    }
+
+    private void compileFile(File source) throws Exception {
+        File output = new File(source.getPath() + "b");
+        String key = root.toURI().relativize(source.toURI()).getPath();
+        String hash = hash(source);
+
+        if (output.isFile() && hash.equals(hashes.getProperty(key))) {
+            if (output.lastModified() < source.lastModified()) {
+                output.setLastModified(System.currentTimeMillis());
+            }
+            skipped++;
+            return;
+        }
+
+        try {
+            String name = source.getName();
+            String report;
+            if (name.endsWith(".lvl")) {
+                LevelCompiler.compile(source, output);
+                report = "";
+            } else {
+                float[] misses = name.endsWith(".ply")
+                        ? MeshCompiler.compilePly(source, output)
+                        : MeshCompiler.compileCollada(source, output);
+                report = String.format(", cache misses per triangle %.2f -> %.2f", misses[0], misses[1]);
+            }
+            hashes.setProperty(key, hash);
+            compiled++;
+            System.out.println(key + " (" + source.length() + " -> " + output.length() + " bytes" + report + ")");
+        } catch (Exception e) {
+            // Keep the loaders on the source instead of an old or partly written compiled file
+            output.delete();
+            hashes.remove(key);
+            failed++;
+            System.err.println("Skipped " + key + ": " + e.getMessage());
+        }
+    }
+
+    private static String hash(File file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update(FORMAT_VERSION.getBytes("UTF-8"));
+        digest.update(Files.readAllBytes(file.toPath()));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
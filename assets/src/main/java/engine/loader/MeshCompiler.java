@@ -0,0 +1,337 @@
+package engine.loader;
+
+import engine.loader.animatedModelLoader.colladaLoader.ColladaLoader;
+import engine.loader.animatedModelLoader.dataStructures.AnimatedModelData;
+import engine.loader.animatedModelLoader.dataStructures.JointData;
+import engine.loader.animatedModelLoader.dataStructures.MeshData;
+import engine.loader.animatedModelLoader.xmlParser.XmlParser;
+import engine.loader.data.PLYData;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Converts .ply meshes and .dae models into the binary formats read by BinaryMeshLoader.
+ * <p>
+ * On the way the mesh is optimized for rendering: vertices that are equal after quantization are
+ * merged, the triangles are reordered for the post-transform vertex cache (Tipsify, Sander et al.
+ * 2007) and the vertices are stored in the order the triangles first use them. The triangles keep
+ * their winding. Normals, colors and joint weights are quantized, positions are kept as floats so
+ * tiles still line up exactly.
+ */
+public class MeshCompiler {
+
+    /**
+     * Size of the vertex cache the triangles are ordered for, small enough to fit any hardware
+     */
+    private static final int CACHE_SIZE = 16;
+
+    /**
+     * Compile a .ply file
+     *
+     * @return Average number of vertex cache misses per triangle before and after the compilation
+     */
+    public static float[] compilePly(File input, File output) throws Exception {
+        PLYData data = PLYLoader.parseData(Files.readAllLines(input.toPath(), StandardCharsets.UTF_8));
+        int vertexCount = data.positions.length / 3;
+        int[] indices = data.indicies.clone();
+        float before = cacheMissRatio(indices);
+
+        int[] keys = new int[vertexCount * 9];
+        for (int v = 0; v < vertexCount; v++) {
+            for (int c = 0; c < 3; c++) {
+                keys[v * 9 + c] = Float.floatToIntBits(data.positions[v * 3 + c]);
+                keys[v * 9 + 3 + c] = quantizeNormal(data.normals[v * 3 + c]);
+                keys[v * 9 + 6 + c] = quantizeColor(data.vertexColors[v * 3 + c]);
+            }
+        }
+        int[] order = optimize(indices, vertexCount, keys, 9);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(BinaryMeshLoader.MESH_MAGIC);
+            out.writeShort(BinaryMeshLoader.VERSION);
+            writeVertices(out, order, indices, data.positions, data.normals, data.vertexColors);
+        }
+        return new float[]{before, cacheMissRatio(indices)};
+    }
+
+    /**
+     * Compile the model of a .dae file, the animations are not read from the file
+     *
+     * @return Average number of vertex cache misses per triangle before and after the compilation
+     */
+    public static float[] compileCollada(File input, File output) throws Exception {
+        AnimatedModelData model = ColladaLoader.loadColladaModel(
+                XmlParser.loadXmlFile(Files.newBufferedReader(input.toPath(), StandardCharsets.UTF_8)), 3);
+        MeshData mesh = model.getMeshData();
+        if (model.getJointsData().jointCount > 256) {
+            throw new Exception("More than 256 joints");
+        }
+        int vertexCount = mesh.getVertices().length / 3;
+        int[] indices = mesh.getIndices().clone();
+        float before = cacheMissRatio(indices);
+
+        int[] keys = new int[vertexCount * 15];
+        for (int v = 0; v < vertexCount; v++) {
+            for (int c = 0; c < 3; c++) {
+                keys[v * 15 + c] = Float.floatToIntBits(mesh.getVertices()[v * 3 + c]);
+                keys[v * 15 + 3 + c] = quantizeNormal(mesh.getNormals()[v * 3 + c]);
+                keys[v * 15 + 6 + c] = quantizeColor(mesh.getColors()[v * 3 + c]);
+                keys[v * 15 + 9 + c] = mesh.getJointIds()[v * 3 + c];
+                keys[v * 15 + 12 + c] = quantizeWeight(mesh.getVertexWeights()[v * 3 + c]);
+            }
+        }
+        int[] order = optimize(indices, vertexCount, keys, 15);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(BinaryMeshLoader.MODEL_MAGIC);
+            out.writeShort(BinaryMeshLoader.VERSION);
+            writeVertices(out, order, indices, mesh.getVertices(), mesh.getNormals(), mesh.getColors());
+            for (int v : order) {
+                for (int c = 0; c < 3; c++) {
+                    out.writeByte(mesh.getJointIds()[v * 3 + c]);
+                }
+            }
+            for (int v : order) {
+                for (int c = 0; c < 3; c++) {
+                    out.writeShort(quantizeWeight(mesh.getVertexWeights()[v * 3 + c]));
+                }
+            }
+            out.writeShort(model.getJointsData().jointCount);
+            writeJoint(out, model.getJointsData().headJoint);
+        }
+        return new float[]{before, cacheMissRatio(indices)};
+    }
+
+    private static void writeVertices(DataOutputStream out, int[] order, int[] indices,
+                                      float[] positions, float[] normals, float[] colors) throws IOException {
+        out.writeInt(order.length);
+        out.writeInt(indices.length);
+        for (int v : order) {
+            for (int c = 0; c < 3; c++) {
+                out.writeFloat(positions[v * 3 + c]);
+            }
+        }
+        for (int v : order) {
+            for (int c = 0; c < 3; c++) {
+                out.writeShort(quantizeNormal(normals[v * 3 + c]));
+            }
+        }
+        for (int v : order) {
+            for (int c = 0; c < 3; c++) {
+                out.writeByte(quantizeColor(colors[v * 3 + c]));
+            }
+        }
+        boolean shortIndices = order.length <= 0x10000;
+        for (int index : indices) {
+            if (shortIndices) {
+                out.writeShort(index);
+            } else {
+                out.writeInt(index);
+            }
+        }
+    }
+
+    private static void writeJoint(DataOutputStream out, JointData joint) throws IOException {
+        out.writeShort(joint.index);
+        byte[] name = joint.nameId.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(name.length);
+        out.write(name);
+        float[] transform = new float[16];
+        joint.bindLocalTransform.get(transform);
+        for (float value : transform) {
+            out.writeFloat(value);
+        }
+        out.writeShort(joint.children.size());
+        for (JointData child : joint.children) {
+            writeJoint(out, child);
+        }
+    }
+
+    /**
+     * Merge equal vertices, reorder the triangles for the vertex cache and number the vertices in the
+     * order they are first used
+     *
+     * @param indices     Triangle list, rewritten to the new vertex numbers
+     * @param vertexCount Number of vertices of the source
+     * @param keys        Per vertex the values that have to be equal to merge two vertices
+     * @param keySize     Number of values per vertex
+     * @return For each new vertex the vertex of the source it is taken from
+     */
+    static int[] optimize(int[] indices, int vertexCount, int[] keys, int keySize) {
+        // Merge vertices
+        HashMap<VertexKey, Integer> unique = new HashMap<>();
+        int[] merged = new int[vertexCount];
+        int[] source = new int[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            VertexKey key = new VertexKey(Arrays.copyOfRange(keys, v * keySize, (v + 1) * keySize));
+            Integer existing = unique.get(key);
+            if (existing == null) {
+                existing = unique.size();
+                unique.put(key, existing);
+                source[existing] = v;
+            }
+            merged[v] = existing;
+        }
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = merged[indices[i]];
+        }
+
+        int[] ordered = tipsify(indices, unique.size());
+
+        // Number the vertices in the order of first use, unused vertices are dropped
+        int[] number = new int[unique.size()];
+        Arrays.fill(number, -1);
+        int[] order = new int[unique.size()];
+        int count = 0;
+        for (int i = 0; i < ordered.length; i++) {
+            int v = ordered[i];
+            if (number[v] == -1) {
+                number[v] = count;
+                order[count++] = source[v];
+            }
+            indices[i] = number[v];
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    /**
+     * Reorder triangles so consecutive triangles share vertices that are still in the cache. Fans
+     * around one vertex at a time and picks the next vertex among the ones just used, preferring
+     * vertices that are still in the cache but have few triangles left.
+     */
+    private static int[] tipsify(int[] indices, int vertexCount) {
+        int[] live = new int[vertexCount];
+        for (int index : indices) {
+            live[index]++;
+        }
+        int[] offsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] = offsets[v] + live[v];
+        }
+        int[] adjacency = new int[indices.length];
+        int[] fill = Arrays.copyOf(offsets, vertexCount);
+        for (int i = 0; i < indices.length; i++) {
+            adjacency[fill[indices[i]]++] = i / 3;
+        }
+
+        int[] result = new int[indices.length];
+        int[] cacheTime = new int[vertexCount];
+        boolean[] emitted = new boolean[indices.length / 3];
+        int[] deadEnd = new int[indices.length];
+        int[] candidates = new int[indices.length];
+        int written = 0, deadEndSize = 0, cursor = 0;
+        int time = CACHE_SIZE + 1;
+
+        int fan = vertexCount > 0 ? 0 : -1;
+        while (fan >= 0) {
+            int candidateCount = 0;
+            for (int a = offsets[fan]; a < offsets[fan + 1]; a++) {
+                int triangle = adjacency[a];
+                if (emitted[triangle]) {
+                    continue;
+                }
+                emitted[triangle] = true;
+                for (int c = 0; c < 3; c++) {
+                    int v = indices[triangle * 3 + c];
+                    result[written++] = v;
+                    deadEnd[deadEndSize++] = v;
+                    candidates[candidateCount++] = v;
+                    live[v]--;
+                    if (time - cacheTime[v] > CACHE_SIZE) {
+                        cacheTime[v] = time++;
+                    }
+                }
+            }
+
+            // Continue at the candidate that stays in the cache longest while it is fanned around
+            fan = -1;
+            int best = -1;
+            for (int i = 0; i < candidateCount; i++) {
+                int v = candidates[i];
+                if (live[v] > 0) {
+                    int priority = time - cacheTime[v] + 2 * live[v] <= CACHE_SIZE ? time - cacheTime[v] : 0;
+                    if (priority > best) {
+                        best = priority;
+                        fan = v;
+                    }
+                }
+            }
+            // Dead end, go back to a recently used vertex or else to the next one with triangles left
+            while (fan == -1 && deadEndSize > 0) {
+                int v = deadEnd[--deadEndSize];
+                if (live[v] > 0) {
+                    fan = v;
+                }
+            }
+            while (fan == -1 && cursor < vertexCount) {
+                if (live[cursor] > 0) {
+                    fan = cursor;
+                }
+                cursor++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Average number of misses per triangle of a FIFO vertex cache of CACHE_SIZE entries
+     */
+    static float cacheMissRatio(int[] indices) {
+        if (indices.length == 0) {
+            return 0;
+        }
+        HashMap<Integer, Integer> cachedAt = new HashMap<>();
+        int misses = 0;
+        for (int index : indices) {
+            Integer at = cachedAt.get(index);
+            if (at == null || misses - at >= CACHE_SIZE) {
+                cachedAt.put(index, misses);
+                misses++;
+            }
+        }
+        return misses / (indices.length / 3f);
+    }
+
+    static int quantizeNormal(float value) {
+        return Math.round(Math.max(-1, Math.min(1, value)) * BinaryMeshLoader.NORMAL_SCALE);
+    }
+
+    static int quantizeColor(float value) {
+        return Math.round(Math.max(0, Math.min(1, value)) * BinaryMeshLoader.COLOR_SCALE);
+    }
+
+    static int quantizeWeight(float value) {
+        return Math.round(Math.max(0, Math.min(1, value)) * BinaryMeshLoader.WEIGHT_SCALE);
+    }
+
+    /**
+     * Values of a vertex, as key to find equal vertices
+     */
+    private static class VertexKey {
+        private final int[] values;
+        private final int hash;
+
+        private VertexKey(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof VertexKey && Arrays.equals(values, ((VertexKey) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
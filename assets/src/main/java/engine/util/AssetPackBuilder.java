@@ -0,0 +1,156 @@
+package engine.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the resources folder into an asset pack, see AssetPack for the format.
+ * <p>
+ * Resources are compressed when that makes them at least a quarter smaller, apart from the compiled
+ * formats the loaders read straight from the mapping. A compiled file that is older than its source
+ * is left out, like the loaders would ignore it, so the pack never holds a stale compiled file.
+ */
+public class AssetPackBuilder {
+
+    /**
+     * Extensions of files that are never compressed, so they can be used without copying
+     */
+    private static final String[] MAPPED = {".lvlb", ".plyb", ".daeb"};
+
+    /**
+     * @param args Resources folder (resources by default) and pack to write (the pack AssetPack
+     *             opens by default)
+     */
+    public static void main(String[] args) throws IOException {
+        File root = new File(args.length > 0 ? args[0] : "resources");
+        File output = new File(args.length > 1 ? args[1] : AssetPack.DEFAULT_FILE);
+
+        List<String> paths = new ArrayList<>();
+        collect(root, root, paths);
+        Collections.sort(paths);
+
+        List<byte[]> stored = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        List<Boolean> deflated = new ArrayList<>();
+        long total = 0;
+        for (String path : paths) {
+            byte[] content = Files.readAllBytes(new File(root, path).toPath());
+            byte[] compressed = isMapped(path) ? null : deflate(content);
+            boolean compress = compressed != null && compressed.length <= content.length * 3 / 4;
+            stored.add(compress ? compressed : content);
+            lengths.add(content.length);
+            deflated.add(compress);
+            total += content.length;
+        }
+
+        // Lay out the data, offsets relative to the start of the data which follows the index
+        int[] offsets = new int[paths.size()];
+        int offset = 0;
+        for (int i = 0; i < paths.size(); i++) {
+            offset = align(offset);
+            offsets[i] = offset;
+            offset += stored.get(i).length;
+        }
+        int indexSize = 10;
+        for (String path : paths) {
+            indexSize += 2 + path.getBytes(StandardCharsets.UTF_8).length + 13;
+        }
+        int dataStart = align(indexSize);
+
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream index = new DataOutputStream(indexBytes);
+        index.writeInt(AssetPack.MAGIC);
+        index.writeShort(AssetPack.VERSION);
+        index.writeInt(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            byte[] path = paths.get(i).getBytes(StandardCharsets.UTF_8);
+            index.writeShort(path.length);
+            index.write(path);
+            index.writeInt(dataStart + offsets[i]);
+            index.writeInt(lengths.get(i));
+            index.writeInt(stored.get(i).length);
+            index.writeByte(deflated.get(i) ? AssetPack.DEFLATED : AssetPack.STORED);
+        }
+
+        File folder = output.getAbsoluteFile().getParentFile();
+        if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Cannot create " + folder);
+        }
+        try (RandomAccessFile out = new RandomAccessFile(output, "rw")) {
+            out.setLength(0);
+            out.write(indexBytes.toByteArray());
+            for (int i = 0; i < paths.size(); i++) {
+                out.seek(dataStart + offsets[i]);
+                out.write(stored.get(i));
+            }
+        }
+        System.out.println(output + ": " + paths.size() + " files, " + total + " -> " + output.length() + " bytes");
+    }
+
+    private static void collect(File root, File folder, List<String> paths) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(".")) {
+                continue;
+            }
+            if (file.isDirectory()) {
+                collect(root, file, paths);
+            } else if (!isStale(file)) {
+                paths.add(root.toURI().relativize(file.toURI()).getPath());
+            }
+        }
+    }
+
+    /**
+     * Whether the file is a compiled file that is older than its source
+     */
+    private static boolean isStale(File file) {
+        if (!isMapped(file.getName())) {
+            return false;
+        }
+        String path = file.getPath();
+        File source = new File(path.substring(0, path.length() - 1));
+        return source.isFile() && file.lastModified() < source.lastModified();
+    }
+
+    private static boolean isMapped(String path) {
+        for (String extension : MAPPED) {
+            if (path.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] deflate(byte[] content) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int align(int offset) {
+        return (offset + AssetPack.ALIGNMENT - 1) / AssetPack.ALIGNMENT * AssetPack.ALIGNMENT;
+    }
+}
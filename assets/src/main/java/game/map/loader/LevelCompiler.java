@@ -0,0 +1,133 @@
+package game.map.loader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Converts text levels into the binary format read by BinaryMapLoader.
+ * <p>
+ * Every .lvl file in the given folders (resources/levels by default) is compiled into a .lvlb file
+ * next to it, which MapFileLoader then uses instead of the text. The assets module compiles the
+ * levels that changed through AssetCompiler, it can also be run by hand from the project folder.
+ * MapFileLoader falls back to the text while the compiled file is older.
+ */
+public class LevelCompiler {
+
+    public static void main(String[] args) throws IOException {
+        String[] folders = args.length > 0 ? args : new String[]{"resources/levels"};
+        for (String folder : folders) {
+            compileFolder(new File(folder));
+        }
+    }
+
+    private static void compileFolder(File folder) throws IOException {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                compileFolder(file);
+            } else if (file.getName().endsWith(".lvl")) {
+                File output = new File(file.getPath() + "b");
+                try {
+                    compile(file, output);
+                    System.out.println(file + " -> " + output + " (" + file.length() + " -> " + output.length() + " bytes)");
+                } catch (Exception e) {
+                    System.err.println("Skipped " + file + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Compile a single text level, following the same rules as the text loader of MapFileLoader
+     */
+    public static void compile(File input, File output) throws Exception {
+        List<String> lineList = Files.readAllLines(input.toPath(), StandardCharsets.UTF_8);
+        int index = 0;
+
+        String[] sizeArray = lineList.get(index++).split(" ");
+        if (sizeArray.length != 2) {
+            throw new Exception("Level file is not defined correctly");
+        }
+        int width = Integer.parseInt(sizeArray[0]);
+        int height = Integer.parseInt(sizeArray[1]);
+
+        LinkedHashMap<String, Integer> meshNames = new LinkedHashMap<>();
+        LinkedHashMap<String, List<Integer>> tags = new LinkedHashMap<>();
+        List<int[]> tiles = new ArrayList<>();
+
+        for (int x = 0; x < height; x++) {
+            for (int y = 0; y < width; y++) {
+                String[] tileProperties = lineList.get(index++).split(" ");
+                if (tileProperties.length != 3 && tileProperties.length != 4) {
+                    throw new Exception("Level file is not defined correctly");
+                }
+                String meshName = tileProperties[0];
+                if (meshName.equals("air") || meshName.equals("empty")) {
+                    continue;
+                }
+                Integer mesh = meshNames.get(meshName);
+                if (mesh == null) {
+                    mesh = meshNames.size();
+                    meshNames.put(meshName, mesh);
+                }
+                int rotationIndex = Integer.parseInt(tileProperties[1]);
+                int solid = Integer.parseInt(tileProperties[2]) == 1 ? 1 : 0;
+                // Tiles are stored at [y][x] of the text, see MapFileLoader
+                tiles.add(new int[]{y, x, mesh, rotationIndex, solid});
+
+                if (tileProperties.length == 4) {
+                    for (String tag : tileProperties[3].split(":")) {
+                        tags.computeIfAbsent(tag, t -> new ArrayList<>()).add(y * height + x);
+                    }
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(BinaryMapLoader.MAGIC);
+            out.writeShort(BinaryMapLoader.VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+
+            out.writeShort(meshNames.size());
+            for (String name : meshNames.keySet()) {
+                writeString(out, name);
+            }
+
+            out.writeInt(tiles.size());
+            for (int[] tile : tiles) {
+                out.writeShort(tile[0]);
+                out.writeShort(tile[1]);
+                out.writeShort(tile[2]);
+                out.writeByte(tile[3]);
+                out.writeByte(tile[4]);
+            }
+
+            out.writeShort(tags.size());
+            for (java.util.Map.Entry<String, List<Integer>> tag : tags.entrySet()) {
+                writeString(out, tag.getKey());
+                out.writeInt(tag.getValue().size());
+                for (int tileIndex : tag.getValue()) {
+                    out.writeInt(tileIndex);
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
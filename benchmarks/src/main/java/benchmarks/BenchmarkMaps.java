@@ -0,0 +1,214 @@
+package benchmarks;
+
+import game.map.Map;
+import game.map.loader.MapFileLoader;
+import game.map.tile.Tile;
+import org.joml.Vector2i;
+import pathfinding.Landmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Maps to run the benchmarks on: the level files of the game, loaded without meshes, and generated
+ * mazes, open maps and random walls.
+ * <p>
+ * Names are "level:name" for resources/levels/name.lvl, "maze-size" for a maze with some loops,
+ * "open-size" for an open map with scattered obstacles and "walls-size-percentage" for a map of
+ * which every tile is solid with the given chance. Generated maps always look the same for the
+ * same name.
+ */
+final class BenchmarkMaps {
+
+    private BenchmarkMaps() {
+    }
+
+    static Map load(String name) throws Exception {
+        if (name.startsWith("level:")) {
+            MapFileLoader loader = new MapFileLoader("/levels/" + name.substring("level:".length()) + ".lvl");
+            loader.setLoadMeshes(false);
+            return loader.load();
+        }
+        String[] parts = name.split("-");
+        String kind = parts[0];
+        int size = Integer.parseInt(parts[1]);
+        boolean[][] solid;
+        if (kind.equals("maze")) {
+            solid = maze(size, new Random(size));
+        } else if (kind.equals("open")) {
+            solid = open(size, new Random(size));
+        } else if (kind.equals("walls")) {
+            int percentage = Integer.parseInt(parts[2]);
+            solid = walls(size, percentage, new Random(size * 100L + percentage));
+        } else {
+            throw new IllegalArgumentException("Unknown map " + name);
+        }
+
+        Tile[][] tiles = new Tile[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                tiles[x][y] = new Tile(new Vector2i(x, y), null, solid[x][y]);
+            }
+        }
+        Map map = new Map(tiles);
+        // The level loader computes landmarks too, keep the generated maps comparable
+        map.setLandmarks(new Landmarks(map));
+        return map;
+    }
+
+    /**
+     * Pick start and target pairs that are connected, so every algorithm does a full search
+     *
+     * @return starts followed by targets
+     */
+    static Tile[][] pairs(Map map, int count, long seed) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int[] component = components(map);
+        List<Tile> walkable = new ArrayList<>();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (component[x * height + y] >= 0) {
+                    walkable.add(map.getTile(x, y));
+                }
+            }
+        }
+        if (walkable.isEmpty()) {
+            throw new IllegalStateException("Map has no walkable tiles");
+        }
+
+        Random random = new Random(seed);
+        Tile[] starts = new Tile[count];
+        Tile[] targets = new Tile[count];
+        for (int i = 0; i < count; i++) {
+            Tile start = walkable.get(random.nextInt(walkable.size()));
+            Tile target;
+            do {
+                target = walkable.get(random.nextInt(walkable.size()));
+            } while (component[index(target, height)] != component[index(start, height)]);
+            starts[i] = start;
+            targets[i] = target;
+        }
+        return new Tile[][]{starts, targets};
+    }
+
+    /**
+     * Recursive backtracker on the odd tiles, after which a few walls are knocked out so there is
+     * more than one way between most tiles
+     */
+    private static boolean[][] maze(int size, Random random) {
+        boolean[][] solid = new boolean[size][size];
+        for (boolean[] row : solid) {
+            Arrays.fill(row, true);
+        }
+        int cells = (size - 1) / 2;
+        int[] stack = new int[cells * cells];
+        int top = 0;
+        stack[top++] = 0;
+        solid[1][1] = false;
+        int[] directions = new int[4];
+        while (top > 0) {
+            int cell = stack[top - 1];
+            int cx = cell / cells, cy = cell % cells;
+            int options = 0;
+            if (cx > 0 && solid[2 * cx - 1][2 * cy + 1]) directions[options++] = 0;
+            if (cx < cells - 1 && solid[2 * cx + 3][2 * cy + 1]) directions[options++] = 1;
+            if (cy > 0 && solid[2 * cx + 1][2 * cy - 1]) directions[options++] = 2;
+            if (cy < cells - 1 && solid[2 * cx + 1][2 * cy + 3]) directions[options++] = 3;
+            if (options == 0) {
+                top--;
+                continue;
+            }
+            int direction = directions[random.nextInt(options)];
+            int nx = cx + (direction == 0 ? -1 : direction == 1 ? 1 : 0);
+            int ny = cy + (direction == 2 ? -1 : direction == 3 ? 1 : 0);
+            solid[cx + nx + 1][cy + ny + 1] = false;
+            solid[2 * nx + 1][2 * ny + 1] = false;
+            stack[top++] = nx * cells + ny;
+        }
+        for (int i = 0; i < cells * cells / 10; i++) {
+            int x = 1 + random.nextInt(size - 2);
+            int y = 1 + random.nextInt(size - 2);
+            // Only walls between two corridors, not the pillars on even coordinates
+            if ((x + y) % 2 == 1) {
+                solid[x][y] = false;
+            }
+        }
+        return solid;
+    }
+
+    private static boolean[][] open(int size, Random random) {
+        boolean[][] solid = new boolean[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                boolean border = x == 0 || y == 0 || x == size - 1 || y == size - 1;
+                solid[x][y] = border || random.nextInt(10) == 0;
+            }
+        }
+        return solid;
+    }
+
+    private static boolean[][] walls(int size, int percentage, Random random) {
+        boolean[][] solid = new boolean[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                solid[x][y] = random.nextInt(100) < percentage;
+            }
+        }
+        return solid;
+    }
+
+    /**
+     * @return Connected component of every walkable tile, -1 for the others
+     */
+    private static int[] components(Map map) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int[] component = new int[width * height];
+        Arrays.fill(component, -2);
+        int[] queue = new int[width * height];
+        int next = 0;
+        for (int origin = 0; origin < component.length; origin++) {
+            if (component[origin] != -2) {
+                continue;
+            }
+            if (!isWalkable(map, origin, height)) {
+                component[origin] = -1;
+                continue;
+            }
+            int head = 0, tail = 0;
+            queue[tail++] = origin;
+            component[origin] = next;
+            while (head < tail) {
+                int current = queue[head++];
+                int x = current / height;
+                int y = current % height;
+                int[] neighbours = {
+                        x > 0 ? current - height : -1,
+                        x < width - 1 ? current + height : -1,
+                        y > 0 ? current - 1 : -1,
+                        y < height - 1 ? current + 1 : -1
+                };
+                for (int neighbour : neighbours) {
+                    if (neighbour >= 0 && component[neighbour] == -2 && isWalkable(map, neighbour, height)) {
+                        component[neighbour] = next;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+            next++;
+        }
+        return component;
+    }
+
+    private static boolean isWalkable(Map map, int index, int height) {
+        Tile tile = map.getTile(index / height, index % height);
+        return tile != null && !tile.isSolid();
+    }
+
+    private static int index(Tile tile, int height) {
+        return tile.getPosition().x * height + tile.getPosition().y;
+    }
+}
@@ -0,0 +1,154 @@
+package benchmarks;
+
+import game.map.Map;
+import game.map.tile.Tile;
+import pathfinding.DStarLite;
+import pathfinding.IndexedAStar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares D* Lite with A* from scratch for a mob that chases a moving target, like SimpleMob does.
+ * <p>
+ * Every step the target walks to a neighbouring tile, mostly keeping its direction, the mob plans
+ * a path to it and walks one tile along that path, except every fourth step. Both algorithms see the same walk of the target
+ * and each mob follows the paths of its own algorithm. Reported are the tiles expanded and the time
+ * per replan.
+ * <p>
+ * Not a JMH benchmark, it is packaged in the benchmarks jar together with the levels. Run it from
+ * the benchmarks folder with java -cp target/benchmarks.jar benchmarks.ChaseComparison, the maps
+ * can be passed as arguments, see BenchmarkMaps for their names.
+ */
+public class ChaseComparison {
+
+    private static final int CHASES = 100;
+    private static final int STEPS = 200;
+
+    private static final String[] DEFAULT_MAPS = {
+            "level:prisonEscapeLevel",
+            "level:murder_mystery_level",
+            "level:mob_escape_level",
+            "level:main_room_level",
+            "level:mob_run_fast",
+            "level:tutorial_drawing_level",
+            "level:titlescreen",
+            "level:darkness_level",
+            "walls-80-10",
+            "walls-80-25",
+            "walls-80-35",
+            "maze-64",
+            "open-64"
+    };
+
+    private interface Planner {
+        boolean computePath(Tile start, Tile target, Map map, List<Tile> path);
+
+        int getExpandedCount();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] maps = args.length > 0 ? args : DEFAULT_MAPS;
+        System.out.printf("%-32s %14s %14s %10s %10s %7s%n",
+                "map", "A* expanded", "D* expanded", "A* us", "D* us", "ratio");
+        for (String name : maps) {
+            Map map = BenchmarkMaps.load(name);
+            Tile[][] pairs = BenchmarkMaps.pairs(map, CHASES, 0);
+            // Once to warm up, the second run is reported
+            chase(map, pairs, true);
+            chase(map, pairs, false);
+            long[] aStar = chase(map, pairs, true);
+            long[] dStar = chase(map, pairs, false);
+            double replans = CHASES * (double) STEPS;
+            System.out.printf("%-32s %14.1f %14.1f %10.2f %10.2f %7.2f%n", name,
+                    aStar[0] / replans, dStar[0] / replans,
+                    aStar[1] / replans / 1000.0, dStar[1] / replans / 1000.0,
+                    aStar[0] / (double) Math.max(1, dStar[0]));
+        }
+    }
+
+    /**
+     * @return Tiles expanded and nanoseconds spent in all replans
+     */
+    private static long[] chase(Map map, Tile[][] pairs, boolean aStar) {
+        long expanded = 0, time = 0;
+        List<Tile> path = new ArrayList<>();
+        for (int i = 0; i < CHASES; i++) {
+            Planner planner = aStar ? aStar() : dStar();
+            Random random = new Random(i);
+            Tile mob = pairs[0][i];
+            Tile target = pairs[1][i];
+            int direction = random.nextInt(4);
+            for (int step = 0; step < STEPS; step++) {
+                // Keep walking the same way most of the time, like a player does
+                if (random.nextInt(4) == 0) {
+                    direction = random.nextInt(4);
+                }
+                target = walk(map, target, direction, random);
+
+                long begin = System.nanoTime();
+                planner.computePath(mob, target, map, path);
+                time += System.nanoTime() - begin;
+                expanded += planner.getExpandedCount();
+
+                // The snakes walk 2.2 to 2.5 tiles a second and the player 3, so the mob is a bit slower
+                if (path.size() > 1 && step % 4 != 3) {
+                    mob = path.get(1);
+                }
+            }
+        }
+        return new long[]{expanded, time};
+    }
+
+    /**
+     * Move one tile in the given direction, or in a random direction when that tile is not walkable
+     */
+    private static Tile walk(Map map, Tile tile, int direction, Random random) {
+        int[] dx = {1, -1, 0, 0};
+        int[] dy = {0, 0, 1, -1};
+        for (int attempt = 0; attempt < 5; attempt++) {
+            int d = attempt == 0 ? direction : random.nextInt(4);
+            int x = tile.getPosition().x + dx[d];
+            int y = tile.getPosition().y + dy[d];
+            if (x < 0 || y < 0 || x >= map.getWidth() || y >= map.getHeight()) {
+                continue;
+            }
+            Tile next = map.getTile(x, y);
+            if (next != null && !next.isSolid()) {
+                return next;
+            }
+        }
+        return tile;
+    }
+
+    private static Planner aStar() {
+        IndexedAStar aStar = new IndexedAStar();
+        return new Planner() {
+            @Override
+            public boolean computePath(Tile start, Tile target, Map map, List<Tile> path) {
+                return aStar.computePath(start, target, map, path);
+            }
+
+            @Override
+            public int getExpandedCount() {
+                return aStar.getExpandedCount();
+            }
+        };
+    }
+
+    private static Planner dStar() {
+        DStarLite dStar = new DStarLite();
+        return new Planner() {
+            @Override
+            public boolean computePath(Tile start, Tile target, Map map, List<Tile> path) {
+                return dStar.computePath(start, target, map, path);
+            }
+
+            @Override
+            public int getExpandedCount() {
+                return dStar.getExpandedCount();
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import game.map.Map;
+import game.map.loader.MapFileLoader;
+import game.map.tile.Tile;
+import pathfinding.IndexedAStar;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the tiles A* expands with the landmark heuristic against plain Manhattan distance on
+ * every level file.
+ * <p>
+ * Not a JMH benchmark, it is packaged in the benchmarks jar together with the levels. Run it from
+ * the benchmarks folder with java -cp target/benchmarks.jar benchmarks.LandmarkComparison, the
+ * level folder can be passed as the first argument.
+ */
+public class LandmarkComparison {
+
+    private static final int QUERIES = 2000;
+
+    public static void main(String[] args) throws Exception {
+        File folder = new File(args.length > 0 ? args[0] : "../resources/levels");
+        List<String> levels = new ArrayList<>();
+        findLevels(folder, "/levels", levels);
+
+        System.out.printf("%-48s %8s %12s %12s %7s%n", "level", "tiles", "manhattan", "landmarks", "ratio");
+        for (String level : levels) {
+            MapFileLoader loader = new MapFileLoader(level);
+            loader.setLoadMeshes(false);
+            Map map = loader.load();
+            compare(level, map);
+        }
+    }
+
+    private static void compare(String level, Map map) {
+        List<Tile> walkable = new ArrayList<>();
+        for (int x = 0; x < map.getWidth(); x++) {
+            for (int y = 0; y < map.getHeight(); y++) {
+                Tile tile = map.getTile(x, y);
+                if (tile != null && !tile.isSolid()) {
+                    walkable.add(tile);
+                }
+            }
+        }
+        if (walkable.size() < 2) {
+            System.out.printf("%-48s %8d %12s %12s %7s%n", level, walkable.size(), "-", "-", "-");
+            return;
+        }
+
+        IndexedAStar manhattan = new IndexedAStar();
+        manhattan.setUseLandmarks(false);
+        IndexedAStar landmarks = new IndexedAStar();
+        List<Tile> path = new ArrayList<>();
+        List<Tile> landmarkPath = new ArrayList<>();
+        long manhattanExpanded = 0, landmarkExpanded = 0;
+
+        Random random = new Random(0);
+        for (int i = 0; i < QUERIES; i++) {
+            Tile start = walkable.get(random.nextInt(walkable.size()));
+            Tile target = walkable.get(random.nextInt(walkable.size()));
+            boolean found = manhattan.computePath(start, target, map, path);
+            landmarks.computePath(start, target, map, landmarkPath);
+            manhattanExpanded += manhattan.getExpandedCount();
+            landmarkExpanded += landmarks.getExpandedCount();
+            if (found && path.size() != landmarkPath.size()) {
+                throw new IllegalStateException("Path lengths differ in " + level + " from " + start.getPosition()
+                        + " to " + target.getPosition());
+            }
+        }
+        System.out.printf("%-48s %8d %12.1f %12.1f %7.2f%n", level, walkable.size(),
+                manhattanExpanded / (double) QUERIES, landmarkExpanded / (double) QUERIES,
+                manhattanExpanded / (double) Math.max(1, landmarkExpanded));
+    }
+
+    private static void findLevels(File folder, String resourcePath, List<String> levels) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                findLevels(file, resourcePath + "/" + file.getName(), levels);
+            } else if (file.getName().endsWith(".lvl")) {
+                levels.add(resourcePath + "/" + file.getName());
+            }
+        }
+    }
+}
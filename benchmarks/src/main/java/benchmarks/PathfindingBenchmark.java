@@ -0,0 +1,150 @@
+package benchmarks;
+
+import game.map.Map;
+import game.map.tile.Tile;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pathfinding.A_star;
+import pathfinding.DStarLite;
+import pathfinding.FlowField;
+import pathfinding.HierarchicalPathfinding;
+import pathfinding.IndexedAStar;
+import pathfinding.JumpPointSearch;
+import pathfinding.Pathfinding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path queries per second of every Pathfinding implementation on every map.
+ * <p>
+ * Every invocation runs the next of a fixed list of connected start and target pairs, so all
+ * algorithms answer exactly the same queries. Preprocessing (jump tables, clusters, landmarks)
+ * happens before the measurement. The expansions counter adds up the tiles or nodes expanded by
+ * the algorithms that count them, divide it by the operations to get expansions per query.
+ * Allocation rates are reported with -prof gc.
+ * <p>
+ * A_star is left out by default, it takes minutes per query on the large generated maps. Run it
+ * with -p algorithm=A_star -p map=level:prisonEscapeLevel.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class PathfindingBenchmark {
+
+    private static final int PAIRS = 256;
+
+    @Param({
+            "level:prisonEscapeLevel",
+            "level:murder_mystery_level",
+            "level:mob_escape_level",
+            "level:TunnelLevel",
+            "level:main_room_level",
+            "level:mob_run_fast",
+            "level:hdr_test_level",
+            "level:level",
+            "level:tutorial_drawing_level",
+            "level:titlescreen",
+            "level:treasure_room_level",
+            "level:darkness_level",
+            "level:validation/simple_block_setup",
+            "level:validation/simple_block_setup_flat",
+            "maze-64",
+            "maze-256",
+            "maze-1024",
+            "open-64",
+            "open-256",
+            "open-1024"
+    })
+    public String map;
+
+    @Param({"IndexedAStar", "JumpPointSearch", "HierarchicalPathfinding", "FlowField", "DStarLite"})
+    public String algorithm;
+
+    private Map loaded;
+    private Tile[] starts, targets;
+    private Pathfinding pathfinder;
+    private final List<Tile> path = new ArrayList<>();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        loaded = BenchmarkMaps.load(map);
+        Tile[][] pairs = BenchmarkMaps.pairs(loaded, PAIRS, 42);
+        starts = pairs[0];
+        targets = pairs[1];
+        pathfinder = create(algorithm);
+        // Lets the algorithms build their tables for this map
+        pathfinder.computePath(starts[0], targets[0], loaded, path);
+    }
+
+    @Benchmark
+    public boolean query(Expansions expansions) {
+        int i = next++ & (PAIRS - 1);
+        boolean found = pathfinder.computePath(starts[i], targets[i], loaded, path);
+        expansions.expansions += expandedCount(pathfinder);
+        return found;
+    }
+
+    /**
+     * Reported next to the throughput, as a total per iteration
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Expansions {
+
+        public long expansions;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            expansions = 0;
+        }
+    }
+
+    private static Pathfinding create(String algorithm) {
+        switch (algorithm) {
+            case "IndexedAStar":
+                return new IndexedAStar();
+            case "JumpPointSearch":
+                return new JumpPointSearch();
+            case "HierarchicalPathfinding":
+                return new HierarchicalPathfinding();
+            case "FlowField":
+                return new FlowField();
+            case "DStarLite":
+                return new DStarLite();
+            case "A_star":
+                return new A_star();
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+        }
+    }
+
+    private static int expandedCount(Pathfinding pathfinder) {
+        if (pathfinder instanceof IndexedAStar) {
+            return ((IndexedAStar) pathfinder).getExpandedCount();
+        } else if (pathfinder instanceof JumpPointSearch) {
+            return ((JumpPointSearch) pathfinder).getExpandedCount();
+        } else if (pathfinder instanceof HierarchicalPathfinding) {
+            return ((HierarchicalPathfinding) pathfinder).getExpandedCount();
+        } else if (pathfinder instanceof DStarLite) {
+            return ((DStarLite) pathfinder).getExpandedCount();
+        }
+        return 0;
+    }
+}
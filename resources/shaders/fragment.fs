@@ -2,6 +2,11 @@
 
 const int MAX_POINT_LIGHTS = 10;
 const int MAX_SPOT_LIGHTS = 10;
+const int MAX_CASCADES = 4;
+// Shadow filters, see ShadowFilter.java
+const int FILTER_HARDWARE = 0;
+const int FILTER_POISSON_4 = 1;
+const int FILTER_POISSON_16 = 2;
 const bool shadowEnable = true;
 
 out vec4 fragColor;
@@ -28,8 +33,9 @@ struct PointLight
     Attenuation att;
     vec2 plane;
     //Shadow maps
-    samplerCube staticShadowMap;
-    samplerCube dynamicShadowMap;
+    samplerCubeShadow staticShadowMap;
+    samplerCubeShadow dynamicShadowMap;
+    int shadowFilter;
 };
 
 struct SpotLight
@@ -45,8 +51,9 @@ struct SpotLight
     //Matrix
     mat4 lightSpaceMatrix;
     //Shadow maps
-    sampler2D staticShadowMap;
-    sampler2D dynamicShadowMap;
+    sampler2DShadow staticShadowMap;
+    sampler2DShadow dynamicShadowMap;
+    int shadowFilter;
 };
 
 struct DirectionalLight
@@ -54,11 +61,13 @@ struct DirectionalLight
     vec3 colour;
     vec3 direction;
     float intensity;
-    mat4 lightSpaceMatrix;
-    // Shadow Maps
+    // Shadow Maps, one layer per cascade
     bool shadowEnable;
-    sampler2D staticShadowMap;
-    sampler2D dynamicShadowMap;
+    int shadowFilter;
+    int cascadeCount;
+    float cascadeSplits[MAX_CASCADES];
+    mat4 cascadeMatrices[MAX_CASCADES];
+    sampler2DArrayShadow shadowMap;
 };
 
 struct Material
@@ -185,40 +194,135 @@ vec4 calcSpotLight(SpotLight light, vec3 position, vec3 normal)
     return light_colour;
 }
 
-float calcShadow(vec3 position, vec3 light_position, samplerCube shadowMap, vec2 plane)
+// Poisson disks, every lookup is filtered by the hardware as well
+const vec2 poissonDisk4[4] = vec2[](
+    vec2(-0.94201624, -0.39906216), vec2(0.94558609, -0.76890725),
+    vec2(-0.09418410, -0.92938870), vec2(0.34495938, 0.29387760)
+);
+const vec2 poissonDisk16[16] = vec2[](
+    vec2(-0.94201624, -0.39906216), vec2(0.94558609, -0.76890725),
+    vec2(-0.09418410, -0.92938870), vec2(0.34495938, 0.29387760),
+    vec2(-0.91588581, 0.45771432), vec2(-0.81544232, -0.87912464),
+    vec2(-0.38277543, 0.27676845), vec2(0.97484398, 0.75648379),
+    vec2(0.44323325, -0.97511554), vec2(0.53742981, -0.47373420),
+    vec2(-0.26496911, -0.41893023), vec2(0.79197514, 0.19090188),
+    vec2(-0.24188840, 0.99706507), vec2(-0.81409955, 0.91437590),
+    vec2(0.19984126, 0.78641367), vec2(0.14383161, -0.14100790)
+);
+
+// Rotates the Poisson disk per pixel, trading banding for noise
+mat2 poissonRotation()
+{
+    float angle = 6.2831853 * fract(52.9829189 * fract(dot(gl_FragCoord.xy, vec2(0.06711056, 0.00583715))));
+    float s = sin(angle);
+    float c = cos(angle);
+    return mat2(c, s, -s, c);
+}
+
+int poissonTaps(int kernel)
+{
+    return kernel == FILTER_POISSON_16 ? 16 : 4;
+}
+
+vec2 poissonOffset(int kernel, int i, mat2 rotation)
+{
+    return rotation * (kernel == FILTER_POISSON_16 ? poissonDisk16[i] : poissonDisk4[i & 3]);
+}
+
+float calcShadow(vec3 position, vec3 light_position, samplerCubeShadow shadowMap, vec2 plane, int kernel)
 {
     vec3 fragToLight = position - light_position;
-    float closestDepth = texture(shadowMap, fragToLight).r;
-    closestDepth *= plane.y;
     float currentDepth = length(fragToLight);
     float bias = 0.09;
-    float shadow = currentDepth -  bias > closestDepth ? 0.0 : 1.0;
+    // Depth is stored as distance divided by the far plane
+    float reference = (currentDepth - bias) / plane.y;
 
-    return shadow;
+    if (kernel == FILTER_HARDWARE) {
+        return texture(shadowMap, vec4(fragToLight, reference));
+    }
+
+    // Spread the lookups over a disk perpendicular to the direction of the light
+    vec3 direction = fragToLight / currentDepth;
+    vec3 up = abs(direction.y) < 0.99 ? vec3(0, 1, 0) : vec3(1, 0, 0);
+    vec3 tangent = normalize(cross(up, direction));
+    vec3 bitangent = cross(direction, tangent);
+    // A texel covers 2 / resolution of a face at unit distance
+    float radius = (kernel == FILTER_POISSON_16 ? 2.5 : 1.5) * 2.0 / textureSize(shadowMap, 0).x;
+
+    mat2 rotation = poissonRotation();
+    int taps = poissonTaps(kernel);
+    float shadow = 0.0;
+    for (int i = 0; i < taps; ++i)
+    {
+        vec2 offset = poissonOffset(kernel, i, rotation) * radius;
+        vec3 sampleDirection = direction + tangent * offset.x + bitangent * offset.y;
+        shadow += texture(shadowMap, vec4(sampleDirection, reference));
+    }
+    return shadow / float(taps);
 }
 
-float calcShadow2D(mat4 matrix, vec3 position, sampler2D shadowMap)
+float calcShadow2D(mat4 matrix, vec3 position, sampler2DShadow shadowMap, int kernel)
 {
     vec4 coord = matrix * vec4(position, 1.0);
     vec3 projCoords = coord.xyz / coord.w;
     projCoords = projCoords * 0.5 + 0.5;
 
-    float currentDepth = projCoords.z;
     float bias = 0.0001f; //0.001f
+    float reference = projCoords.z - bias;
+
+    if (kernel == FILTER_HARDWARE) {
+        return texture(shadowMap, vec3(projCoords.xy, reference));
+    }
 
+    vec2 texelSize = (kernel == FILTER_POISSON_16 ? 2.5 : 1.5) / textureSize(shadowMap, 0);
+    mat2 rotation = poissonRotation();
+    int taps = poissonTaps(kernel);
     float shadow = 0.0;
-    vec2 texelSize = 1.0 / textureSize(shadowMap, 0);
-    for(int x = -1; x <= 1; ++x)
+    for (int i = 0; i < taps; ++i)
     {
-        for(int y = -1; y <= 1; ++y)
-        {
-            float pcfDepth = texture(shadowMap, projCoords.xy + vec2(x, y) * texelSize).r;
-            shadow += currentDepth - bias < pcfDepth ? 1.0 : 0.0;
+        vec2 offset = poissonOffset(kernel, i, rotation) * texelSize;
+        shadow += texture(shadowMap, vec3(projCoords.xy + offset, reference));
+    }
+    return shadow / float(taps);
+}
+
+float calcShadowCascade(DirectionalLight light, vec3 position)
+{
+    // Select the cascade by the depth of the fragment in view space
+    float depth = -(view * vec4(position, 1.0)).z;
+    if (depth > light.cascadeSplits[light.cascadeCount - 1]) {
+        return 1.0;
+    }
+    int cascade = light.cascadeCount - 1;
+    for (int i = 0; i < light.cascadeCount; ++i)
+    {
+        if (depth < light.cascadeSplits[i]) {
+            cascade = i;
+            break;
         }
     }
-    shadow /= 9.0;
 
-    return shadow;
+    vec4 coord = light.cascadeMatrices[cascade] * vec4(position, 1.0);
+    vec3 projCoords = coord.xyz / coord.w;
+    projCoords = projCoords * 0.5 + 0.5;
+
+    float bias = 0.0005f;
+    float reference = projCoords.z - bias;
+
+    if (light.shadowFilter == FILTER_HARDWARE) {
+        return texture(light.shadowMap, vec4(projCoords.xy, cascade, reference));
+    }
+
+    vec2 texelSize = (light.shadowFilter == FILTER_POISSON_16 ? 2.5 : 1.5) / textureSize(light.shadowMap, 0).xy;
+    mat2 rotation = poissonRotation();
+    int taps = poissonTaps(light.shadowFilter);
+    float shadow = 0.0;
+    for (int i = 0; i < taps; ++i)
+    {
+        vec2 offset = poissonOffset(light.shadowFilter, i, rotation) * texelSize;
+        shadow += texture(light.shadowMap, vec4(projCoords.xy + offset, cascade, reference));
+    }
+    return shadow / float(taps);
 }
 
 vec4 calcPointLightComponents(PointLight light){
@@ -227,10 +331,10 @@ vec4 calcPointLightComponents(PointLight light){
         vec4 component = vec4(0,0,0,0);
         if (light.intensity > 0 )
         {
-            staticShadow = calcShadow(fs_in.FragPos, light.position, light.staticShadowMap, light.plane);
-            if (staticShadow == 1) {
-                dynamicShadow = calcShadow(fs_in.FragPos, light.position, light.dynamicShadowMap, light.plane);
-                if (dynamicShadow == 1) {
+            staticShadow = calcShadow(fs_in.FragPos, light.position, light.staticShadowMap, light.plane, light.shadowFilter);
+            if (staticShadow > 0) {
+                dynamicShadow = calcShadow(fs_in.FragPos, light.position, light.dynamicShadowMap, light.plane, light.shadowFilter);
+                if (dynamicShadow > 0) {
                     component = calcPointLight(light, fs_in.FragPos, fs_in.Normal);
                 }
             }
@@ -247,10 +351,10 @@ vec4 calcSpotLightComponents(SpotLight light){
         vec4 component = vec4(0,0,0,0);
         if (light.intensity > 0 )
         {
-            staticShadow = calcShadow2D(light.lightSpaceMatrix, fs_in.FragPos, light.staticShadowMap);
-            if (staticShadow == 1) {
-                dynamicShadow = calcShadow2D(light.lightSpaceMatrix, fs_in.FragPos, light.dynamicShadowMap);
-                if (dynamicShadow == 1) {
+            staticShadow = calcShadow2D(light.lightSpaceMatrix, fs_in.FragPos, light.staticShadowMap, light.shadowFilter);
+            if (staticShadow > 0) {
+                dynamicShadow = calcShadow2D(light.lightSpaceMatrix, fs_in.FragPos, light.dynamicShadowMap, light.shadowFilter);
+                if (dynamicShadow > 0) {
                     component = calcSpotLight(light, fs_in.FragPos, fs_in.Normal);
                 }
             }
@@ -263,19 +367,16 @@ vec4 calcSpotLightComponents(SpotLight light){
 
 vec4 calcDirectionalLightComponents(DirectionalLight light) {
     if (shadowEnable && light.shadowEnable) {
-        float staticShadow = 1, dynamicShadow = 1;
+        float shadow = 1;
         vec4 component = vec4(0,0,0,0);
         if (light.intensity > 0 )
         {
-            staticShadow = calcShadow2D(light.lightSpaceMatrix, fs_in.FragPos, light.staticShadowMap);
-            if (staticShadow == 1) {
-                dynamicShadow = calcShadow2D(light.lightSpaceMatrix, fs_in.FragPos, light.dynamicShadowMap);
-                if (dynamicShadow == 1) {
-                    component = calcDirectionalLight(light, fs_in.FragPos, fs_in.Normal);
-                }
+            shadow = calcShadowCascade(light, fs_in.FragPos);
+            if (shadow > 0) {
+                component = calcDirectionalLight(light, fs_in.FragPos, fs_in.Normal);
             }
         }
-        return component * staticShadow * dynamicShadow;
+        return component * shadow;
     } else {
         return calcDirectionalLight(light, fs_in.FragPos, fs_in.Normal);
     }
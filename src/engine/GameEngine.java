@@ -2,6 +2,7 @@ package engine;
 
 import engine.util.Timer;
 import game.NeuralNetwork;
+import graphics.ShadowMapPool;
 import org.lwjgl.*;
 
 /** 
@@ -160,6 +161,7 @@ public class GameEngine implements Runnable {
     /** Terminate all game components */
     protected void terminate() {
         gameLogic.terminate();
+        ShadowMapPool.terminate();
         GameWindow.getGameWindow().terminate();
     }
 }
@@ -1,5 +1,6 @@
 package engine;
 
+import engine.util.AssetPack;
 import game.LevelController;
 import game.LevelControllerValidation;
 import pathfinding.Pathfinding_Validator;
@@ -41,6 +42,9 @@ public class Launcher {
      */
     public static void main(String[] args) {
 
+        // Read all resources from the asset pack when -Dassets.pack is given
+        AssetPack.openDefault();
+
         if (args.length > 0 && args[0].equals("-validator=a_star")) {
             // Startup A* validator
             (new Pathfinding_Validator()).run();
@@ -7,6 +7,7 @@ public abstract class Animator {
     protected final Animation animation;
 
     protected final boolean loop;
+    private final boolean startRunning;
 
     protected boolean running;
     protected float animationTime;
@@ -25,6 +26,7 @@ public abstract class Animator {
         this.animation = animation;
         this.loop = loop;
         this.running = start;
+        this.startRunning = start;
         this.animationTime = 0;
         this.halfWay = false;
     }
@@ -67,6 +69,15 @@ public abstract class Animator {
         animationTime = 0;
     }
 
+    /**
+     * Put the animator back in the state it was created in
+     */
+    public void rewind() {
+        running = startRunning;
+        animationTime = 0;
+        halfWay = false;
+    }
+
     /**
      * This method should be called each frame to update the animation currently
      * being played. This increases the animation time (and loops it back to
@@ -60,6 +60,28 @@ public class ModelAnimator {
         this.currentAnimation = animation;
     }
 
+    public ModelAnimation getCurrentAnimation() {
+        return currentAnimation;
+    }
+
+    /**
+     * @return Time into the current animation, together with the idle time this decides the pose
+     */
+    public float getAnimationTime() {
+        return animationTime;
+    }
+
+    /**
+     * @return Time spent blending towards the idle pose, only used while idle
+     */
+    public float getIdleAnimationTime() {
+        return idleAnimationTime;
+    }
+
+    public boolean isIdle() {
+        return idle;
+    }
+
     private void resetAnimation() {
         animationTime = 0;
         idleAnimationTime = 0;
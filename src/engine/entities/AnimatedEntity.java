@@ -26,4 +26,9 @@ public abstract class AnimatedEntity extends Entity {
         this.animator = animator;
     }
 
+    @Override
+    public void reset() {
+        animator.rewind();
+    }
+
 }
@@ -59,6 +59,13 @@ public class DoorEntity extends AnimatedEntity {
         }
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        started = false;
+        ended = false;
+    }
+
     @Override
     public void update(float delta) {
         if (ended || !started) {
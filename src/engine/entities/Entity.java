@@ -58,6 +58,14 @@ public class Entity {
     public void update(float delta) {
     }
 
+    /**
+     * Reset the state of the entity apart from its transform to how it was when it was created,
+     * when a level is restarted in place, see LevelSnapshot. Entities that were added after the
+     * snapshot are reset when they are dropped, so they let go of the map.
+     */
+    public void reset() {
+    }
+
     public void render() {
         mesh.render();
     }
@@ -58,6 +58,13 @@ public class IndicatorEntity extends MultiAnimatedEntity {
         }
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        startRemove = false;
+        removeAction = null;
+    }
+
     @Override
     public void update(float delta) {
         float rotationValue = animators[0].update(delta);
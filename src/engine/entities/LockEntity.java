@@ -42,6 +42,13 @@ public class LockEntity extends MultiAnimatedEntity {
         halfwayAction = action;
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        startRemove = false;
+        removeAction = null;
+    }
+
     public void update(float delta) {
         if (startRemove) {
             rotation.x = startRotation + animators[0].update(delta);
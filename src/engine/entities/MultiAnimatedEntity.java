@@ -22,4 +22,11 @@ public abstract class MultiAnimatedEntity extends Entity {
         super(mesh, position, rotation, scale);
         this.animators = animators;
     }
+
+    @Override
+    public void reset() {
+        for (Animator animator : animators) {
+            animator.rewind();
+        }
+    }
 }
@@ -128,23 +128,9 @@ public class Player extends LivingEntity {
             return;
         }
 
-        /*
-        Collision detection
-         */
-        // The position the player is occupying if applying the movement
-        Vector3f newPosition = new Vector3f(getPosition()).add(xChange, 0, 0);
-
-        if (!getMap().collidesSolid(newPosition.x - collisionSize, newPosition.x + collisionSize
-                , getPosition().z - collisionSize, getPosition().z + collisionSize)) {
-            getPosition().add(xChange, 0, 0);
-        }
-
-        newPosition = new Vector3f(getPosition()).add(0, 0, zChange);
-
-        if (!getMap().collidesSolid(getPosition().x - collisionSize, getPosition().x + collisionSize
-                , newPosition.z - collisionSize, newPosition.z + collisionSize)) {
-            getPosition().add(0, 0, zChange);
-        }
+        // Slide along the walls instead of stopping dead, the sweep covers the whole movement so a
+        // long frame cannot take the player through a wall
+        getMap().getCollision().moveBox(getPosition(), collisionSize, xChange, zChange);
     }
 
     @Override
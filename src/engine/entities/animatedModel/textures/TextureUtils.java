@@ -4,6 +4,7 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 
 import engine.util.MyFile;
+import engine.util.Utilities;
 import org.lwjgl.opengl.EXTTextureFilterAnisotropic;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL12;
@@ -23,7 +24,7 @@ public class TextureUtils {
 		int height = 0;
 		ByteBuffer buffer = null;
 		try {
-			InputStream in = Class.forName(TextureUtils.class.getName()).getResourceAsStream(file);
+			InputStream in = Utilities.openResource(file);
 			PNGDecoder decoder = new PNGDecoder(in);
 			width = decoder.getWidth();
 			height = decoder.getHeight();
@@ -40,6 +40,13 @@ public class ScrollingPopup extends Popup {
         this.animator = AssetStore.getAnimator("linear1sec");
     }
 
+    /**
+     * Scroll the text in again the next time the popup is shown
+     */
+    public void reset() {
+        animator.rewind();
+    }
+
     @Override
     public void update(MouseInput mouse, float delta) {
         NanoVG nano = NanoVG.getInstance();
@@ -6,61 +6,226 @@
 package engine.lights;
 
 import graphics.ShadowMap;
+import graphics.ShadowMapPool;
 import org.joml.Matrix4f;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
+import org.joml.Vector4f;
 
 public class DirectionalLight {
+    public static final int MAX_CASCADES = 4;
+
     private Vector3f position;
     private Vector3f color;
     private Vector3f direction;
     private float intensity;
-    // Shadows related
-    private ShadowMap staticShadowMap, dynamicShadowMap;
-    private Matrix4f ortho;
-    private Matrix4f lightSpaceMatrix;
     private Vector2f plane;
     private boolean shadowEnable;
+    // Cascaded shadows, every cascade is a layer of the shadow map
+    private ShadowMap shadowMap;
+    private int resolution = 768;
+    private int cascadeCount = 3;
+    private float shadowDistance = 30.0f;
+    private float splitLambda = 0.5f;
+    private float casterMargin = 10.0f;
+    private final float[] cascadeSplits = new float[MAX_CASCADES];
+    private final float[] cascadeBounds = new float[MAX_CASCADES * 4];
+    private final Matrix4f[] cascadeMatrices = new Matrix4f[MAX_CASCADES];
+    // Reused while fitting the cascades
+    private final Matrix4f inverseView = new Matrix4f();
+    private final Matrix4f inverseCascade = new Matrix4f();
+    private final Matrix4f cascadeView = new Matrix4f();
+    private final Vector3f[] corners = new Vector3f[8];
+    private final Vector3f lightDirection = new Vector3f();
+    private final Vector3f center = new Vector3f();
+    private final Vector3f eye = new Vector3f();
+    private final Vector3f up = new Vector3f();
+    private final Vector4f point = new Vector4f();
 
     public DirectionalLight(Vector3f position, Vector3f color, Vector3f direction, float intensity, Vector2f plane, boolean shadowEnable) {
-        try {
-            staticShadowMap = new ShadowMap(1024);
-            dynamicShadowMap = new ShadowMap(1024);
-            staticShadowMap.initShadowMap();
-            dynamicShadowMap.initShadowMap();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
         this.position = position;
         this.color = color;
         this.direction = direction;
         this.intensity = intensity;
         this.plane = plane;
         this.shadowEnable = shadowEnable;
-        setOrthoProjection(-10.0f, 10.0f, -10.0f, 10.0f, plane);
+
+        for (int i = 0; i < MAX_CASCADES; i++) {
+            cascadeMatrices[i] = new Matrix4f();
+        }
+        for (int i = 0; i < corners.length; i++) {
+            corners[i] = new Vector3f();
+        }
     }
 
+    /**
+     * @param resolution Resolution of a single cascade
+     */
     public DirectionalLight(Vector3f position, Vector3f color, Vector3f direction, float intensity, Vector2f plane, int resolution) {
         this(position, color, direction, intensity, plane, true);
-        try {
-            staticShadowMap.cleanup();
-            dynamicShadowMap.cleanup();
-            staticShadowMap = new ShadowMap(resolution);
-            dynamicShadowMap = new ShadowMap(resolution);
-            dynamicShadowMap.initShadowMap();
-        } catch (Exception e) {
-            e.printStackTrace();
+        this.resolution = resolution;
+    }
+
+    /**
+     * Fit the shadow cascades to the view frustum of the camera. The part of the frustum up to the
+     * shadow distance is split into slices, each slice is enclosed by a sphere so that the size of
+     * the cascade does not change when the camera rotates, and the cascade is snapped to whole
+     * texels so the shadows do not shimmer when the camera moves.
+     *
+     * @param viewMatrix  View matrix of the camera
+     * @param fov         Vertical field of view of the camera in radians
+     * @param aspectRatio Aspect ratio of the camera
+     * @param zNear       Near plane of the camera
+     * @param zFar        Far plane of the camera
+     */
+    public void updateCascades(Matrix4f viewMatrix, float fov, float aspectRatio, float zNear, float zFar) {
+        float far = Math.min(zFar, shadowDistance);
+        float tanHalfFov = (float) Math.tan(fov / 2.0f);
+        viewMatrix.invert(inverseView);
+
+        // The light looks along the opposite of its direction, pick an up vector that is not parallel
+        lightDirection.set(direction).normalize();
+        if (Math.abs(lightDirection.y) > 0.99f) {
+            up.set(0.0f, 0.0f, 1.0f);
+        } else {
+            up.set(0.0f, 1.0f, 0.0f);
+        }
+
+        float sliceNear = zNear;
+        for (int i = 0; i < cascadeCount; i++) {
+            // Practical split scheme, blend of logarithmic and uniform splits
+            float fraction = (i + 1) / (float) cascadeCount;
+            float logSplit = zNear * (float) Math.pow(far / zNear, fraction);
+            float uniformSplit = zNear + (far - zNear) * fraction;
+            float sliceFar = splitLambda * logSplit + (1.0f - splitLambda) * uniformSplit;
+            cascadeSplits[i] = sliceFar;
+
+            // Corners of the slice in world coordinates
+            center.zero();
+            for (int c = 0; c < 8; c++) {
+                float depth = c < 4 ? sliceNear : sliceFar;
+                float halfHeight = depth * tanHalfFov;
+                float halfWidth = halfHeight * aspectRatio;
+                point.set((c & 1) == 0 ? -halfWidth : halfWidth, (c & 2) == 0 ? -halfHeight : halfHeight, -depth, 1.0f);
+                inverseView.transform(point);
+                corners[c].set(point.x, point.y, point.z);
+                center.add(corners[c]);
+            }
+            center.div(8.0f);
+
+            float radius = 0.0f;
+            for (Vector3f corner : corners) {
+                radius = Math.max(radius, corner.distance(center));
+            }
+            radius = (float) Math.ceil(radius * 16.0f) / 16.0f;
+
+            // Look at the bounding sphere from the side of the light, leaving room for casters above it
+            eye.set(lightDirection).mul(radius + casterMargin).add(center);
+            cascadeView.setLookAt(eye, center, up);
+            Matrix4f cascade = cascadeMatrices[i];
+            cascade.setOrtho(-radius, radius, -radius, radius, 0.0f, 2.0f * radius + casterMargin)
+                    .mul(cascadeView);
+
+            // Snap the projected world origin to a texel
+            point.set(0.0f, 0.0f, 0.0f, 1.0f);
+            cascade.transform(point);
+            float texels = resolution / 2.0f;
+            float offsetX = (Math.round(point.x * texels) - point.x * texels) / texels;
+            float offsetY = (Math.round(point.y * texels) - point.y * texels) / texels;
+            cascade.m30(cascade.m30() + offsetX);
+            cascade.m31(cascade.m31() + offsetY);
+
+            // Area of the map covered by this cascade, used to only render the tiles inside it
+            cascade.invert(inverseCascade);
+            float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
+            float minZ = Float.POSITIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+            for (int c = 0; c < 8; c++) {
+                point.set((c & 1) == 0 ? -1.0f : 1.0f, (c & 2) == 0 ? -1.0f : 1.0f, (c & 4) == 0 ? -1.0f : 1.0f, 1.0f);
+                inverseCascade.transform(point);
+                minX = Math.min(minX, point.x);
+                maxX = Math.max(maxX, point.x);
+                minZ = Math.min(minZ, point.z);
+                maxZ = Math.max(maxZ, point.z);
+            }
+            cascadeBounds[i * 4] = minX;
+            cascadeBounds[i * 4 + 1] = maxX;
+            cascadeBounds[i * 4 + 2] = minZ;
+            cascadeBounds[i * 4 + 3] = maxZ;
+
+            sliceNear = sliceFar;
         }
     }
 
-    public void setToDynamicOnly() {
-        staticShadowMap.cleanup();
-        staticShadowMap = null;
+    /**
+     * Set the amount of cascades and the resolution of each cascade
+     *
+     * @param cascadeCount Number of cascades, between 1 and {@link #MAX_CASCADES}
+     * @param resolution   Resolution of a single cascade
+     */
+    public void setCascades(int cascadeCount, int resolution) {
+        this.cascadeCount = Math.max(1, Math.min(MAX_CASCADES, cascadeCount));
+        this.resolution = resolution;
+        // Size changed, get a new map the next time shadows are rendered
+        ShadowMapPool.release(shadowMap);
+        shadowMap = null;
     }
 
-    public boolean isDynamicOnly() {
-        if (staticShadowMap == null) return true;
-        else return false;
+    /**
+     * Set the distance from the camera up to which shadows are rendered
+     */
+    public void setShadowDistance(float shadowDistance) {
+        this.shadowDistance = shadowDistance;
+    }
+
+    /**
+     * Set the blend between logarithmic (1) and uniform (0) cascade splits
+     */
+    public void setSplitLambda(float splitLambda) {
+        this.splitLambda = splitLambda;
+    }
+
+    public int getCascadeCount() {
+        return cascadeCount;
+    }
+
+    /**
+     * @return View depth at which every cascade ends
+     */
+    public float[] getCascadeSplits() {
+        return cascadeSplits;
+    }
+
+    public Matrix4f getCascadeMatrix(int cascade) {
+        return cascadeMatrices[cascade];
+    }
+
+    /**
+     * Copy the bounds of the area covered by a cascade as {minX, maxX, minZ, maxZ}
+     *
+     * @param cascade Index of the cascade
+     * @param bounds  Array of at least 4 elements to store the bounds in
+     */
+    public void getCascadeBounds(int cascade, float[] bounds) {
+        System.arraycopy(cascadeBounds, cascade * 4, bounds, 0, 4);
+    }
+
+    /**
+     * @return The cascade shadow map or null if it has not been rendered to yet
+     */
+    public ShadowMap getShadowMap() {
+        return shadowMap;
+    }
+
+    /**
+     * Get the cascade shadow map, acquiring it from the pool if needed
+     *
+     * @return The shadow map or null if it could not be allocated
+     */
+    public ShadowMap acquireShadowMap() {
+        if (shadowMap == null) {
+            shadowMap = ShadowMapPool.acquireMapArray(resolution, cascadeCount);
+        }
+        return shadowMap;
     }
 
     public Vector3f getPosition() {
@@ -69,15 +234,6 @@ public class DirectionalLight {
 
     public void setPosition(Vector3f position) {
         this.position = position;
-
-        float lightAngleX = (float)Math.toDegrees(Math.acos(direction.z));
-        float lightAngleY = (float)Math.toDegrees(Math.asin(direction.x));
-        Matrix4f lightView = new Matrix4f().identity();
-        lightView.rotate((float)Math.toRadians(lightAngleX), new Vector3f(1,0 ,0))
-                .rotate((float)Math.toRadians(lightAngleY), new Vector3f(0, 1, 0));
-        lightView.translate(-position.x, -position.y, -position.z);
-
-        lightSpaceMatrix = new Matrix4f(ortho).mul(lightView);
     }
 
     public Vector3f getColor() {
@@ -94,15 +250,6 @@ public class DirectionalLight {
 
     public void setDirection(Vector3f direction) {
         this.direction = direction;
-
-        float lightAngleX = (float)Math.toDegrees(Math.acos(direction.z));
-        float lightAngleY = (float)Math.toDegrees(Math.asin(direction.x));
-        Matrix4f lightView = new Matrix4f().identity();
-        lightView.rotate((float)Math.toRadians(lightAngleX), new Vector3f(1,0 ,0))
-                .rotate((float)Math.toRadians(lightAngleY), new Vector3f(0, 1, 0));
-        lightView.translate(-position.x, -position.y, -position.z);
-
-        lightSpaceMatrix = new Matrix4f(ortho).mul(lightView);
     }
 
     public float getIntensity() {
@@ -113,34 +260,6 @@ public class DirectionalLight {
         this.intensity = intensity;
     }
 
-    public void setOrthoProjection(float left, float right, float bottom, float top, Vector2f plane) {
-        this.plane = plane;
-        ortho = new Matrix4f().setOrtho(left, right, bottom, top, plane.x, plane.y);
-
-        /*Matrix4f lightView = new Matrix4f().identity();
-        lightView.rotate(())*/
-        float lightAngleX = (float)Math.toDegrees(Math.acos(direction.z));
-        float lightAngleY = (float)Math.toDegrees(Math.asin(direction.x));
-        Matrix4f lightView = new Matrix4f().identity();
-        lightView.rotate((float)Math.toRadians(lightAngleX), new Vector3f(1,0 ,0))
-                 .rotate((float)Math.toRadians(lightAngleY), new Vector3f(0, 1, 0));
-        lightView.translate(-position.x, -position.y, -position.z);
-
-        lightSpaceMatrix = new Matrix4f(ortho).mul(lightView);
-    }
-
-    public Matrix4f getLightSpaceMatrix() {
-        return lightSpaceMatrix;
-    }
-
-    public ShadowMap getStaticShadowMap() {
-        return staticShadowMap;
-    }
-
-    public ShadowMap getDynamicShadowMap() {
-        return dynamicShadowMap;
-    }
-
     public Vector2f getPlane() {
         return plane;
     }
@@ -154,14 +273,10 @@ public class DirectionalLight {
     }
 
     /**
-     * Cleanup memory
+     * Return the shadow maps to the pool
      */
     public void cleanup() {
-        if (isDynamicOnly()) {
-            dynamicShadowMap.cleanup();
-        } else {
-            staticShadowMap.cleanup();
-            dynamicShadowMap.cleanup();
-        }
+        ShadowMapPool.release(shadowMap);
+        shadowMap = null;
     }
 }
\ No newline at end of file
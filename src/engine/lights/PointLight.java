@@ -7,6 +7,7 @@ package engine.lights;
 
 import engine.Transformation;
 import graphics.ShadowMap;
+import graphics.ShadowMapPool;
 import org.joml.Matrix4f;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
@@ -16,20 +17,14 @@ public class PointLight {
     private Vector3f position;
     private float intensity;
     private Attenuation attenuation;
+    // Shadow maps are acquired from the pool the first time they are rendered to
     private ShadowMap staticShadowMap, dynamicShadowMap;
+    private int staticResolution = 2048, dynamicResolution = 1024;
+    private boolean dynamicOnly = false;
     private Vector2f plane;
     private Matrix4f[] views = new Matrix4f[6];
 
     public PointLight(Vector3f color, Vector3f position, float intensity, Vector2f plane) {
-        try {
-            staticShadowMap = new ShadowMap(2048);
-            dynamicShadowMap = new ShadowMap(1024);
-            staticShadowMap.initShadowCubeMap();
-            dynamicShadowMap.initShadowCubeMap();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
         attenuation = new Attenuation(1, 0, 0);
         this.color = color;
         this.position = position;
@@ -87,13 +82,13 @@ public class PointLight {
     }
 
     public void setToDynamicOnly() {
-        staticShadowMap.cleanup();
-        staticShadowMap = dynamicShadowMap;
+        ShadowMapPool.release(staticShadowMap);
+        staticShadowMap = null;
+        dynamicOnly = true;
     }
 
     public boolean isDynamicOnly() {
-        if (staticShadowMap == dynamicShadowMap) return true;
-        else return false;
+        return dynamicOnly;
     }
 
     public Vector3f getColor() {
@@ -117,14 +112,58 @@ public class PointLight {
         return intensity;
     }
 
+    /**
+     * @return The static shadow map or null if it has not been rendered to yet
+     */
     public ShadowMap getStaticShadowMap() {
-        return staticShadowMap;
+        return dynamicOnly ? dynamicShadowMap : staticShadowMap;
     }
 
+    /**
+     * @return The dynamic shadow map or null if it has not been rendered to yet
+     */
     public ShadowMap getDynamicShadowMap() {
         return dynamicShadowMap;
     }
 
+    /**
+     * Get the static shadow map, acquiring it from the pool if needed
+     *
+     * @return The static shadow map or null if it could not be allocated
+     */
+    public ShadowMap acquireStaticShadowMap() {
+        if (dynamicOnly) {
+            return acquireDynamicShadowMap();
+        }
+        if (staticShadowMap == null) {
+            staticShadowMap = ShadowMapPool.acquireCubeMap(staticResolution);
+        }
+        return staticShadowMap;
+    }
+
+    /**
+     * Get the dynamic shadow map, acquiring it from the pool if needed
+     *
+     * @return The dynamic shadow map or null if it could not be allocated
+     */
+    public ShadowMap acquireDynamicShadowMap() {
+        if (dynamicShadowMap == null) {
+            dynamicShadowMap = ShadowMapPool.acquireCubeMap(dynamicResolution);
+        }
+        return dynamicShadowMap;
+    }
+
+    /**
+     * Set the resolutions requested from the pool, maps that are already acquired keep their size
+     *
+     * @param staticResolution  Resolution of the static shadow map
+     * @param dynamicResolution Resolution of the dynamic shadow map
+     */
+    public void setShadowResolution(int staticResolution, int dynamicResolution) {
+        this.staticResolution = staticResolution;
+        this.dynamicResolution = dynamicResolution;
+    }
+
     public void setIntensity(float intensity) {
         this.intensity = intensity;
     }
@@ -185,14 +224,12 @@ public class PointLight {
     }
 
     /**
-     * Cleanup memory
+     * Return the shadow maps to the pool
      */
     public void cleanup() {
-        if (isDynamicOnly()) {
-            dynamicShadowMap.cleanup();
-        } else {
-            staticShadowMap.cleanup();
-            dynamicShadowMap.cleanup();
-        }
+        ShadowMapPool.release(staticShadowMap);
+        ShadowMapPool.release(dynamicShadowMap);
+        staticShadowMap = null;
+        dynamicShadowMap = null;
     }
 }
\ No newline at end of file
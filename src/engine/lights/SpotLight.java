@@ -7,6 +7,7 @@ package engine.lights;
 
 
 import graphics.ShadowMap;
+import graphics.ShadowMapPool;
 import org.joml.Matrix4f;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
@@ -18,6 +19,8 @@ public class SpotLight {
     private float intensity;
     private PointLight.Attenuation attenuation;
     private ShadowMap staticShadowMap, dynamicShadowMap;    // Different Type of shadow map
+    private int resolution = 1024;
+    private boolean dynamicOnly = false;
     private Vector2f plane;
     // SpotLight specific paramters
     private Vector3f coneDirection;
@@ -25,15 +28,6 @@ public class SpotLight {
     private Matrix4f lightSpaceMatrix;
 
     public SpotLight(Vector3f color, Vector3f position, float intensity, Vector3f coneDirection, float cutOffAngle, float outerCutOffAngle, Vector2f plane) {
-        try {
-            staticShadowMap = new ShadowMap(1024);
-            dynamicShadowMap = new ShadowMap(1024);
-            staticShadowMap.initShadowMap();
-            dynamicShadowMap.initShadowMap();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
         attenuation = new PointLight.Attenuation(1, 0, 0);
         this.color = color;
         this.position = position;
@@ -47,16 +41,7 @@ public class SpotLight {
 
     public SpotLight(Vector3f color, Vector3f position, float intensity, Vector3f coneDirection, float cutOffAngle, float outerCutOffAngle, Vector2f plane, int resolution) {
         this(color, position, intensity, coneDirection, cutOffAngle, outerCutOffAngle, plane);
-        try {
-            staticShadowMap.cleanup();
-            dynamicShadowMap.cleanup();
-            staticShadowMap = new ShadowMap(resolution);
-            dynamicShadowMap = new ShadowMap(resolution);
-            staticShadowMap.initShadowMap();
-            dynamicShadowMap.initShadowMap();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        this.resolution = resolution;
     }
 
     public SpotLight(Vector3f color, Vector3f position, float intensity, Vector3f coneDirection, float cutOffAngle, float outerCutOff,
@@ -83,13 +68,13 @@ public class SpotLight {
     }
 
     public void setToDynamicOnly() {
-        staticShadowMap.cleanup();
-        staticShadowMap = dynamicShadowMap;
+        ShadowMapPool.release(staticShadowMap);
+        staticShadowMap = null;
+        dynamicOnly = true;
     }
 
     public boolean isDynamicOnly() {
-        if (staticShadowMap == dynamicShadowMap) return true;
-        else return false;
+        return dynamicOnly;
     }
 
     public float getIntensity() {
@@ -108,14 +93,47 @@ public class SpotLight {
         this.attenuation = attenuation;
     }
 
+    /**
+     * @return The static shadow map or null if it has not been rendered to yet
+     */
     public ShadowMap getStaticShadowMap() {
-        return staticShadowMap;
+        return dynamicOnly ? dynamicShadowMap : staticShadowMap;
     }
 
+    /**
+     * @return The dynamic shadow map or null if it has not been rendered to yet
+     */
     public ShadowMap getDynamicShadowMap() {
         return dynamicShadowMap;
     }
 
+    /**
+     * Get the static shadow map, acquiring it from the pool if needed
+     *
+     * @return The static shadow map or null if it could not be allocated
+     */
+    public ShadowMap acquireStaticShadowMap() {
+        if (dynamicOnly) {
+            return acquireDynamicShadowMap();
+        }
+        if (staticShadowMap == null) {
+            staticShadowMap = ShadowMapPool.acquireMap(resolution);
+        }
+        return staticShadowMap;
+    }
+
+    /**
+     * Get the dynamic shadow map, acquiring it from the pool if needed
+     *
+     * @return The dynamic shadow map or null if it could not be allocated
+     */
+    public ShadowMap acquireDynamicShadowMap() {
+        if (dynamicShadowMap == null) {
+            dynamicShadowMap = ShadowMapPool.acquireMap(resolution);
+        }
+        return dynamicShadowMap;
+    }
+
     public Vector3f getConeDirection() {
         return coneDirection;
     }
@@ -165,10 +183,12 @@ public class SpotLight {
     }
 
     /**
-     * Cleanup memory
+     * Return the shadow maps to the pool
      */
     public void cleanup() {
-        staticShadowMap.cleanup();
-        dynamicShadowMap.cleanup();
+        ShadowMapPool.release(staticShadowMap);
+        ShadowMapPool.release(dynamicShadowMap);
+        staticShadowMap = null;
+        dynamicShadowMap = null;
     }
 }
\ No newline at end of file
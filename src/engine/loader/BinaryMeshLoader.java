@@ -0,0 +1,164 @@
+package engine.loader;
+
+import engine.loader.animatedModelLoader.dataStructures.AnimatedModelData;
+import engine.loader.animatedModelLoader.dataStructures.JointData;
+import engine.loader.animatedModelLoader.dataStructures.MeshData;
+import engine.loader.animatedModelLoader.dataStructures.SkeletonData;
+import engine.loader.data.PLYData;
+import engine.util.Utilities;
+import org.joml.Matrix4f;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads meshes in the compiled binary formats written by MeshCompiler.
+ * <p>
+ * The file is a slice of the asset pack, or else memory mapped when it is a plain file, after which
+ * the arrays are copied out of it in bulk. All numbers are big endian, strings are a short byte
+ * length followed by UTF-8. Both formats start with the same vertex data:
+ * <pre>
+ * int    magic, "DDMS" for a .ply mesh and "DDAM" for an animated .dae model
+ * short  format version
+ * int    number of vertices, int number of indices
+ * float  position x, y, z per vertex
+ * short  normal x, y, z per vertex, signed normalized
+ * byte   color r, g, b per vertex, unsigned normalized
+ * short  index per index (unsigned) when there are at most 65536 vertices, int index otherwise
+ * </pre>
+ * Animated models continue with the skin and the skeleton:
+ * <pre>
+ * byte   3 joint ids per vertex (unsigned)
+ * short  3 joint weights per vertex, unsigned normalized
+ * short  number of joints
+ * joints depth first, starting at the root:
+ *        short index, string name, float[16] bind transform (column major), short number of children
+ * </pre>
+ * The vertices are deduplicated and ordered for the vertex cache by the compiler, so the loader
+ * only has to undo the quantization.
+ */
+public class BinaryMeshLoader {
+
+    static final int MESH_MAGIC = 0x44444D53;
+    static final int MODEL_MAGIC = 0x4444414D;
+    static final short VERSION = 1;
+
+    static final float NORMAL_SCALE = 32767f;
+    static final float COLOR_SCALE = 255f;
+    static final float WEIGHT_SCALE = 65535f;
+
+    /**
+     * @return Resource path of the compiled version of a .ply or .dae file
+     */
+    public static String compiledPath(String sourcePath) {
+        return sourcePath + "b";
+    }
+
+    /**
+     * Load a compiled .ply mesh
+     *
+     * @param resourcePath Resource path of the compiled file
+     * @return The same data as PLYLoader would return for the source
+     */
+    public static PLYData loadData(String resourcePath) throws Exception {
+        ByteBuffer buffer = open(resourcePath, MESH_MAGIC);
+        int vertexCount = buffer.getInt();
+        int indexCount = buffer.getInt();
+
+        float[] positions = readFloats(buffer, vertexCount * 3);
+        float[] normals = readNormals(buffer, vertexCount * 3);
+        float[] colors = readColors(buffer, vertexCount * 3);
+        int[] indices = readIndices(buffer, indexCount, vertexCount);
+        return new PLYData(positions, normals, colors, indices);
+    }
+
+    /**
+     * Load a compiled animated model
+     *
+     * @param resourcePath Resource path of the compiled file
+     * @return The same data as the ColladaLoader would return for the source
+     */
+    public static AnimatedModelData loadModelData(String resourcePath) throws Exception {
+        ByteBuffer buffer = open(resourcePath, MODEL_MAGIC);
+        int vertexCount = buffer.getInt();
+        int indexCount = buffer.getInt();
+
+        float[] positions = readFloats(buffer, vertexCount * 3);
+        float[] normals = readNormals(buffer, vertexCount * 3);
+        float[] colors = readColors(buffer, vertexCount * 3);
+        int[] indices = readIndices(buffer, indexCount, vertexCount);
+
+        int[] jointIds = new int[vertexCount * 3];
+        for (int i = 0; i < jointIds.length; i++) {
+            jointIds[i] = buffer.get() & 0xFF;
+        }
+        float[] weights = new float[vertexCount * 3];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (buffer.getShort() & 0xFFFF) / WEIGHT_SCALE;
+        }
+
+        int jointCount = buffer.getShort();
+        JointData root = readJoint(buffer);
+
+        MeshData mesh = new MeshData(positions, colors, normals, indices, jointIds, weights);
+        return new AnimatedModelData(mesh, new SkeletonData(jointCount, root));
+    }
+
+    private static ByteBuffer open(String resourcePath, int magic) throws Exception {
+        ByteBuffer buffer = Utilities.readResource(resourcePath);
+        if (buffer.getInt() != magic || buffer.getShort() != VERSION) {
+            throw new Exception("Mesh file " + resourcePath + " is not defined correctly");
+        }
+        return buffer;
+    }
+
+    private static float[] readFloats(ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    private static float[] readNormals(ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = buffer.getShort() / NORMAL_SCALE;
+        }
+        return values;
+    }
+
+    private static float[] readColors(ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (buffer.get() & 0xFF) / COLOR_SCALE;
+        }
+        return values;
+    }
+
+    private static int[] readIndices(ByteBuffer buffer, int count, int vertexCount) {
+        int[] indices = new int[count];
+        if (vertexCount <= 0x10000) {
+            for (int i = 0; i < count; i++) {
+                indices[i] = buffer.getShort() & 0xFFFF;
+            }
+        } else {
+            buffer.asIntBuffer().get(indices);
+            buffer.position(buffer.position() + count * 4);
+        }
+        return indices;
+    }
+
+    private static JointData readJoint(ByteBuffer buffer) {
+        int index = buffer.getShort();
+        byte[] name = new byte[buffer.getShort()];
+        buffer.get(name);
+        Matrix4f transform = new Matrix4f().set(readFloats(buffer, 16));
+
+        JointData joint = new JointData(index, new String(name, StandardCharsets.UTF_8), transform);
+        int childCount = buffer.getShort();
+        for (int i = 0; i < childCount; i++) {
+            joint.addChild(readJoint(buffer));
+        }
+        return joint;
+    }
+}
@@ -47,6 +47,10 @@ import java.util.List;
  * For now, the file format we can read is constrained to the following:
  * Object vertex = (float[3] position, float[3] normal, uchar[3] rgb_color)
  * Object face = (list<int> vertext_indices)
+ *
+ * <h1> Compiled meshes </h1>
+ * When a compiled version of the file exists (see MeshCompiler), it is read instead of the .ply, which
+ * skips all text parsing.
  */
 public class PLYLoader {
 
@@ -61,9 +65,40 @@ public class PLYLoader {
      * @throws Exception if file format not supported
      */
     public static Mesh loadMesh(String fileName) throws Exception {
+        return new Mesh(loadData(fileName));
+    }
+
+    /**
+     * Parses a .ply file without creating the Mesh, which needs the OpenGL context
+     *
+     * @param fileName the path to the .ply file to parse
+     * @return the data of the .ply file, as the Mesh class expects it
+     * @throws Exception if file not found
+     * @throws Exception if file format not supported
+     */
+    public static PLYData loadData(String fileName) throws Exception {
+        String compiledFile = BinaryMeshLoader.compiledPath(fileName);
+        if (Utilities.isCompiledUpToDate(fileName, compiledFile)) {
+            try {
+                return BinaryMeshLoader.loadData(compiledFile);
+            } catch (Exception e) {
+                System.err.println("Failed to load: " + compiledFile);
+                e.printStackTrace();
+            }
+        }
 
         // Open the file as a list of strings
-        List<String> lines = Utilities.readAllLines(fileName);
+        return parseData(Utilities.readAllLines(fileName));
+    }
+
+    /**
+     * Parses the lines of a .ply file, always from the text
+     *
+     * @param lines the lines of the .ply file
+     * @return the data of the .ply file, as the Mesh class expects it
+     * @throws Exception if file format not supported
+     */
+    public static PLYData parseData(List<String> lines) throws Exception {
 
         // Stores the data
         List<Face> faces = new ArrayList<>();
@@ -93,7 +128,7 @@ public class PLYLoader {
             faces.add(parseFace(body.get(i)));
         }
 
-        // Restructure the data and create the Mesh object
+        // Restructure the data
         return reorderLists(faces, vertices);
     }
 
@@ -156,9 +191,9 @@ public class PLYLoader {
      *
      * @param facesList    A list of faces that were parsed from the file
      * @param verticesList A list of vertices that were parsed from the file
-     * @return A mesh with the data from the .ply file
+     * @return The data from the .ply file
      */
-    private static Mesh reorderLists(List<Face> facesList, List<Vertex> verticesList) {
+    private static PLYData reorderLists(List<Face> facesList, List<Vertex> verticesList) {
 
         int noOfVertices = verticesList.size();
         int noOfFaces = facesList.size();
@@ -194,7 +229,7 @@ public class PLYLoader {
 
         int[] indices = indicesList.stream().mapToInt((Integer v) -> v).toArray();
 
-        return new Mesh(new PLYData(positions, normals, colors, indices));
+        return new PLYData(positions, normals, colors, indices);
     }
 
     /**
@@ -2,11 +2,13 @@ package engine.loader.animatedModelLoader;
 
 import engine.entities.animatedModel.AnimatedModel;
 import engine.entities.animatedModel.Joint;
+import engine.loader.BinaryMeshLoader;
 import engine.loader.animatedModelLoader.colladaLoader.ColladaLoader;
 import engine.loader.animatedModelLoader.dataStructures.AnimatedModelData;
 import engine.loader.animatedModelLoader.dataStructures.JointData;
 import engine.loader.animatedModelLoader.dataStructures.MeshData;
 import engine.loader.animatedModelLoader.dataStructures.SkeletonData;
+import engine.util.Utilities;
 import graphics.AnimatedMesh;
 
 public class AnimatedModelLoader {
@@ -14,14 +16,27 @@ public class AnimatedModelLoader {
     /**
      * Creates an AnimatedEntity from the data in an entity file. It loads up
      * the collada model data, stores the extracted data in a VAO, sets up the
-     * joint heirarchy, and loads up the entity's texture.
+     * joint heirarchy, and loads up the entity's texture. A compiled version
+     * of the file is used instead when there is one, see MeshCompiler.
      *
      * @param modelFile
      *            - the file containing the data for the entity.
      * @return The animated entity (no animation applied though)
      */
     public static AnimatedModel loadEntity(String modelFile) {
-        AnimatedModelData entityData = ColladaLoader.loadColladaModel(modelFile, 3);
+        AnimatedModelData entityData = null;
+        String compiledFile = BinaryMeshLoader.compiledPath(modelFile);
+        if (Utilities.isCompiledUpToDate(modelFile, compiledFile)) {
+            try {
+                entityData = BinaryMeshLoader.loadModelData(compiledFile);
+            } catch (Exception e) {
+                System.err.println("Failed to load: " + compiledFile);
+                e.printStackTrace();
+            }
+        }
+        if (entityData == null) {
+            entityData = ColladaLoader.loadColladaModel(modelFile, 3);
+        }
         AnimatedMesh mesh = createMesh(entityData.getMeshData());
         SkeletonData skeletonData = entityData.getJointsData();
         Joint headJoint = createJoints(skeletonData.headJoint);
@@ -8,8 +8,10 @@ import engine.util.MyFile;
 public class ColladaLoader {
 
 	public static AnimatedModelData loadColladaModel(String colladaFile, int maxWeights) {
-		XmlNode node = XmlParser.loadXmlFile(colladaFile);
+		return loadColladaModel(XmlParser.loadXmlFile(colladaFile), maxWeights);
+	}
 
+	public static AnimatedModelData loadColladaModel(XmlNode node, int maxWeights) {
 		SkinLoader skinLoader = new SkinLoader(node.getChild("library_controllers"), maxWeights);
 		SkinningData skinningData = skinLoader.extractSkinData();
 
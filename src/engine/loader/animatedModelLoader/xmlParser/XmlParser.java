@@ -33,7 +33,7 @@ public class XmlParser {
 	public static XmlNode loadXmlFile(String path) {
 		BufferedReader reader = null;
 		try {
-			reader = new BufferedReader(new InputStreamReader(Class.forName(Utilities.class.getName()).getResourceAsStream(path)));
+			reader = new BufferedReader(new InputStreamReader(Utilities.openResource(path)));
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.err.println("Can't find the XML file: " + path);
@@ -41,10 +41,7 @@ public class XmlParser {
 			return null;
 		}
 		try {
-			reader.readLine();
-			XmlNode node = loadNode(reader);
-			reader.close();
-			return node;
+			return loadXmlFile(reader);
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.err.println("Error with XML file format for: " + path);
@@ -53,6 +50,21 @@ public class XmlParser {
 		}
 	}
 
+	/**
+	 * Reads an XML document from a reader and closes it
+	 * 
+	 * @param reader - reader positioned at the start of the document
+	 * @return The root node of the XML structure.
+	 */
+	public static XmlNode loadXmlFile(BufferedReader reader) throws Exception {
+		try {
+			reader.readLine();
+			return loadNode(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
 	private static XmlNode loadNode(BufferedReader reader) throws Exception {
 		String line = reader.readLine().trim();
 		if (line.startsWith("</")) {
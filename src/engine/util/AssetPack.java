@@ -0,0 +1,159 @@
+package engine.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * All resources of the game in a single file, written by AssetPackBuilder in the assets module.
+ * <p>
+ * The pack is memory mapped once when the game starts. Resources that are stored uncompressed are
+ * handed out as read-only slices of the mapping, so loading them copies nothing, and they are direct
+ * buffers that can be passed to native code as they are. Compressed resources are inflated into a
+ * new direct buffer. When no pack is opened, Utilities reads resources from the classpath as before.
+ * <p>
+ * All numbers are big endian, strings are a short byte length followed by UTF-8:
+ * <pre>
+ * int    magic "DDPK"
+ * short  format version
+ * int    number of resources, followed by the index:
+ *        string path (without leading slash), int offset, int length, int stored length,
+ *        byte compression (0 stored, 1 deflated)
+ * the data of the resources, every resource starting at a multiple of 16 bytes
+ * </pre>
+ */
+public class AssetPack {
+
+    static final int MAGIC = 0x4444504B;
+    static final short VERSION = 1;
+    static final byte STORED = 0;
+    static final byte DEFLATED = 1;
+    static final int ALIGNMENT = 16;
+
+    /**
+     * Pack written by the assets module, used when -Dassets.pack is given without a path
+     */
+    static final String DEFAULT_FILE = "assets/target/assets.pack";
+
+    private static AssetPack assetPack;
+
+    private final ByteBuffer data;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+
+    private AssetPack(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.getInt() != MAGIC || data.getShort() != VERSION) {
+            throw new IOException("Asset pack " + file + " is not defined correctly");
+        }
+        int count = data.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] path = new byte[data.getShort()];
+            data.get(path);
+            entries.put(new String(path, StandardCharsets.UTF_8),
+                    new Entry(data.getInt(), data.getInt(), data.getInt(), data.get()));
+        }
+    }
+
+    /**
+     * Open the pack given by the assets.pack system property, the pack of the assets module when the
+     * property is empty. Without the property resources are always read from the classpath, so a pack
+     * that was built before resources were edited is never used by accident.
+     */
+    public static void openDefault() {
+        String property = System.getProperty("assets.pack");
+        if (property == null) {
+            return;
+        }
+        File file = new File(property.isEmpty() ? DEFAULT_FILE : property);
+        if (!file.isFile()) {
+            System.err.println("Asset pack " + file + " does not exist, loading assets from the classpath");
+            return;
+        }
+        try {
+            assetPack = new AssetPack(file);
+        } catch (IOException e) {
+            System.err.println("Failed to open asset pack " + file + ", loading assets from the classpath");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return The opened pack, null if resources are read from the classpath
+     */
+    public static AssetPack getAssetPack() {
+        return assetPack;
+    }
+
+    /**
+     * @param path Resource path, with or without leading slash
+     */
+    public boolean contains(String path) {
+        return entries.containsKey(key(path));
+    }
+
+    /**
+     * Get the content of a resource. Can be called from any thread.
+     *
+     * @param path Resource path, with or without leading slash
+     * @return Read-only direct buffer with the content, null if the pack does not contain the resource
+     */
+    public ByteBuffer get(String path) throws IOException {
+        Entry entry = entries.get(key(path));
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer stored = data.duplicate();
+        stored.position(entry.offset);
+        stored.limit(entry.offset + entry.storedLength);
+        stored = stored.slice();
+        if (entry.compression == STORED) {
+            return stored;
+        }
+
+        byte[] compressed = new byte[entry.storedLength];
+        stored.get(compressed);
+        byte[] content = new byte[entry.length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            if (inflater.inflate(content) != entry.length) {
+                throw new IOException("Resource " + path + " in the asset pack is corrupt");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Resource " + path + " in the asset pack is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+        buffer.put(content);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    static String key(String path) {
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    /**
+     * Location of a resource in the pack
+     */
+    private static class Entry {
+        private final int offset, length, storedLength;
+        private final byte compression;
+
+        private Entry(int offset, int length, int storedLength, byte compression) {
+            this.offset = offset;
+            this.length = length;
+            this.storedLength = storedLength;
+            this.compression = compression;
+        }
+    }
+}
@@ -37,7 +37,11 @@ public final class IOUtil {
      * @throws IOException if an IO error occurs
      */
     public static ByteBuffer ioResourceToByteBuffer(String resource, int bufferSize) throws IOException {
-        ByteBuffer buffer;
+        AssetPack assetPack = AssetPack.getAssetPack();
+        ByteBuffer buffer = assetPack != null ? assetPack.get(resource) : null;
+        if (buffer != null) {
+            return buffer;
+        }
 
         Path path = Paths.get(resource);
         if ( Files.isReadable(path) ) {
@@ -4,6 +4,8 @@ import org.lwjgl.BufferUtils;
 
 import javax.rmi.CORBA.Util;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -11,11 +13,13 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -38,7 +42,7 @@ public class Utilities {
      */
     public static String loadResource(String fileName) throws Exception {
         String result;
-        try (InputStream in = Class.forName(Utilities.class.getName()).getResourceAsStream(fileName);
+        try (InputStream in = openResource(fileName);
              Scanner scanner = new Scanner(in, "UTF-8")) {
             result = scanner.useDelimiter("\\A").next();
         }
@@ -54,7 +58,7 @@ public class Utilities {
      */
     public static List<String> readAllLines(String fileName) throws Exception {
         List<String> list = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(Class.forName(Utilities.class.getName()).getResourceAsStream(fileName)))) {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(openResource(fileName)))) {
             String line;
             while ((line = br.readLine()) != null) {
                 list.add(line);
@@ -63,6 +67,48 @@ public class Utilities {
         return list;
     }
 
+    /**
+     * Open a resource from the asset pack, or from the classpath if there is no pack or the pack does
+     * not contain it
+     *
+     * @param fileName Path of the resource
+     * @return Stream of the resource, null if it does not exist
+     */
+    public static InputStream openResource(String fileName) throws IOException {
+        AssetPack assetPack = AssetPack.getAssetPack();
+        ByteBuffer buffer = assetPack != null ? assetPack.get(fileName) : null;
+        if (buffer != null) {
+            return new ByteBufferInputStream(buffer);
+        }
+        return Utilities.class.getResourceAsStream(fileName.startsWith("/") ? fileName : "/" + fileName);
+    }
+
+    /**
+     * Read a resource completely, as a slice of the asset pack or else mapped or read from the classpath
+     *
+     * @param fileName Path of the resource
+     * @return Read-only buffer with the content of the resource
+     * @throws IOException if resource is not found
+     */
+    public static ByteBuffer readResource(String fileName) throws IOException {
+        AssetPack assetPack = AssetPack.getAssetPack();
+        ByteBuffer buffer = assetPack != null ? assetPack.get(fileName) : null;
+        if (buffer != null) {
+            return buffer;
+        }
+        URL url = Utilities.class.getResource(fileName.startsWith("/") ? fileName : "/" + fileName);
+        if (url == null) {
+            throw new IOException("Resource " + fileName + " does not exist");
+        }
+        try {
+            return mapResource(url);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
     /**
      * Utility method that takes in a float list and converts it to an array.
      *
@@ -79,7 +125,11 @@ public class Utilities {
     }
 
     public static ByteBuffer ioResourceToByteBuffer(String resource, int bufferSize) throws IOException {
-        ByteBuffer buffer;
+        AssetPack assetPack = AssetPack.getAssetPack();
+        ByteBuffer buffer = assetPack != null ? assetPack.get(resource) : null;
+        if (buffer != null) {
+            return buffer;
+        }
 
         Path path = Paths.get(resource);
         if (Files.isReadable(path)) {
@@ -112,6 +162,87 @@ public class Utilities {
         return null;
     }
 
+    /**
+     * Whether a compiled version of a resource exists and can be used instead of the source. If both
+     * are plain files, the compiled one must not be older, so edited sources are not shadowed by a
+     * stale compiled copy.
+     *
+     * @param sourcePath   Resource path of the source, which does not need to exist
+     * @param compiledPath Resource path of the compiled version
+     */
+    public static boolean isCompiledUpToDate(String sourcePath, String compiledPath) {
+        // The pack only holds compiled files that were up to date when it was built
+        AssetPack assetPack = AssetPack.getAssetPack();
+        if (assetPack != null && (assetPack.contains(compiledPath) || assetPack.contains(sourcePath))) {
+            return assetPack.contains(compiledPath);
+        }
+        URL compiled = Utilities.class.getResource(compiledPath);
+        if (compiled == null) {
+            return false;
+        }
+        URL source = Utilities.class.getResource(sourcePath);
+        if (source == null || !"file".equals(source.getProtocol()) || !"file".equals(compiled.getProtocol())) {
+            return true;
+        }
+        try {
+            return new File(compiled.toURI()).lastModified() >= new File(source.toURI()).lastModified();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Map a resource into memory, or read it completely if it is not a plain file, e.g. when it is
+     * packed in a jar
+     */
+    public static ByteBuffer mapResource(URL url) throws Exception {
+        if ("file".equals(url.getProtocol())) {
+            try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        try (InputStream in = url.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+    }
+
+    /**
+     * Stream over the remaining bytes of a buffer
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
     private static ByteBuffer resizeBuffer(ByteBuffer buffer, int newCapacity) {
         ByteBuffer newBuffer = BufferUtils.createByteBuffer(newCapacity);
         buffer.flip();
@@ -1,11 +1,13 @@
 package game;
 
+import engine.GameEngine;
 import engine.IGameLogic;
 import engine.MouseInput;
 import engine.input.KeyBinding;
 import engine.util.AssetStore;
 import engine.util.Timer;
 import game.level.*;
+import graphics.ShadowMapPool;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -72,6 +74,14 @@ public class LevelController implements IGameLogic {
     public void switchToLevel(int levelIndex) {
         // Unload level to release resources
         levels.get(active).terminate();
+        if (GameEngine.DEBUG_MODE) {
+            // Maps still in use here were not released by the level
+            System.out.println("Shadow map pool after unloading level " + active + ": "
+                    + ShadowMapPool.getAllocatedCount() + " maps, "
+                    + ShadowMapPool.getInUseBytes() / 1024 + " KiB in use, "
+                    + ShadowMapPool.getFreeBytes() / 1024 + " KiB free of "
+                    + ShadowMapPool.getBudget() / 1024 + " KiB");
+        }
 
         // Reset mesh cache
         AssetStore.clearMeshCache();
@@ -117,12 +127,7 @@ public class LevelController implements IGameLogic {
      */
     public void restart() {
         try {
-            levels.get(active).terminate();
-
-            // Reset mesh cache
-            AssetStore.clearMeshCache();
-
-            levels.get(active).init();
+            levels.get(active).restart();
         } catch (Exception e) {
             System.err.println("Could not load level " + active);
             e.printStackTrace();
@@ -8,10 +8,12 @@ import engine.entities.animatedModel.Player;
 import engine.gui.NanoVG;
 import engine.lights.SceneLight;
 import game.map.Map;
-import game.map.tile.Tile;
+import game.map.VisibleSet;
 import game.mobs.Snake;
 import graphics.HDR;
 import graphics.Mesh;
+import graphics.ShadowCache;
+import graphics.ShadowFilter;
 import graphics.ShadowsManager;
 import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
@@ -37,6 +39,9 @@ public class Renderer {
     private FrustumIntersection frustumIntersection;
     private ShaderManager shaderManager;
     private ShadowsManager shadowsManager;
+    private ShadowCache shadowCache;
+    private boolean shadowCacheEnable = true;
+    private final ShadowFilter shadowFilter = new ShadowFilter();
     private HDR hdrManager;
     private boolean firstRender = true;
 
@@ -49,6 +54,8 @@ public class Renderer {
     private boolean shadowEnable = true;
     private boolean hdrEnable = true;
     private float hdrExposure = 1.2f;
+    /* What the viewer can see this frame, null if everything is drawn */
+    private VisibleSet visibility;
 
     public Renderer() {
         transformation = new Transformation();
@@ -57,6 +64,7 @@ public class Renderer {
 
     public void init() throws Exception {
         shadowsManager = new ShadowsManager();
+        shadowCache = new ShadowCache();
         frustumIntersection = new FrustumIntersection();
         shaderManager = new ShaderManager();
         shaderManager.setupSceneShader();
@@ -128,12 +136,33 @@ public class Renderer {
             }
         }
 
+        visibility = null;
+        if (map != null && map.getFieldOfView() != null) {
+            // The level moves the field of view along with the player
+            visibility = map.getFieldOfView();
+        }
+
         if (shadowEnable){
+            if (sceneLight != null && sceneLight.directionalLight != null) {
+                // Fit the shadow cascades to what the camera sees this frame
+                sceneLight.directionalLight.updateCascades(
+                        transformation.getViewMatrix(camera),
+                        FOV,
+                        (float) window.getWindowWidth() / window.getWindowHeight(),
+                        Z_NEAR,
+                        Z_FAR
+                );
+            }
             if (firstRender) {
-                shadowsManager.renderStaticShadows(transformation, sceneLight, shaderManager, map, entities);
+                if (!shadowCacheEnable || !shadowCache.load(map, entities, sceneLight)) {
+                    shadowsManager.renderStaticShadows(transformation, sceneLight, shaderManager, map, entities);
+                    if (shadowCacheEnable) {
+                        shadowCache.store(map, entities, sceneLight);
+                    }
+                }
                 firstRender = false;
             }
-            shadowsManager.renderDynamicShadows(transformation, sceneLight, shaderManager, map, entities);
+            shadowsManager.renderDynamicShadows(transformation, sceneLight, shaderManager, map, entities, camera, visibility);
         }
 
         if (hdrEnable) {
@@ -180,28 +209,45 @@ public class Renderer {
         glViewport(0, 0, window.getWindowWidth(), window.getWindowHeight());
 
         shaderManager.bindSceneShader();
-        shaderManager.initializeSceneShader(camera.getPosition(), shadowEnable, sceneLight, specularPower);
+        shaderManager.initializeSceneShader(camera.getPosition(), viewMatrix, shadowEnable, sceneLight, specularPower, shadowFilter);
         // Render Map Layout
         if (map != null) {
-            for (Tile[] row : map.getTiles()) {
-                for (Tile tile : row) {
-                    if (tile == null) {
+            // Read the tile arrays of the map directly instead of going through the tiles, and skip
+            // whole chunks that are not in view or behind walls
+            int height = map.getHeight();
+            for (int chunkX = 0; chunkX < map.getChunkCountX(); chunkX++) {
+                for (int chunkY = 0; chunkY < map.getChunkCountY(); chunkY++) {
+                    int minX = chunkX * Map.CHUNK_SIZE, maxX = Math.min(map.getWidth(), minX + Map.CHUNK_SIZE);
+                    int minY = chunkY * Map.CHUNK_SIZE, maxY = Math.min(height, minY + Map.CHUNK_SIZE);
+                    if (visibility != null && !visibility.isChunkVisible(chunkX, chunkY)) {
+                        continue;
+                    }
+                    int chunkFrustum = frustumIntersection.intersectAab(minX - 1.0f, -1.1f, minY - 1.0f, maxX, 3.0f, maxY);
+                    if (chunkFrustum != -2 && chunkFrustum != -1) {
                         continue;
                     }
-                    Vector3f tilePos = new Vector3f(tile.getPosition().x, 0, tile.getPosition().y);
-                    int frustrum = frustumIntersection.intersectAab(new Vector3f(tilePos).sub(1.0f, 1.1f, 1.0f), new Vector3f(tilePos).add(1.0f,3.0f, 1.0f));
-                    // Calculate the Model matrix in World coordinates
-                    if (frustrum == -2 || frustrum == -1) {
-                        Mesh mesh = tile.getMesh();
-                        model = transformation.getWorldMatrix(
-                                new Vector3f(tile.getPosition().x, 0, tile.getPosition().y),
-                                tile.getRotation(),
-                                0.5f);
-                        shaderManager.updateSceneShader(model, projectionAndView, mesh.getMaterial());
-                        shaderManager.allocateTextureUnitsToSceneShader(null, sceneLight);
-                        shaderManager.setSceneShaderModeDefault();
-                        // Render the mesh
-                        mesh.render();
+                    for (int x = minX; x < maxX; x++) {
+                        for (int y = minY; y < maxY; y++) {
+                            int index = x * height + y;
+                            if (!map.hasTile(index) || (visibility != null && !visibility.isVisible(index))) {
+                                continue;
+                            }
+                            Vector3f tilePos = new Vector3f(x, 0, y);
+                            int frustrum = frustumIntersection.intersectAab(new Vector3f(tilePos).sub(1.0f, 1.1f, 1.0f), new Vector3f(tilePos).add(1.0f,3.0f, 1.0f));
+                            // Calculate the Model matrix in World coordinates
+                            if (frustrum == -2 || frustrum == -1) {
+                                Mesh mesh = map.getMesh(index);
+                                model = transformation.getWorldMatrix(
+                                        tilePos,
+                                        map.getRotation(index),
+                                        0.5f);
+                                shaderManager.updateSceneShader(model, projectionAndView, mesh.getMaterial());
+                                shaderManager.allocateTextureUnitsToSceneShader(null, sceneLight);
+                                shaderManager.setSceneShaderModeDefault();
+                                // Render the mesh
+                                mesh.render();
+                            }
+                        }
                     }
                 }
             }
@@ -209,6 +255,9 @@ public class Renderer {
 
         // Render Entities
         for (Entity entity : entities) {
+            if (visibility != null && !visibility.isVisible(entity.getPosition().x, entity.getPosition().z)) {
+                continue;
+            }
             int frustrum = frustumIntersection.intersectAab(new Vector3f(entity.getPosition()).sub(1.0f, 1.1f, 1.0f), new Vector3f(entity.getPosition()).add(1.0f,3.0f, 1.0f));
             if (frustrum == -2 || frustrum == -1) {
                 Mesh mesh = entity.getMesh();
@@ -233,10 +282,47 @@ public class Renderer {
   
     public void terminate() {
         shaderManager.terminate();
+        shadowsManager.cleanup();
     }
 
     public void resetShadowMap(){
         firstRender = true;
+        shadowsManager.getScheduler().invalidate();
+    }
+
+    /**
+     * Limit the number of shadow map faces of point and spot lights that are refreshed every frame
+     */
+    public void setShadowFaceBudget(int faces) {
+        shadowsManager.getScheduler().setFaceBudget(faces);
+    }
+
+    /**
+     * Limit the GPU time spent on refreshing shadow maps of point and spot lights every frame
+     */
+    public void setShadowTimeBudget(float milliseconds) {
+        shadowsManager.getScheduler().setTimeBudget(milliseconds);
+    }
+
+    /**
+     * Load and store the static shadow maps of a level on disk instead of rendering them on every load
+     */
+    public void setShadowCacheEnable(boolean status) {
+        this.shadowCacheEnable = status;
+    }
+
+    /**
+     * Limit the filter used to soften shadow edges, see ShadowFilter
+     */
+    public void setShadowFilter(int maxFilter) {
+        shadowFilter.setMaxFilter(maxFilter);
+    }
+
+    /**
+     * @return Filter settings of this renderer, for the importance thresholds and the point light limit
+     */
+    public ShadowFilter getShadowFilter() {
+        return shadowFilter;
     }
 
     public void setHdrEnable(boolean status) {
@@ -2,10 +2,15 @@ package game;
 
 import engine.GameWindow;
 import engine.Transformation;
+import engine.lights.PointLight;
 import engine.lights.SceneLight;
+import engine.lights.SpotLight;
 import engine.util.Utilities;
 import graphics.Material;
 import graphics.Shader;
+import graphics.ShadowFilter;
+import graphics.ShadowMap;
+import graphics.ShadowMapPool;
 import graphics.Texture;
 import org.joml.Matrix4f;
 import org.joml.Vector2f;
@@ -16,6 +21,7 @@ import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
 import static org.lwjgl.opengl.GL11.glBindTexture;
 import static org.lwjgl.opengl.GL13.*;
 import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_TEXTURE_2D_ARRAY;
 import static org.lwjgl.opengl.GL30.glBindFramebuffer;
 
 public class ShaderManager {
@@ -54,6 +60,7 @@ public class ShaderManager {
 
         // Shadow mapping related uniforms
         sceneShader.createUniform("viewPos");
+        sceneShader.createUniform("view");
         sceneShader.createUniform("model");
         sceneShader.createUniform("projectionViewModel");
 
@@ -130,13 +137,15 @@ public class ShaderManager {
     public void bindSceneShader(){
         sceneShader.bind();
     }
-    public void initializeSceneShader(Vector3f viewPos, boolean shadowEnable, SceneLight sceneLight, float specularPower){
+    public void initializeSceneShader(Vector3f viewPos, Matrix4f viewMatrix, boolean shadowEnable, SceneLight sceneLight, float specularPower, ShadowFilter shadowFilter){
         if (sceneLight == null) return;
         int numPointLights = sceneLight.pointLights != null ? sceneLight.pointLights.size() : 0;
         int numSpotLights = sceneLight.spotLights != null ? sceneLight.spotLights.size() : 0;
 
         // Base variables
         sceneShader.setUniform("viewPos", viewPos);
+        // Used to select the shadow cascade
+        sceneShader.setUniform("view", viewMatrix);
         sceneShader.setUniform("ambientLight", sceneLight.ambientLight.getLight());
         sceneShader.setUniform("specularPower", specularPower);
         // Texture for the model
@@ -155,14 +164,20 @@ public class ShaderManager {
         for (int i = 0; i < numPointLights; i++) {
             sceneShader.setUniform("pointLights[" + i + "].staticShadowMap",  1 + i * 2);
             sceneShader.setUniform("pointLights[" + i + "].dynamicShadowMap", 1 + i * 2 + 1);
+            PointLight light = sceneLight.pointLights.get(i);
+            sceneShader.setUniform("pointLights[" + i + "].shadowFilter",
+                    shadowFilter.selectCube(light.getIntensity(), light.getPosition(), viewPos));
         }
         for (int i = 0; i < numSpotLights; i++) {
             sceneShader.setUniform("spotLights[" + i + "].staticShadowMap",  1 + numPointLights * 2 + i * 2);
             sceneShader.setUniform("spotLights[" + i + "].dynamicShadowMap", 1 + numPointLights * 2 + i * 2 + 1);
+            SpotLight light = sceneLight.spotLights.get(i);
+            sceneShader.setUniform("spotLights[" + i + "].shadowFilter",
+                    shadowFilter.select(light.getIntensity(), light.getPosition(), viewPos));
         }
         if (sceneLight.directionalLight != null) {
-            sceneShader.setUniform("directionalLight.staticShadowMap",  1 + numPointLights * 2 + numSpotLights * 2);
-            sceneShader.setUniform("directionalLight.dynamicShadowMap", 1 + numPointLights * 2 + numSpotLights * 2 + 1);
+            sceneShader.setUniform("directionalLight.shadowMap",  1 + numPointLights * 2 + numSpotLights * 2);
+            sceneShader.setUniform("directionalLight.shadowFilter", shadowFilter.selectDirectional());
         }
     }
     public void updateSceneShader(Matrix4f model, Matrix4f projectionAndView, Material material) {
@@ -185,36 +200,32 @@ public class ShaderManager {
 
         for (int i = 0; i < numPointLights; i++) {
             // Static Shadows
-            if (!sceneLight.pointLights.get(i).isDynamicOnly()) {
-                glActiveTexture(GL_TEXTURE1 + (i * 2));
-                glBindTexture(GL_TEXTURE_CUBE_MAP, sceneLight.pointLights.get(i).getStaticShadowMap().getDepthMap());
-            } else {
-                glActiveTexture(GL_TEXTURE1 + (i * 2));
-                glBindTexture(GL_TEXTURE_CUBE_MAP, sceneLight.pointLights.get(i).getDynamicShadowMap().getDepthMap());
-            }
+            glActiveTexture(GL_TEXTURE1 + (i * 2));
+            glBindTexture(GL_TEXTURE_CUBE_MAP, getDepthMap(sceneLight.pointLights.get(i).getStaticShadowMap(), GL_TEXTURE_CUBE_MAP));
             // Dynamic Shadows
             glActiveTexture(GL_TEXTURE1 + (i * 2) + 1);
-            glBindTexture(GL_TEXTURE_CUBE_MAP, sceneLight.pointLights.get(i).getDynamicShadowMap().getDepthMap());
+            glBindTexture(GL_TEXTURE_CUBE_MAP, getDepthMap(sceneLight.pointLights.get(i).getDynamicShadowMap(), GL_TEXTURE_CUBE_MAP));
         }
         for (int i = 0; i < numSpotLights; i++) {
             // Static Shadows
             glActiveTexture(GL_TEXTURE1 + numPointLights * 2 + (i * 2));
-            glBindTexture(GL_TEXTURE_2D, sceneLight.spotLights.get(i).getStaticShadowMap().getDepthMap());
+            glBindTexture(GL_TEXTURE_2D, getDepthMap(sceneLight.spotLights.get(i).getStaticShadowMap(), GL_TEXTURE_2D));
             // Dynamic Shadows
             glActiveTexture(GL_TEXTURE1 + numPointLights * 2 + (i * 2) + 1);
-            glBindTexture(GL_TEXTURE_2D, sceneLight.spotLights.get(i).getStaticShadowMap().getDepthMap());
+            glBindTexture(GL_TEXTURE_2D, getDepthMap(sceneLight.spotLights.get(i).getDynamicShadowMap(), GL_TEXTURE_2D));
         }
         if (sceneLight.directionalLight != null) {
-            // Static Shadows
-            if (!sceneLight.directionalLight.isDynamicOnly()) {
-                glActiveTexture(GL_TEXTURE1 + numPointLights * 2 + numSpotLights * 2);
-                glBindTexture(GL_TEXTURE_2D, sceneLight.directionalLight.getStaticShadowMap().getDepthMap());
-            }
-            // Dynamic Shadows
-            glActiveTexture(GL_TEXTURE1 + numPointLights * 2 + numSpotLights * 2 + 1);
-            glBindTexture(GL_TEXTURE_2D, sceneLight.directionalLight.getDynamicShadowMap().getDepthMap());
+            // Cascades
+            glActiveTexture(GL_TEXTURE1 + numPointLights * 2 + numSpotLights * 2);
+            glBindTexture(GL_TEXTURE_2D_ARRAY, getDepthMap(sceneLight.directionalLight.getShadowMap(), GL_TEXTURE_2D_ARRAY));
         }
     }
+    /**
+     * Shadow maps are only allocated once a light casts shadows, bind an empty map until then
+     */
+    private int getDepthMap(ShadowMap shadowMap, int target) {
+        return shadowMap != null ? shadowMap.getDepthMap() : ShadowMapPool.getFallbackDepthMap(target);
+    }
     public void setSceneShaderMode0(float step, Vector3f headPos){
         sceneShader.setUniform("mode", 0);
         sceneShader.setUniform("step", step);
@@ -230,6 +241,7 @@ public class ShaderManager {
     public void unbindSceneShader(){
         glBindTexture(GL_TEXTURE_CUBE_MAP, 0);
         glBindTexture(GL_TEXTURE_2D, 0);
+        glBindTexture(GL_TEXTURE_2D_ARRAY, 0);
         sceneShader.unbind();
     }
 
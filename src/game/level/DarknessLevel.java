@@ -25,7 +25,9 @@ import engine.util.AssetStore;
 import game.GUI;
 import game.LevelController;
 import game.Renderer;
+import game.map.FieldOfView;
 import game.map.Map;
+import game.map.TagId;
 import game.map.loader.MapFileLoader;
 import game.map.tile.Tile;
 import game.puzzle.Puzzle;
@@ -42,6 +44,12 @@ import java.util.Random;
 
 public class DarknessLevel extends Level {
 
+    private static final TagId TRIGGER = TagId.of("trigger");
+    private static final TagId WELCOME_TEXT = TagId.of("welcome_text");
+    private static final TagId LIGHT_PUZZLE_TRIGGER = TagId.of("light_puzzle_trigger");
+    private static final TagId LADDER = TagId.of("ladder");
+    private static final TagId GEM_PICKUP = TagId.of("gem_pickup");
+
     private Map map;
     private Player player;
     private Renderer renderer;
@@ -107,6 +115,10 @@ public class DarknessLevel extends Level {
         Vector2i spawn = map.getTile("spawn").getPosition();
         player.setPosition(spawn.x, 0.5f, spawn.y);
 
+        // The level is lit by the player alone, so only draw what the player can see
+        map.setFieldOfView(new FieldOfView(map));
+        map.getFieldOfView().update(spawn.x, spawn.y);
+
         // Setup camera
         camera = new FollowCamera(
                 player,
@@ -228,7 +240,7 @@ public class DarknessLevel extends Level {
         gemText = new ScrollingPopup("You found the red gem! Go back to the main room to find more gems.", () -> {
             gui.removeComponent();
             redGem.remove(() -> entitiesToRemove.add(redGem));
-            map.getTiles("gem_pickup").forEach(t -> t.removeTag("trigger"));
+            map.getTiles("gem_pickup").forEach(t -> t.removeTag(TRIGGER));
             paused = false;
         });
 
@@ -238,7 +250,7 @@ public class DarknessLevel extends Level {
                     gui.setComponent(new ScrollingPopup("\"Dark humor is like food. Not everyone gets it.\" Hahahaha, classic!", () -> {
                        gui.setComponent(new ScrollingPopup("So where were we? Ah right. We got gems to collect", () -> {
                            textIndicator1.remove(() -> entitiesToRemove.add(textIndicator1));
-                           textTile1.removeTag("trigger");
+                           textTile1.removeTag(TRIGGER);
                            paused = false;
                            gui.removeComponent();
                        }));
@@ -265,7 +277,7 @@ public class DarknessLevel extends Level {
                                 sceneLight.pointLights.add(flashLight);
                                 renderer.resetShadowMap();
                                 pencilIndicator.remove(() -> entitiesToRemove.add(pencilIndicator));
-                                pencilTile1.removeTag("trigger");
+                                pencilTile1.removeTag(TRIGGER);
                                 paused = false;
                                 gui.removeComponent();
                             }));
@@ -278,7 +290,7 @@ public class DarknessLevel extends Level {
                                 gui.setComponent(new ScrollingPopup("Ahem... Sorry you had to see that... But you simply cannot have lightning without an evil laugh", () -> {
                                     lightningEnabled = true;
                                     pencilIndicator.remove(() -> entitiesToRemove.add(pencilIndicator));
-                                    pencilTile1.removeTag("trigger");
+                                    pencilTile1.removeTag(TRIGGER);
                                     paused = false;
                                 }));
                             }));
@@ -295,7 +307,7 @@ public class DarknessLevel extends Level {
                                         false
                                 );
                                 pencilIndicator.remove(() -> entitiesToRemove.add(pencilIndicator));
-                                pencilTile1.removeTag("trigger");
+                                pencilTile1.removeTag(TRIGGER);
                                 paused = false;
                             }));
                         }),
@@ -305,7 +317,7 @@ public class DarknessLevel extends Level {
                                 gui.setComponent(new ScrollingPopup("Oh, right, music. I know something that fits this situation.", () -> {
                                     sourceBack.play();
                                     pencilIndicator.remove(() -> entitiesToRemove.add(pencilIndicator));
-                                    pencilTile1.removeTag("trigger");
+                                    pencilTile1.removeTag(TRIGGER);
                                     paused = false;
                                 }));
                             }));
@@ -329,6 +341,20 @@ public class DarknessLevel extends Level {
                 pencilIndicator
         ));
 
+        snapshot = new LevelSnapshot(map, entities, sceneLight, gui, renderer);
+        reset();
+    }
+
+    @Override
+    protected void reset() {
+        entitiesToRemove.clear();
+        text1.reset();
+        gemText.reset();
+        soundManager.getSoundSource("helloDarkness").stop();
+        soundManager.getSoundSource("thunder").stop();
+        lightningEnabled = false;
+        deltaUpdates = 0;
+        lightAmount = 0f;
         paused = false;
     }
 
@@ -359,6 +385,7 @@ public class DarknessLevel extends Level {
 
         entities.forEach(e -> e.update(interval));
         entitiesToRemove.forEach(e -> entities.remove(e));
+        map.getFieldOfView().update(player.getPosition().x, player.getPosition().z);
 
         Tile currentPlayerTile = map.getTile(
                 Math.round(player.getPosition().x),
@@ -395,21 +422,21 @@ public class DarknessLevel extends Level {
             }
         }
 
-        if (currentPlayerTile.hasTag("trigger")) {
+        if (currentPlayerTile.hasTag(TRIGGER)) {
             if (!gui.hasComponent()) {
                 gui.setComponent(new FloatingScrollText("Press 'e' to interact"));
             }
 
             if (KeyBinding.isInteractPressed()) {
-                if (currentPlayerTile.hasTag("welcome_text")) {
+                if (currentPlayerTile.hasTag(WELCOME_TEXT)) {
                     gui.setComponent(text1);
-                } else if (currentPlayerTile.hasTag("light_puzzle_trigger")) {
+                } else if (currentPlayerTile.hasTag(LIGHT_PUZZLE_TRIGGER)) {
                     gui.setComponent(new PuzzleGUI(puzzle1));
-                } else if (currentPlayerTile.hasTag("ladder")) {
+                } else if (currentPlayerTile.hasTag(LADDER)) {
                     levelController.switchToMainRoom(MainRoomLevel.MAIN_ROOM_SPAWN.FROM_LEVEL_1);
                 }
 
-                if (currentPlayerTile.hasTag("gem_pickup")) {
+                if (currentPlayerTile.hasTag(GEM_PICKUP)) {
                     gui.setComponent(gemText);
                     levelController.setGemFound(LevelController.GEM.RED);
                     paused = true;
@@ -424,9 +451,6 @@ public class DarknessLevel extends Level {
         camera.update(interval);
         player.update(interval);
 
-        if (sceneLight.directionalLight != null) {
-            sceneLight.directionalLight.setPosition(new Vector3f(player.getPosition()).add(new Vector3f(0.0f, 6.0f, 0.0f)));
-        }
         soundManager.updateListenerPosition(camera);
     }
 
@@ -3,6 +3,7 @@ package game.level;
 import engine.IGameLogic;
 import engine.MouseInput;
 import engine.camera.Camera;
+import engine.util.AssetStore;
 import game.LevelController;
 import game.Renderer;
 
@@ -11,6 +12,11 @@ public abstract class Level implements IGameLogic {
     protected LevelController levelController;
     protected Camera camera;
     protected Renderer renderer;
+    /**
+     * State of the level at the end of init, which a restart rewinds to instead of loading the level
+     * again. Null if the level is loaded again when it restarts.
+     */
+    protected LevelSnapshot snapshot;
 
     public Level(LevelController levelController) {
         this.levelController = levelController;
@@ -18,6 +24,28 @@ public abstract class Level implements IGameLogic {
 
     public abstract void init() throws Exception;
 
+    /**
+     * Restart the level. A level with a snapshot is rewound in place, which keeps its meshes, lights
+     * and shadow maps, any other level is terminated and initialised again.
+     */
+    public void restart() throws Exception {
+        if (snapshot == null) {
+            terminate();
+            AssetStore.clearMeshCache();
+            init();
+            return;
+        }
+        snapshot.restore();
+        reset();
+    }
+
+    /**
+     * Reset the fields of the level that the snapshot does not cover, called after the snapshot is
+     * restored
+     */
+    protected void reset() {
+    }
+
     @Override
     public abstract void input(MouseInput mouseInput);
 
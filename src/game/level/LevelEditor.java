@@ -117,6 +117,8 @@ public class LevelEditor extends Level implements GLFWKeyCallbackI {
 
         // Setup rendering
         renderer.init();
+        // The map changes constantly while editing
+        renderer.setShadowCacheEnable(false);
 
         // Setup keyboard
         glfwSetKeyCallback(GameWindow.getGameWindow().getWindowHandle(), this);
@@ -314,11 +316,11 @@ public class LevelEditor extends Level implements GLFWKeyCallbackI {
                         Mesh mesh = AssetStore.getTileMesh(tileModels.get(index));
                         mesh.setName(tileModels.get(index));
                         mesh.setMaterial(new Material(0.0f));
-                        tiles[Math.round(currentEntity.getPosition().x)][Math.round(currentEntity.getPosition().z)] = new Tile(
+                        map.setTile(Math.round(currentEntity.getPosition().x), Math.round(currentEntity.getPosition().z), new Tile(
                                 new Vector2i(Math.round(currentEntity.getPosition().x), Math.round(currentEntity.getPosition().z)),
                                 new Vector3f(currentEntity.getRotation()),
                                 mesh,
-                                true);
+                                true));
                         renderer.resetShadowMap();
                     } else {
                         Mesh mesh = AssetStore.getEntityMesh(entityModels.get(entityIndex));
@@ -383,8 +385,7 @@ public class LevelEditor extends Level implements GLFWKeyCallbackI {
             } else if (key == 261) { // Numpad Del Delete tile
                 if (!editingLights) {
                     if (!editingEntity) {
-                        tiles[Math.round(currentEntity.getPosition().x)][Math.round(currentEntity.getPosition().z)] = null;
-                        map = new Map(tiles);
+                        map.setTile(Math.round(currentEntity.getPosition().x), Math.round(currentEntity.getPosition().z), null);
                         renderer.resetShadowMap();
                     } else {
                         int index = findClosestEntity(currentEntity.getPosition());
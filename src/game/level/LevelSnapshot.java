@@ -0,0 +1,258 @@
+package game.level;
+
+import engine.entities.Entity;
+import engine.lights.AmbientLight;
+import engine.lights.DirectionalLight;
+import engine.lights.PointLight;
+import engine.lights.SceneLight;
+import engine.lights.SpotLight;
+import game.GUI;
+import game.Renderer;
+import game.map.Map;
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of a level right after it was set up, so the level can be restarted without loading it again.
+ * <p>
+ * The snapshot holds the state of the map, which entities are in the level and their transforms,
+ * and the parameters of the lights. Restoring it rewinds the same objects in place, so all meshes,
+ * shadow maps and the baked static shadows are kept. The static shadows are only rendered again
+ * when the static scene differs from the snapshot. Flags and other fields of the level itself are
+ * reset by the level, see Level.reset.
+ */
+public class LevelSnapshot {
+
+    /**
+     * Number of floats stored per light, in the order of the save methods below
+     */
+    private static final int POINT_LIGHT_VALUES = 12;
+    private static final int SPOT_LIGHT_VALUES = 15;
+    private static final int DIRECTIONAL_LIGHT_VALUES = 10;
+
+    private final Map map;
+    private final Map.State mapState;
+
+    private final List<Entity> entities;
+    private final List<Entity> initialEntities;
+    private final Vector3f[] transforms;
+
+    private final SceneLight sceneLight;
+    private final List<PointLight> pointLights;
+    private final List<SpotLight> spotLights;
+    private final DirectionalLight directionalLight;
+    private final AmbientLight ambientLight;
+    private final float[] pointLightValues, spotLightValues, directionalLightValues;
+    private final Vector3f ambientLightValue;
+
+    private final GUI gui;
+    private final Renderer renderer;
+
+    /**
+     * Capture the current state of a level
+     *
+     * @param map        The map of the level
+     * @param entities   The list of entities of the level, restored in place
+     * @param sceneLight The lights of the level
+     * @param gui        The gui of the level, of which the components are removed on restore
+     * @param renderer   The renderer of the level, of which the static shadows are reset if needed
+     */
+    public LevelSnapshot(Map map, List<Entity> entities, SceneLight sceneLight, GUI gui, Renderer renderer) {
+        this.map = map;
+        this.mapState = map.saveState();
+        this.entities = entities;
+        this.initialEntities = new ArrayList<>(entities);
+        this.transforms = new Vector3f[initialEntities.size() * 3];
+        for (int i = 0; i < initialEntities.size(); i++) {
+            Entity entity = initialEntities.get(i);
+            transforms[i * 3] = new Vector3f(entity.getPosition());
+            transforms[i * 3 + 1] = new Vector3f(entity.getRotation());
+            transforms[i * 3 + 2] = new Vector3f(entity.getScaleVector());
+        }
+
+        this.sceneLight = sceneLight;
+        this.pointLights = new ArrayList<>(sceneLight.pointLights);
+        this.spotLights = new ArrayList<>(sceneLight.spotLights);
+        this.pointLightValues = new float[pointLights.size() * POINT_LIGHT_VALUES];
+        for (int i = 0; i < pointLights.size(); i++) {
+            savePointLight(pointLights.get(i), pointLightValues, i * POINT_LIGHT_VALUES);
+        }
+        this.spotLightValues = new float[spotLights.size() * SPOT_LIGHT_VALUES];
+        for (int i = 0; i < spotLights.size(); i++) {
+            saveSpotLight(spotLights.get(i), spotLightValues, i * SPOT_LIGHT_VALUES);
+        }
+        this.directionalLight = sceneLight.directionalLight;
+        this.directionalLightValues = new float[DIRECTIONAL_LIGHT_VALUES];
+        if (directionalLight != null) {
+            saveDirectionalLight(directionalLight, directionalLightValues);
+        }
+        this.ambientLight = sceneLight.ambientLight;
+        this.ambientLightValue = ambientLight != null ? new Vector3f(ambientLight.getLight()) : null;
+
+        this.gui = gui;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Put the level back in the captured state
+     */
+    public void restore() {
+        boolean staticSceneChanged = map.restoreState(mapState);
+
+        // Entities that were added or removed while playing, the added ones are dropped and reset so
+        // they let go of the map, e.g. the pathfinding of a mob
+        for (Entity entity : entities) {
+            if (initialEntities.contains(entity)) {
+                continue;
+            }
+            if (entity.getMesh() != null && entity.getMesh().isStatic()) {
+                staticSceneChanged = true;
+            }
+            entity.reset();
+        }
+        entities.clear();
+        entities.addAll(initialEntities);
+        for (int i = 0; i < initialEntities.size(); i++) {
+            Entity entity = initialEntities.get(i);
+            boolean moved = !entity.getPosition().equals(transforms[i * 3])
+                    || !entity.getRotation().equals(transforms[i * 3 + 1])
+                    || !entity.getScaleVector().equals(transforms[i * 3 + 2]);
+            if (moved && entity.getMesh() != null && entity.getMesh().isStatic()) {
+                staticSceneChanged = true;
+            }
+            entity.setPosition(transforms[i * 3]);
+            entity.setRotation(transforms[i * 3 + 1]);
+            entity.setScale(transforms[i * 3 + 2]);
+            entity.reset();
+        }
+
+        if (!sceneLight.pointLights.equals(pointLights) || !sceneLight.spotLights.equals(spotLights)) {
+            staticSceneChanged = true;
+            sceneLight.pointLights.clear();
+            sceneLight.pointLights.addAll(pointLights);
+            sceneLight.spotLights.clear();
+            sceneLight.spotLights.addAll(spotLights);
+        }
+        for (int i = 0; i < pointLights.size(); i++) {
+            staticSceneChanged |= restorePointLight(pointLights.get(i), pointLightValues, i * POINT_LIGHT_VALUES);
+        }
+        for (int i = 0; i < spotLights.size(); i++) {
+            staticSceneChanged |= restoreSpotLight(spotLights.get(i), spotLightValues, i * SPOT_LIGHT_VALUES);
+        }
+        // Levels may have replaced the directional and ambient light
+        if (sceneLight.directionalLight != directionalLight) {
+            if (sceneLight.directionalLight != null) {
+                sceneLight.directionalLight.cleanup();
+            }
+            sceneLight.directionalLight = directionalLight;
+        }
+        if (directionalLight != null) {
+            restoreDirectionalLight(directionalLight, directionalLightValues);
+        }
+        sceneLight.ambientLight = ambientLight;
+        if (ambientLight != null) {
+            ambientLight.getLight().set(ambientLightValue);
+        }
+
+        // Removed on the next gui update, restarts are often started by a popup while the gui loops over its components
+        gui.removeComponent();
+        if (staticSceneChanged) {
+            renderer.resetShadowMap();
+        }
+    }
+
+    private static void savePointLight(PointLight light, float[] values, int offset) {
+        offset = save(light.getColor(), values, offset);
+        offset = save(light.getPosition(), values, offset);
+        values[offset++] = light.getIntensity();
+        values[offset++] = light.getAttenuation().getConstant();
+        values[offset++] = light.getAttenuation().getLinear();
+        values[offset++] = light.getAttenuation().getExponent();
+        values[offset++] = light.getPlane().x;
+        values[offset] = light.getPlane().y;
+    }
+
+    /**
+     * @return Whether the light was moved
+     */
+    private static boolean restorePointLight(PointLight light, float[] values, int offset) {
+        offset = restore(light.getColor(), values, offset);
+        boolean moved = !matches(light.getPosition(), values, offset);
+        offset = restore(light.getPosition(), values, offset);
+        light.setIntensity(values[offset++]);
+        light.getAttenuation().setConstant(values[offset++]);
+        light.getAttenuation().setLinear(values[offset++]);
+        light.getAttenuation().setExponent(values[offset++]);
+        moved |= light.getPlane().x != values[offset] || light.getPlane().y != values[offset + 1];
+        light.getPlane().set(values[offset], values[offset + 1]);
+        if (moved) {
+            light.setupShadowViews();
+        }
+        return moved;
+    }
+
+    private static void saveSpotLight(SpotLight light, float[] values, int offset) {
+        offset = save(light.getColor(), values, offset);
+        offset = save(light.getPosition(), values, offset);
+        offset = save(light.getConeDirection(), values, offset);
+        values[offset++] = light.getIntensity();
+        values[offset++] = light.getCutOff();
+        values[offset++] = light.getOuterCutOff();
+        values[offset++] = light.getAttenuation().getConstant();
+        values[offset++] = light.getAttenuation().getLinear();
+        values[offset] = light.getAttenuation().getExponent();
+    }
+
+    /**
+     * @return Whether the light was moved or turned
+     */
+    private static boolean restoreSpotLight(SpotLight light, float[] values, int offset) {
+        offset = restore(light.getColor(), values, offset);
+        boolean moved = !matches(light.getPosition(), values, offset) || !matches(light.getConeDirection(), values, offset + 3);
+        offset = restore(light.getPosition(), values, offset);
+        offset = restore(light.getConeDirection(), values, offset);
+        if (moved) {
+            // Updates the light space matrix
+            light.setConeDirection(light.getConeDirection());
+        }
+        light.setIntensity(values[offset++]);
+        light.setCutOff(values[offset++]);
+        light.setOuterCutOff(values[offset++]);
+        light.getAttenuation().setConstant(values[offset++]);
+        light.getAttenuation().setLinear(values[offset++]);
+        light.getAttenuation().setExponent(values[offset]);
+        return moved;
+    }
+
+    private static void saveDirectionalLight(DirectionalLight light, float[] values) {
+        int offset = save(light.getColor(), values, 0);
+        offset = save(light.getPosition(), values, offset);
+        offset = save(light.getDirection(), values, offset);
+        values[offset] = light.getIntensity();
+    }
+
+    private static void restoreDirectionalLight(DirectionalLight light, float[] values) {
+        int offset = restore(light.getColor(), values, 0);
+        offset = restore(light.getPosition(), values, offset);
+        offset = restore(light.getDirection(), values, offset);
+        light.setIntensity(values[offset]);
+    }
+
+    private static int save(Vector3f vector, float[] values, int offset) {
+        values[offset] = vector.x;
+        values[offset + 1] = vector.y;
+        values[offset + 2] = vector.z;
+        return offset + 3;
+    }
+
+    private static int restore(Vector3f vector, float[] values, int offset) {
+        vector.set(values[offset], values[offset + 1], values[offset + 2]);
+        return offset + 3;
+    }
+
+    private static boolean matches(Vector3f vector, float[] values, int offset) {
+        return vector.x == values[offset] && vector.y == values[offset + 1] && vector.z == values[offset + 2];
+    }
+}
@@ -23,6 +23,7 @@ import game.GUI;
 import game.LevelController;
 import game.Renderer;
 import game.map.Map;
+import game.map.TagId;
 import game.map.loader.MapFileLoader;
 import game.map.tile.Tile;
 import graphics.Material;
@@ -37,6 +38,14 @@ import java.util.Arrays;
 
 public class MainRoomLevel extends Level {
 
+    private static final TagId TREASURE_ROOM = TagId.of("treasure_room");
+    private static final TagId TRIGGER = TagId.of("trigger");
+    private static final TagId MAIN_ROOM_TEXT_1 = TagId.of("main_room_text_1");
+    private static final TagId ENTRANCE_LEVEL_1 = TagId.of("entrance_level_1");
+    private static final TagId ENTRANCE_LEVEL_2 = TagId.of("entrance_level_2");
+    private static final TagId ENTRANCE_LEVEL_3 = TagId.of("entrance_level_3");
+    private static final TagId ENTRANCE_LEVEL_4 = TagId.of("entrance_level_4");
+
     private Map map;
     private Player player;
     private Renderer renderer;
@@ -173,7 +182,7 @@ public class MainRoomLevel extends Level {
                 gui.setComponent(new ScrollingPopup("In order to open the door, however, you must find all four gems hidden in this dungeon", () -> {
                     gui.setComponent(new ScrollingPopup("How you ask? Well, simply solve all the puzzles in the four adjacent rooms the ancient dwarfs let you! Good luck.", () -> {
                         textIndicator1.remove(() -> entitiesToRemove.add(textIndicator1));
-                        textTile1.removeTag("trigger");
+                        textTile1.removeTag(TRIGGER);
                         paused = false;
                     }));
                 }));
@@ -349,29 +358,29 @@ public class MainRoomLevel extends Level {
                 Math.round(player.getPosition().z)
         );
 
-        if (currentPlayerTile.hasTag("treasure_room")) {
+        if (currentPlayerTile.hasTag(TREASURE_ROOM)) {
             levelController.switchToLevel(9);
         }
 
-        if (currentPlayerTile.hasTag("trigger")) {
+        if (currentPlayerTile.hasTag(TRIGGER)) {
             if (!gui.hasComponent()) {
                 gui.setComponent(new FloatingScrollText("Press 'e' to interact"));
             }
             if (KeyBinding.isInteractPressed()) {
-                if (currentPlayerTile.hasTag("main_room_text_1")) {
+                if (currentPlayerTile.hasTag(MAIN_ROOM_TEXT_1)) {
                     gui.setComponent(text1);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("entrance_level_1")) {
+                if (currentPlayerTile.hasTag(ENTRANCE_LEVEL_1)) {
                     levelController.switchToLevel(4);
                 }
-                if (currentPlayerTile.hasTag("entrance_level_2")) {
+                if (currentPlayerTile.hasTag(ENTRANCE_LEVEL_2)) {
                     levelController.switchToLevel(6);
                 }
-                if (currentPlayerTile.hasTag("entrance_level_3")) {
+                if (currentPlayerTile.hasTag(ENTRANCE_LEVEL_3)) {
                     levelController.switchToLevel(5);
                 }
-                if (currentPlayerTile.hasTag("entrance_level_4")) {
+                if (currentPlayerTile.hasTag(ENTRANCE_LEVEL_4)) {
                     levelController.switchToLevel(8);
                 }
             }
@@ -381,7 +390,6 @@ public class MainRoomLevel extends Level {
 
         camera.update(interval);
         player.update(interval);
-        sceneLight.directionalLight.setPosition(new Vector3f(player.getPosition()).add(new Vector3f(0.0f, 6.0f, 0.0f)));
     }
 
     @Override
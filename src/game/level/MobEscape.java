@@ -24,6 +24,7 @@ import game.GUI;
 import game.LevelController;
 import game.Renderer;
 import game.map.Map;
+import game.map.TagId;
 import game.map.loader.MapFileLoader;
 import game.map.tile.Tile;
 import game.mobs.Snake;
@@ -41,6 +42,13 @@ import java.util.Arrays;
 import java.util.List;
 
 public class MobEscape extends Level {
+
+    private static final TagId MOB_TRIGGER = TagId.of("mob_trigger");
+    private static final TagId END = TagId.of("end");
+    private static final TagId TRIGGER = TagId.of("trigger");
+    private static final TagId TEXT_1 = TagId.of("text_1");
+    private static final TagId PUZZLE_1 = TagId.of("puzzle_1");
+
     private Map map;
     private Player player;
     private Renderer renderer;
@@ -127,7 +135,6 @@ public class MobEscape extends Level {
         gui.initialize();
 
         // Setup puzzle
-        puzzleSolved = false;
         arcCollapsePuzzle = new Puzzle(
                 "To collapse the arc you draw:",
                 // Possible guesses
@@ -148,7 +155,7 @@ public class MobEscape extends Level {
                     map.getTile("stone_2").setSolid(true);
                     map.getTile("stone_2").getMesh().setIsStatic(false);
                     // Remove tag
-                    puzzle1Tile.removeTag("trigger");
+                    puzzle1Tile.removeTag(TRIGGER);
                     // Remove indicator
                     puzzle1Inicator.remove(() -> {
                         entitiesToRemove.add(puzzle1Inicator);
@@ -194,13 +201,6 @@ public class MobEscape extends Level {
         snakeMesh.setMaterial(new Material(0.0f));
         snakeMesh.setIsStatic(false);
 
-        snake = new Snake(snakeMesh, map);
-        snake.setScale(0.08f);
-        snake.setPosition(14, 0.49f, 1);
-        snake.setSpeed(2.5f);
-        snake.setTarget(player);
-        snake.followOnSightOnly(false);
-
         text1 = new ScrollingPopup("Welcome inside the dungeon, traveller. Please, make yourself at home.", () -> {
             gui.setComponent(new ScrollingPopup("Please, be aware of our... pets. Some won't hurt you, but others try to chase you.", () -> {
                 gui.setComponent(new ScrollingPopup("The latter you can't fight, so you must find other ways of keeping them away.", () -> {
@@ -252,6 +252,25 @@ public class MobEscape extends Level {
                 puzzle1Inicator
         ));
 
+        snapshot = new LevelSnapshot(map, entities, sceneLight, gui, renderer);
+        reset();
+    }
+
+    @Override
+    protected void reset() {
+        entitiesToRemove.clear();
+        text1.reset();
+        text2.reset();
+        text3.reset();
+
+        snake = new Snake(snakeMesh, map);
+        snake.setScale(0.08f);
+        snake.setPosition(14, 0.49f, 1);
+        snake.setSpeed(2.5f);
+        snake.setTarget(player);
+        snake.followOnSightOnly(false);
+
+        puzzleSolved = false;
         paused = false;
     }
 
@@ -294,12 +313,12 @@ public class MobEscape extends Level {
                 Math.round(player.getPosition().z)
         );
 
-        if (currentPlayerTile.hasTag("mob_trigger")) {
+        if (currentPlayerTile.hasTag(MOB_TRIGGER)) {
 
             gui.setComponent(text2);
             paused = true;
 
-            map.getTiles("mob_trigger").forEach(t -> t.removeTag("mob_trigger"));
+            map.getTiles("mob_trigger").forEach(t -> t.removeTag(MOB_TRIGGER));
             snake = new Snake(snakeMesh, map);
             snake.setScale(0.08f);
             Vector2i spawn = map.getTile("mob_spawn").getPosition();
@@ -326,7 +345,7 @@ public class MobEscape extends Level {
             }
         }
 
-        if (currentPlayerTile.hasTag("end")) {
+        if (currentPlayerTile.hasTag(END)) {
             if (!puzzleSolved) {
                 gui.setComponent(new ScrollingPopup("We must first get rid of the snake.", () -> {
                     Vector2i arcPos = map.getTile("arc").getPosition();
@@ -342,18 +361,18 @@ public class MobEscape extends Level {
         }
 
         // Check for tiles that have a trigger
-        if (currentPlayerTile.hasTag("trigger")) {
+        if (currentPlayerTile.hasTag(TRIGGER)) {
             if (!gui.hasComponent()) {
                 // Show interact hint
                 gui.setComponent(new FloatingScrollText("Press 'e' to interact"));
                 // Check the exact trigger
             }
             if (KeyBinding.isInteractPressed()) {
-                if (currentPlayerTile.hasTag("text_1")) {
+                if (currentPlayerTile.hasTag(TEXT_1)) {
                     gui.setComponent(text1);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("puzzle_1")) {
+                if (currentPlayerTile.hasTag(PUZZLE_1)) {
                     gui.setComponent(text3);
                     paused = true;
                 }
@@ -26,6 +26,7 @@ import game.GUI;
 import game.LevelController;
 import game.Renderer;
 import game.map.Map;
+import game.map.TagId;
 import game.map.loader.MapFileLoader;
 import game.map.tile.Tile;
 import game.mobs.Snake;
@@ -40,6 +41,19 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class MobFastRun extends Level {
+
+    private static final TagId TRIGGER = TagId.of("trigger");
+    private static final TagId TEXT1 = TagId.of("text1");
+    private static final TagId TEXT2 = TagId.of("text2");
+    private static final TagId TEXT3 = TagId.of("text3");
+    private static final TagId PUZZLE1 = TagId.of("puzzle1");
+    private static final TagId PUZZLE2 = TagId.of("puzzle2");
+    private static final TagId PUZZLE3 = TagId.of("puzzle3");
+    private static final TagId PUZZLE4 = TagId.of("puzzle4");
+    private static final TagId END = TagId.of("end");
+    private static final TagId GEM = TagId.of("gem");
+    private static final TagId SNAKE_TRIGGER = TagId.of("snake_trigger");
+
     private Map map;
     private Player player;
     private Renderer renderer;
@@ -283,7 +297,7 @@ public class MobFastRun extends Level {
                     stoneTile.setSolid(false);
 
                     puzzle1Indicator.remove(() -> entitiesToRemove.add(puzzle1Indicator));
-                    puzzle1Tile.removeTag("trigger");
+                    puzzle1Tile.removeTag(TRIGGER);
 
                 })}, new Solution("", (s) -> {
             gui.setComponent(new ScrollingPopup("I'm not sure what to do with " + s, () -> {
@@ -340,7 +354,7 @@ public class MobFastRun extends Level {
                     crate1.setSolid(false);
 
                     puzzle2Indicator.remove(() -> entitiesToRemove.add(puzzle2Indicator));
-                    puzzle2Tile.removeTag("trigger");
+                    puzzle2Tile.removeTag(TRIGGER);
                 }),
                         new Solution("saw", (s) -> {
                             if (toolUsed == 2) {
@@ -380,7 +394,7 @@ public class MobFastRun extends Level {
                             crate1.setSolid(false);
 
                             puzzle2Indicator.remove(() -> entitiesToRemove.add(puzzle2Indicator));
-                            puzzle2Tile.removeTag("trigger");
+                            puzzle2Tile.removeTag(TRIGGER);
                         })
                 },
                 new Solution("", (s) -> {
@@ -439,7 +453,7 @@ public class MobFastRun extends Level {
                     crate2.setSolid(false);
 
                     puzzle3Indicator.remove(() -> entitiesToRemove.add(puzzle3Indicator));
-                    puzzle3Tile.removeTag("trigger");
+                    puzzle3Tile.removeTag(TRIGGER);
                 }),
                         new Solution("saw", (s) -> {
                             if (toolUsed == 2) {
@@ -479,7 +493,7 @@ public class MobFastRun extends Level {
                             crate2.setSolid(false);
 
                             puzzle3Indicator.remove(() -> entitiesToRemove.add(puzzle3Indicator));
-                            puzzle3Tile.removeTag("trigger");
+                            puzzle3Tile.removeTag(TRIGGER);
                         })
                 },
                 new Solution("", (s) -> {
@@ -515,7 +529,7 @@ public class MobFastRun extends Level {
                                 mainDoor.open();
 
                                 puzzle4Indicator.remove(() -> entitiesToRemove.add(puzzle4Indicator));
-                                puzzle4Tile.removeTag("trigger");
+                                puzzle4Tile.removeTag(TRIGGER);
 
                             } else {
                                 gui.setComponent(new ScrollingPopup("Not sure what I can do with a butterfly...", () -> {
@@ -541,6 +555,18 @@ public class MobFastRun extends Level {
         );
         entities.add(gem);
 
+        snapshot = new LevelSnapshot(map, entities, sceneLight, gui, renderer);
+        reset();
+    }
+
+    @Override
+    protected void reset() {
+        entitiesToRemove.clear();
+        text1.reset();
+        text2.reset();
+        text3.reset();
+        mob = null;
+        toolUsed = 0;
         paused = false;
     }
 
@@ -564,7 +590,6 @@ public class MobFastRun extends Level {
         if (!paused) {
             camera.update(interval);
             player.update(interval);
-            sceneLight.directionalLight.setPosition(new Vector3f(player.getPosition()).add(new Vector3f(0.0f, 6.0f, 0.0f)));
 
             entities.removeAll(entitiesToRemove);
 
@@ -592,54 +617,54 @@ public class MobFastRun extends Level {
                     Math.round(player.getPosition().z)
             );
             // Handle puzzles
-            if (currentPlayerTile.hasTag("trigger")) {
+            if (currentPlayerTile.hasTag(TRIGGER)) {
                 if (!gui.hasComponent()) {
                     // Show interact hint
                     gui.setComponent(new FloatingScrollText("Press 'e' to interact"));
                 }
                 if (KeyBinding.isInteractPressed()) {
-                    if (currentPlayerTile.hasTag("text1")) {
+                    if (currentPlayerTile.hasTag(TEXT1)) {
                         gui.setComponent(text1);
                         paused = true;
-                    } else if (currentPlayerTile.hasTag("text2")) {
+                    } else if (currentPlayerTile.hasTag(TEXT2)) {
                         gui.setComponent(text2);
                         paused = true;
-                    } else if (currentPlayerTile.hasTag("text3")) {
+                    } else if (currentPlayerTile.hasTag(TEXT3)) {
                         gui.setComponent(text3);
                         paused = true;
-                    } else if (currentPlayerTile.hasTag("puzzle1")) {
+                    } else if (currentPlayerTile.hasTag(PUZZLE1)) {
                         paused = true;
                         gui.setComponent(new ScrollingPopup("These rocks look like they could move if I had some tools for them.", () -> {
                             gui.setComponent(new PuzzleGUI(shovelRockPuzzle));
                         }));
-                    } else if (currentPlayerTile.hasTag("puzzle2")) {
+                    } else if (currentPlayerTile.hasTag(PUZZLE2)) {
                         paused = true;
                         gui.setComponent(new ScrollingPopup("This crate looks suspicious, perhaps with the right tool I could take a peek inside.", () -> {
                             gui.setComponent(new PuzzleGUI(leftCratePuzzle));
                         }));
-                    } else if (currentPlayerTile.hasTag("puzzle3")) {
+                    } else if (currentPlayerTile.hasTag(PUZZLE3)) {
                         paused = true;
                         gui.setComponent(new ScrollingPopup("This crate looks suspicious, I wonder if I could open it with a tool somehow.", () -> {
                             gui.setComponent(new PuzzleGUI(rightCratePuzzle));
                         }));
-                    } else if (currentPlayerTile.hasTag("puzzle4")) {
+                    } else if (currentPlayerTile.hasTag(PUZZLE4)) {
                         paused = true;
                         gui.setComponent(new ScrollingPopup("There is a weird shaped hole in this door...", () -> {
                             gui.setComponent(new PuzzleGUI(doorPuzzle));
                         }));
-                    } else if (currentPlayerTile.hasTag("end")) {
+                    } else if (currentPlayerTile.hasTag(END)) {
                         levelController.switchToMainRoom(MainRoomLevel.MAIN_ROOM_SPAWN.FROM_LEVEL_4);
                     }
                 }
-            } else if (currentPlayerTile.hasTag("gem")) {
+            } else if (currentPlayerTile.hasTag(GEM)) {
                 paused = true;
                 gui.setComponent(new ScrollingPopup("You found the blue gem! Quickly go back to the main room before the snake catches you!", () -> {
                     gem.remove(() -> entitiesToRemove.add(gem));
-                    currentPlayerTile.removeTag("gem");
+                    currentPlayerTile.removeTag(GEM);
                     levelController.setGemFound(LevelController.GEM.BLUE);
                     paused = false;
                 }));
-            } else if (currentPlayerTile.hasTag("snake_trigger")) {
+            } else if (currentPlayerTile.hasTag(SNAKE_TRIGGER)) {
 
                 paused = true;
 
@@ -647,7 +672,7 @@ public class MobFastRun extends Level {
 
                     gui.setComponent(new ScrollingPopup("That can't be any good news, quickly try to get out of the room as soon as you can!", () -> {
 
-                        map.getTiles("snake_trigger").forEach((t) -> t.removeTag("snake_trigger"));
+                        map.getTiles("snake_trigger").forEach((t) -> t.removeTag(SNAKE_TRIGGER));
 
                         Tile snakeSpawnTile = map.getTile("snake_spawn");
 
@@ -25,6 +25,7 @@ import game.GUI;
 import game.LevelController;
 import game.Renderer;
 import game.map.Map;
+import game.map.TagId;
 import game.map.loader.MapFileLoader;
 import game.map.tile.Tile;
 import game.puzzle.Puzzle;
@@ -40,6 +41,15 @@ import java.util.Arrays;
 
 public class MurderMysteryLevel extends Level {
 
+    private static final TagId TRIGGER = TagId.of("trigger");
+    private static final TagId MURDER_MYSTERY_TEXT_1 = TagId.of("murder_mystery_text_1");
+    private static final TagId PUZZLE_HINT_1 = TagId.of("puzzle_hint_1");
+    private static final TagId PUZZLE_HINT_2 = TagId.of("puzzle_hint_2");
+    private static final TagId PUZZLE_HINT_3 = TagId.of("puzzle_hint_3");
+    private static final TagId MURDER_MYSTERY_PUZZLE_1 = TagId.of("murder_mystery_puzzle_1");
+    private static final TagId GEM_PICKUP = TagId.of("gem_pickup");
+    private static final TagId LADDER = TagId.of("ladder");
+
     private Map map;
     private Player player;
     private Renderer renderer;
@@ -228,7 +238,7 @@ public class MurderMysteryLevel extends Level {
         gemText = new ScrollingPopup("You found the green gem! Go back to the main room to find more gems.", () -> {
             gui.removeComponent();
             greenGem.remove(() -> entitiesToRemove.add(greenGem));
-            map.getTile("gem_pickup").removeTag("trigger");
+            map.getTile("gem_pickup").removeTag(TRIGGER);
             paused = false;
         });
 
@@ -254,11 +264,11 @@ public class MurderMysteryLevel extends Level {
                                 hintIndicator2.remove(() -> entitiesToRemove.add(hintIndicator2));
                                 hintIndicator3.remove(() -> entitiesToRemove.add(hintIndicator3));
                                 // Remove triggers
-                                textTile1.removeTag("trigger");
-                                puzzleTile1.removeTag("trigger");
-                                hintTile1.removeTag("trigger");
-                                hintTile2.removeTag("trigger");
-                                hintTile3.removeTag("trigger");
+                                textTile1.removeTag(TRIGGER);
+                                puzzleTile1.removeTag(TRIGGER);
+                                hintTile1.removeTag(TRIGGER);
+                                hintTile2.removeTag(TRIGGER);
+                                hintTile3.removeTag(TRIGGER);
                                 // Resume the game
                                 paused = false;
                             }));
@@ -344,6 +354,18 @@ public class MurderMysteryLevel extends Level {
                 puzzleGhost
         ));
 
+        snapshot = new LevelSnapshot(map, entities, sceneLight, gui, renderer);
+        reset();
+    }
+
+    @Override
+    protected void reset() {
+        entitiesToRemove.clear();
+        text1.reset();
+        hintText1.reset();
+        hintText2.reset();
+        hintText3.reset();
+        gemText.reset();
         paused = false;
     }
 
@@ -378,37 +400,37 @@ public class MurderMysteryLevel extends Level {
                 Math.round(player.getPosition().z)
         );
 
-        if (currentPlayerTile.hasTag("trigger")) {
+        if (currentPlayerTile.hasTag(TRIGGER)) {
             if (!gui.hasComponent()) {
                 gui.setComponent(new FloatingScrollText("Press 'e' to interact"));
             }
             if (KeyBinding.isInteractPressed()) {
-                if (currentPlayerTile.hasTag("murder_mystery_text_1")) {
+                if (currentPlayerTile.hasTag(MURDER_MYSTERY_TEXT_1)) {
                     gui.setComponent(text1);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("puzzle_hint_1")) {
+                if (currentPlayerTile.hasTag(PUZZLE_HINT_1)) {
                     gui.setComponent(hintText1);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("puzzle_hint_2")) {
+                if (currentPlayerTile.hasTag(PUZZLE_HINT_2)) {
                     gui.setComponent(hintText2);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("puzzle_hint_3")) {
+                if (currentPlayerTile.hasTag(PUZZLE_HINT_3)) {
                     gui.setComponent(hintText3);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("murder_mystery_puzzle_1")) {
+                if (currentPlayerTile.hasTag(MURDER_MYSTERY_PUZZLE_1)) {
                     gui.setComponent(new PuzzleGUI(puzzle1));
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("gem_pickup")) {
+                if (currentPlayerTile.hasTag(GEM_PICKUP)) {
                     gui.setComponent(gemText);
                     levelController.setGemFound(LevelController.GEM.GREEN);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("ladder")) {
+                if (currentPlayerTile.hasTag(LADDER)) {
                     levelController.switchToMainRoom(MainRoomLevel.MAIN_ROOM_SPAWN.FROM_LEVEL_3);
                 }
             }
@@ -418,7 +440,6 @@ public class MurderMysteryLevel extends Level {
 
         camera.update(interval);
         player.update(interval);
-        sceneLight.directionalLight.setPosition(new Vector3f(player.getPosition()).add(new Vector3f(0.0f, 6.0f, 0.0f)));
     }
 
     @Override
@@ -26,6 +26,7 @@ import game.GUI;
 import game.LevelController;
 import game.Renderer;
 import game.map.Map;
+import game.map.TagId;
 import game.map.loader.MapFileLoader;
 import game.map.tile.Tile;
 import game.mobs.SimpleMob;
@@ -36,11 +37,29 @@ import graphics.Mesh;
 import org.joml.Vector2f;
 import org.joml.Vector2i;
 import org.joml.Vector3f;
+import pathfinding.FlowField;
+import pathfinding.PathfindingService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 
 public class PrisonEscapeLevel extends Level{
+
+    private static final TagId TRIGGER = TagId.of("trigger");
+    private static final TagId DOOR_1_PUZZLE = TagId.of("door_1_puzzle");
+    private static final TagId DOOR_2_PUZZLE = TagId.of("door_2_puzzle");
+    private static final TagId DOOR_3_PUZZLE = TagId.of("door_3_puzzle");
+    private static final TagId DOOR_4_PUZZLE = TagId.of("door_4_puzzle");
+    private static final TagId DOOR_5_PUZZLE = TagId.of("door_5_puzzle");
+    private static final TagId WALL_PUZZLE = TagId.of("wall_puzzle");
+    private static final TagId LADDER = TagId.of("ladder");
+    private static final TagId RIDDLE_TEXT = TagId.of("riddle_text");
+    private static final TagId TEXT1 = TagId.of("text1");
+    private static final TagId TEXT2 = TagId.of("text2");
+    private static final TagId ENTER_TUNNEL = TagId.of("enter_tunnel");
+    private static final TagId BED = TagId.of("bed");
+    private static final TagId SKELETON = TagId.of("skeleton");
+
     private Map map;
     private Player player;
     private Renderer renderer;
@@ -67,6 +86,11 @@ public class PrisonEscapeLevel extends Level{
 
     private SimpleMob[] mob;
     private int spawnedMobs = 0;
+    /**
+     * Computes the paths of all mobs on a worker thread, the worker keeps a single flow field toward
+     * the player that every mob shares
+     */
+    private PathfindingService pathfindingService;
 
     public PrisonEscapeLevel(LevelController levelController) {
         super(levelController);
@@ -75,12 +99,13 @@ public class PrisonEscapeLevel extends Level{
     @Override
     public void init() throws Exception {
 
-        paused = false;
-
         entities = new ArrayList<>();
-        mob = new SimpleMob[4];
         // Load map
         map = new MapFileLoader("/levels/prisonEscapeLevel.lvl").load();
+        if (pathfindingService != null) {
+            pathfindingService.terminate();
+        }
+        pathfindingService = new PathfindingService(map, 1, FlowField::new);
 
         // Setup rendering
         renderer = new Renderer();
@@ -265,7 +290,7 @@ public class PrisonEscapeLevel extends Level{
                                 // Remove indicators
                                 puzzle1Indicator1.remove(() -> entitiesToRemove.add(puzzle1Indicator1));
                                 // Remove triggers
-                                puzzleTile1.removeTag("trigger");
+                                puzzleTile1.removeTag(TRIGGER);
                                 // Resume the game
                                 paused = false;
                             }));
@@ -297,7 +322,7 @@ public class PrisonEscapeLevel extends Level{
                                 // Remove indicators
                                 puzzle1Indicator2.remove(() -> entitiesToRemove.add(puzzle1Indicator2));
                                 // Remove triggers
-                                puzzleTile2.removeTag("trigger");
+                                puzzleTile2.removeTag(TRIGGER);
                                 // Resume the game
                                 paused = false;
                             }));
@@ -327,7 +352,7 @@ public class PrisonEscapeLevel extends Level{
                                 // Remove indicators
                                 puzzle1Indicator3.remove(() -> entitiesToRemove.add(puzzle1Indicator3));
                                 // Remove triggers
-                                puzzleTile3.removeTag("trigger");
+                                puzzleTile3.removeTag(TRIGGER);
                                 // Resume the game
                                 paused = false;
                             }));
@@ -359,7 +384,7 @@ public class PrisonEscapeLevel extends Level{
                                 // Remove indicators
                                 puzzle1Indicator4.remove(() -> entitiesToRemove.add(puzzle1Indicator4));
                                 // Remove triggers
-                                puzzleTile4.removeTag("trigger");
+                                puzzleTile4.removeTag(TRIGGER);
                                 // Resume the game
                                 paused = false;
                             }));
@@ -398,7 +423,7 @@ public class PrisonEscapeLevel extends Level{
                                 // Remove indicators
                                 puzzle1Indicator5.remove(() -> entitiesToRemove.add(puzzle1Indicator5));
                                 // Remove triggers
-                                puzzleTile5.removeTag("trigger");
+                                puzzleTile5.removeTag(TRIGGER);
                                 // Resume the game
                                 paused = false;
                             }));
@@ -430,7 +455,7 @@ public class PrisonEscapeLevel extends Level{
                                     // Remove indicators
                                     puzzle1Indicator6.remove(() -> entitiesToRemove.add(puzzle1Indicator6));
                                     // Remove triggers
-                                    puzzleTile6.removeTag("trigger");
+                                    puzzleTile6.removeTag(TRIGGER);
                                     // Resume the game
                                     paused = false;
                                 }));
@@ -464,7 +489,7 @@ public class PrisonEscapeLevel extends Level{
                     " escape recently!", () -> {
                 gui.removeComponent();
                 textIndicator.remove(() -> {entitiesToRemove.add(textIndicator);});
-                textTile.removeTag("trigger");
+                textTile.removeTag(TRIGGER);
 
                 paused = false;
             }));
@@ -474,7 +499,7 @@ public class PrisonEscapeLevel extends Level{
             gui.setComponent(new ScrollingPopup("Maybe it has to do with that crack in the wall over there?", () -> {
                 gui.removeComponent();
                 textIndicator2.remove(() -> {entitiesToRemove.add(textIndicator2);});
-                textTile2.removeTag("trigger");
+                textTile2.removeTag(TRIGGER);
                 paused = false;
             }));
         });
@@ -541,6 +566,27 @@ public class PrisonEscapeLevel extends Level{
                 door5, puzzle1Indicator5,
                 textIndicator, riddleIndicator
         ));
+
+        snapshot = new LevelSnapshot(map, entities, sceneLight, gui, renderer);
+        mob = new SimpleMob[4];
+        reset();
+    }
+
+    @Override
+    protected void reset() {
+        entitiesToRemove.clear();
+        riddleText.reset();
+        text1.reset();
+        text2.reset();
+        // Spawned mobs are not part of the snapshot, drop them and their path requests
+        for (int i = 0; i < mob.length; i++) {
+            if (mob[i] != null) {
+                mob[i].reset();
+                mob[i] = null;
+            }
+        }
+        spawnedMobs = 0;
+        paused = false;
     }
 
     @Override
@@ -566,6 +612,7 @@ public class PrisonEscapeLevel extends Level{
             return;
         }
 
+        pathfindingService.update();
         entities.forEach(e -> e.update(interval));
         entitiesToRemove.forEach(e -> entities.remove(e));
 
@@ -588,52 +635,52 @@ public class PrisonEscapeLevel extends Level{
             }
         }
 
-        if (currentPlayerTile.hasTag("trigger")) {
+        if (currentPlayerTile.hasTag(TRIGGER)) {
             if (!gui.hasComponent()) {
                 gui.setComponent(new FloatingScrollText("Press 'e' to interact"));
             }
             if (KeyBinding.isInteractPressed()) {
-                if (currentPlayerTile.hasTag("door_1_puzzle")) {
+                if (currentPlayerTile.hasTag(DOOR_1_PUZZLE)) {
                     gui.setComponent(new PuzzleGUI(doorPuzzle1));
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("door_2_puzzle")) {
+                if (currentPlayerTile.hasTag(DOOR_2_PUZZLE)) {
                     gui.setComponent(new PuzzleGUI(doorPuzzle2));
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("door_3_puzzle")) {
+                if (currentPlayerTile.hasTag(DOOR_3_PUZZLE)) {
                     gui.setComponent(new PuzzleGUI(doorPuzzle3));
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("door_4_puzzle")) {
+                if (currentPlayerTile.hasTag(DOOR_4_PUZZLE)) {
                     gui.setComponent(new PuzzleGUI(doorPuzzle4));
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("door_5_puzzle")) {
+                if (currentPlayerTile.hasTag(DOOR_5_PUZZLE)) {
                     gui.setComponent(new PuzzleGUI(doorPuzzle5));
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("wall_puzzle")) {
+                if (currentPlayerTile.hasTag(WALL_PUZZLE)) {
                     gui.setComponent(new PuzzleGUI(wallPuzzle));
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("ladder")) {
+                if (currentPlayerTile.hasTag(LADDER)) {
                     levelController.switchToMainRoom(MainRoomLevel.MAIN_ROOM_SPAWN.FROM_LEVEL_2);
                 }
-                if (currentPlayerTile.hasTag("riddle_text")) {
+                if (currentPlayerTile.hasTag(RIDDLE_TEXT)) {
                     gui.setComponent(riddleText);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("text1")) {
+                if (currentPlayerTile.hasTag(TEXT1)) {
                     gui.setComponent(text1);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("text2")) {
+                if (currentPlayerTile.hasTag(TEXT2)) {
                     gui.setComponent(text2);
                     paused = true;
                 }
             }
-            if (currentPlayerTile.hasTag("enter_tunnel")) {
+            if (currentPlayerTile.hasTag(ENTER_TUNNEL)) {
                 levelController.next();
             }
         } else if (gui.hasComponent()) {
@@ -642,8 +689,6 @@ public class PrisonEscapeLevel extends Level{
 
         camera.update(interval);
         player.update(interval);
-        sceneLight.directionalLight.setPosition(new Vector3f(player.getPosition()).add(new Vector3f(0.0f, 6.0f, 0.0f)));
-
     }
 
     @Override
@@ -659,7 +704,9 @@ public class PrisonEscapeLevel extends Level{
 
     @Override
     public void terminate() {
-
+        if (pathfindingService != null) {
+            pathfindingService.terminate();
+        }
     }
 
     private void spawnMob(String tag) {
@@ -673,6 +720,7 @@ public class PrisonEscapeLevel extends Level{
                     map.getTile(tag).getPosition().y, 0f);
             mob[spawnedMobs].setSpeed(1f);
             mob[spawnedMobs].setTarget(player);
+            mob[spawnedMobs].setPathfindingService(pathfindingService);
             mob[spawnedMobs].followOnSightOnly(false);
             entities.add(mob[spawnedMobs]);
             spawnedMobs++;
@@ -682,13 +730,13 @@ public class PrisonEscapeLevel extends Level{
     private void spawnInterior(String tag) {
         map.getTiles(tag).forEach(t -> {
             try {
-                if (t.hasTag("bed")) {
+                if (t.hasTag(BED)) {
                     Mesh bedMesh = PLYLoader.loadMesh("/models/tiles/bed.ply");
                     bedMesh.setMaterial(new Material(0f));
                     t.setSolid(true);
                     t.setMesh(bedMesh);
                 }
-                if (t.hasTag("skeleton")) {
+                if (t.hasTag(SKELETON)) {
                     Mesh skeletonMesh = PLYLoader.loadMesh("/models/tiles/skeletons.ply");
                     skeletonMesh.setMaterial(new Material(0f));
                     t.setSolid(true);
@@ -26,6 +26,7 @@ import game.GUI;
 import game.LevelController;
 import game.Renderer;
 import game.map.Map;
+import game.map.TagId;
 import game.map.loader.MapFileLoader;
 import game.map.tile.Tile;
 import graphics.Material;
@@ -39,6 +40,9 @@ import java.util.Arrays;
 
 public class TreasureRoomLevel extends Level {
 
+    private static final TagId TRIGGER = TagId.of("trigger");
+    private static final TagId TEXT_1 = TagId.of("text_1");
+
     private Map map;
     private Player player;
     private Renderer renderer;
@@ -158,6 +162,14 @@ public class TreasureRoomLevel extends Level {
                 textIndicator1
         ));
 
+        snapshot = new LevelSnapshot(map, entities, sceneLight, gui, renderer);
+        reset();
+    }
+
+    @Override
+    protected void reset() {
+        entitiesToRemove.clear();
+        text1.reset();
         paused = false;
     }
 
@@ -192,12 +204,12 @@ public class TreasureRoomLevel extends Level {
                 Math.round(player.getPosition().z)
         );
 
-        if (currentPlayerTile.hasTag("trigger")) {
+        if (currentPlayerTile.hasTag(TRIGGER)) {
             if (!gui.hasComponent()) {
                 gui.setComponent(new FloatingScrollText("Press 'e' to interact"));
             }
             if (KeyBinding.isInteractPressed()) {
-                if (currentPlayerTile.hasTag("text_1")) {
+                if (currentPlayerTile.hasTag(TEXT_1)) {
                     gui.setComponent(text1);
                     paused = true;
                 }
@@ -208,7 +220,6 @@ public class TreasureRoomLevel extends Level {
 
         camera.update(interval);
         player.update(interval);
-        sceneLight.directionalLight.setPosition(new Vector3f(player.getPosition()).add(new Vector3f(0.0f, 6.0f, 0.0f)));
     }
 
     @Override
@@ -24,6 +24,7 @@ import game.GUI;
 import game.LevelController;
 import game.Renderer;
 import game.map.Map;
+import game.map.TagId;
 import game.map.loader.MapFileLoader;
 import game.map.tile.Tile;
 import game.puzzle.Puzzle;
@@ -38,6 +39,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 
 public class TunnelLevel extends Level {
+
+    private static final TagId TRIGGER = TagId.of("trigger");
+    private static final TagId PUZZLE_GHOST = TagId.of("puzzle_ghost");
+    private static final TagId GEM = TagId.of("gem");
+    private static final TagId LADDER = TagId.of("ladder");
+    private static final TagId EXIT = TagId.of("exit");
+    private static final TagId TEXT1 = TagId.of("text1");
+
     private Map map;
     private Player player;
     private Renderer renderer;
@@ -158,7 +167,7 @@ public class TunnelLevel extends Level {
                 gui.setComponent(new ScrollingPopup("In the corner of the room you see a precious gem, maybe you should pick it up?", () -> {
                     gui.removeComponent();
                     textIndicator.remove(() -> entitiesToRemove.add(textIndicator));
-                    map.getTile("text1").removeTag("trigger");
+                    map.getTile("text1").removeTag(TRIGGER);
                     paused = false;
                 }));
             }));
@@ -189,7 +198,7 @@ public class TunnelLevel extends Level {
         gemText = new ScrollingPopup("I have found a yellow gem! Maybe I can find more of these!", () -> {
             gui.removeComponent();
             yellowGem.remove(() -> entitiesToRemove.add(yellowGem));
-            map.getTile("gem").removeTag("trigger");
+            map.getTile("gem").removeTag(TRIGGER);
             paused = false;
         });
 
@@ -225,7 +234,7 @@ public class TunnelLevel extends Level {
                                 // Remove indicators
                                 puzzleIndicator.remove(() -> entitiesToRemove.add(puzzleIndicator));
                                 // Remove triggers
-                                puzzleTile.removeTag("trigger");
+                                puzzleTile.removeTag(TRIGGER);
                                 // Resume the game
                                 paused = false;
                             }));
@@ -242,8 +251,6 @@ public class TunnelLevel extends Level {
                 30
         );
 
-        attempts = 0;
-
         // Lighting
         sceneLight = new SceneLight();
         sceneLight.ambientLight = new AmbientLight(new Vector3f(0.3f));
@@ -303,6 +310,21 @@ public class TunnelLevel extends Level {
                 puzzleGhost,
                 yellowGem
         ));
+
+        snapshot = new LevelSnapshot(map, entities, sceneLight, gui, renderer);
+        reset();
+    }
+
+    @Override
+    protected void reset() {
+        entitiesToRemove.clear();
+        text1.reset();
+        puzzleText.reset();
+        puzzleText2.reset();
+        puzzleText3.reset();
+        gemText.reset();
+        attempts = 0;
+        paused = false;
     }
 
     @Override
@@ -332,12 +354,12 @@ public class TunnelLevel extends Level {
                 Math.round(player.getPosition().z)
         );
 
-        if (currentPlayerTile.hasTag("trigger")) {
+        if (currentPlayerTile.hasTag(TRIGGER)) {
             if (!gui.hasComponent()) {
                 gui.setComponent(new FloatingScrollText("Press 'e' to interact"));
             }
             if (KeyBinding.isInteractPressed()) {
-                if (currentPlayerTile.hasTag("puzzle_ghost")) {
+                if (currentPlayerTile.hasTag(PUZZLE_GHOST)) {
                     if (attempts == 0) {
                         gui.setComponent(puzzleText);
                     } else if (attempts < 3) {
@@ -347,19 +369,19 @@ public class TunnelLevel extends Level {
                     }
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("gem")) {
+                if (currentPlayerTile.hasTag(GEM)) {
                     gui.setComponent(gemText);
                     levelController.setGemFound(LevelController.GEM.YELLOW);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("ladder")) {
+                if (currentPlayerTile.hasTag(LADDER)) {
                     levelController.switchToMainRoom(MainRoomLevel.MAIN_ROOM_SPAWN.FROM_LEVEL_2);
                 }
             }
-            if (currentPlayerTile.hasTag("exit")) {
+            if (currentPlayerTile.hasTag(EXIT)) {
                 levelController.switchToMainRoom(MainRoomLevel.MAIN_ROOM_SPAWN.FROM_LEVEL_2);
             }
-            if (currentPlayerTile.hasTag("text1")) {
+            if (currentPlayerTile.hasTag(TEXT1)) {
                 gui.setComponent(text1);
                 paused = true;
             }
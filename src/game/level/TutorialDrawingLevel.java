@@ -25,6 +25,7 @@ import game.GUI;
 import game.LevelController;
 import game.Renderer;
 import game.map.Map;
+import game.map.TagId;
 import game.map.loader.MapFileLoader;
 import game.map.tile.Tile;
 import game.puzzle.Puzzle;
@@ -41,6 +42,12 @@ import java.util.Arrays;
 
 public class TutorialDrawingLevel extends Level {
 
+    private static final TagId TRIGGER = TagId.of("trigger");
+    private static final TagId TUTORIAL_TEXT_1 = TagId.of("tutorial_text_1");
+    private static final TagId TUTORIAL_TEXT_2 = TagId.of("tutorial_text_2");
+    private static final TagId TUTORIAL_PUZZLE_1 = TagId.of("tutorial_puzzle_1");
+    private static final TagId END = TagId.of("end");
+
     private Map map;
     private Player player;
     private Renderer renderer;
@@ -167,7 +174,7 @@ public class TutorialDrawingLevel extends Level {
                         "You seek the treasure of the ancient dwarfs? Hahahaha! hundreds, no, thousands, no, countless men tried before you!", () -> {
                     gui.setComponent(new ScrollingPopup("We'll see how your creativity holds up... Good luck traveller. Try to find the entrance.", () -> {
                         textIndicator1.remove(() -> entitiesToRemove.add(textIndicator1));
-                        textTile1.removeTag("trigger");
+                        textTile1.removeTag(TRIGGER);
                         paused = false;
                     }));
                 }));
@@ -180,7 +187,7 @@ public class TutorialDrawingLevel extends Level {
                     gui.setComponent(new ScrollingPopup("So, we have a door, with a lock. What would we need to open it?", () -> {
                         gui.setComponent(new FloatingScrollText("Interact with the pencil"));
                         textIndicator2.remove(() -> entitiesToRemove.add(textIndicator2));
-                        textTile2.removeTag("trigger");
+                        textTile2.removeTag(TRIGGER);
                         // TODO: Add check if the player did not already interact with the pencil
                         gui.setComponent(new FloatingScrollText("Interact with the pencil"));
                         paused = false;
@@ -226,8 +233,8 @@ public class TutorialDrawingLevel extends Level {
                                 textIndicator2.remove(() -> entitiesToRemove.add(textIndicator2));
 
                                 // Remove triggers
-                                pencilTile1.removeTag("trigger");
-                                textTile2.removeTag("trigger");
+                                pencilTile1.removeTag(TRIGGER);
+                                textTile2.removeTag(TRIGGER);
 
                                 paused = false;
                             }));
@@ -311,6 +318,16 @@ public class TutorialDrawingLevel extends Level {
                 doorRight
         ));
 
+        snapshot = new LevelSnapshot(map, entities, sceneLight, gui, renderer);
+        reset();
+    }
+
+    @Override
+    protected void reset() {
+        entitiesToRemove.clear();
+        text1.reset();
+        text2.reset();
+        text3.reset();
         paused = false;
         hintIsShown = false;
     }
@@ -346,7 +363,7 @@ public class TutorialDrawingLevel extends Level {
                 Math.round(player.getPosition().z)
         );
 
-        if (currentPlayerTile.hasTag("trigger")) {
+        if (currentPlayerTile.hasTag(TRIGGER)) {
             if (hintIsShown) {
                 hintIsShown = false;
                 gui.removeComponent();
@@ -355,20 +372,20 @@ public class TutorialDrawingLevel extends Level {
                 gui.setComponent(new FloatingScrollText("Press 'e' to interact"));
             }
             if (KeyBinding.isInteractPressed()) {
-                if (currentPlayerTile.hasTag("tutorial_text_1")) {
+                if (currentPlayerTile.hasTag(TUTORIAL_TEXT_1)) {
                     gui.setComponent(text1);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("tutorial_text_2")) {
+                if (currentPlayerTile.hasTag(TUTORIAL_TEXT_2)) {
                     gui.setComponent(text2);
                     paused = true;
                 }
-                if (currentPlayerTile.hasTag("tutorial_puzzle_1")) {
+                if (currentPlayerTile.hasTag(TUTORIAL_PUZZLE_1)) {
                     gui.setComponent(text3);
                     paused = true;
                 }
             }
-        } else if (currentPlayerTile.hasTag("end")) {
+        } else if (currentPlayerTile.hasTag(END)) {
             levelController.next();
         } else if (gui.hasComponent() && !hintIsShown) {
             gui.removeComponent();
@@ -376,7 +393,6 @@ public class TutorialDrawingLevel extends Level {
 
         camera.update(interval);
         player.update(interval);
-        sceneLight.directionalLight.setPosition(new Vector3f(player.getPosition()).add(new Vector3f(0.0f, 6.0f, 0.0f)));
     }
 
     @Override
@@ -93,7 +93,6 @@ public class HdrTestLevel extends Level {
     public void update(float interval, MouseInput mouseInput) {
 
         camera.update(interval);
-        sceneLight.directionalLight.setPosition(new Vector3f(camera.getPosition()));
     }
 
     @Override
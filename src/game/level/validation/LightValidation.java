@@ -336,7 +336,6 @@ public class LightValidation extends Level {
                 new Vector2f(1.0f, 10.0f),              // near-far plane
                 false
         );
-        sceneLight.directionalLight.setOrthoProjection(-20, 20, -20, 20, new Vector2f(1.0f, 10.0f));
 
         entities.clear();
 
@@ -355,7 +354,6 @@ public class LightValidation extends Level {
                 new Vector2f(1.0f, 10.0f),              // near-far plane
                 false
         );
-        sceneLight.directionalLight.setOrthoProjection(-20, 20, -20, 20, new Vector2f(1.0f, 10.0f));
 
         entities.clear();
 
@@ -487,7 +485,6 @@ public class LightValidation extends Level {
                 new Vector2f(1.0f, 10.0f),              // near-far plane
                 false
         );
-        sceneLight.directionalLight.setOrthoProjection(-20, 20, -20, 20, new Vector2f(1.0f, 10.0f));
 
         entities.add(e1);
         entities.add(e2);
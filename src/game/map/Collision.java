@@ -0,0 +1,303 @@
+package game.map;
+
+import org.joml.Vector3f;
+
+/**
+ * Collision of moving boxes and circles with the solid tiles of a map.
+ * <p>
+ * Tile (x, y) covers the square from x - 0.5 to x + 0.5 and y - 0.5 to y + 0.5. Solid tiles, empty
+ * cells and everything outside the map block movement. The queries read the solidity bitset of the
+ * map directly and allocate nothing. They handle the whole movement at once, so a long frame cannot
+ * move anything through a wall.
+ * <p>
+ * Positions are in map coordinates, the z coordinate of a world position is the y coordinate of the
+ * map. Meant for the game thread, the result of the last sweep is kept in this object.
+ */
+public class Collision {
+
+    /**
+     * Distance kept between a moved shape and the tile it ran into, so rounding errors cannot put it
+     * inside the tile
+     */
+    private static final float SKIN = 1e-4f;
+    /**
+     * Times a box slides along a wall after hitting it within a single move
+     */
+    private static final int MAX_SLIDES = 3;
+
+    private final Map map;
+    private final int width, height;
+    private final Hit hit = new Hit();
+
+    public Collision(Map map) {
+        this.map = map;
+        width = map.getWidth();
+        height = map.getHeight();
+    }
+
+    /**
+     * @return Whether the cell blocks movement
+     */
+    public boolean isBlocked(int x, int y) {
+        return x < 0 || y < 0 || x >= width || y >= height || !map.isWalkable(x * height + y);
+    }
+
+    /**
+     * Whether a box overlaps a blocking cell, boxes that only touch a cell do not overlap it
+     */
+    public boolean overlaps(float minX, float maxX, float minY, float maxY) {
+        int lastX = lastCell(maxX), lastY = lastCell(maxY);
+        for (int x = firstCell(minX); x <= lastX; x++) {
+            for (int y = firstCell(minY); y <= lastY; y++) {
+                if (isBlocked(x, y)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sweep a box over the map and find the first blocking cell it runs into. Cells the box already
+     * overlaps only block it when it moves further into them.
+     *
+     * @param x          x of the center of the box
+     * @param y          y of the center of the box
+     * @param halfWidth  Half of the size of the box along x
+     * @param halfHeight Half of the size of the box along y
+     * @param dx         Movement along x
+     * @param dy         Movement along y
+     * @return The first hit, with a time of 1 and no tile if the box can move all the way. Reused by
+     * the next sweep.
+     */
+    public Hit sweep(float x, float y, float halfWidth, float halfHeight, float dx, float dy) {
+        hit.clear();
+        int lastX = lastCell(Math.max(x, x + dx) + halfWidth);
+        int lastY = lastCell(Math.max(y, y + dy) + halfHeight);
+        for (int cx = firstCell(Math.min(x, x + dx) - halfWidth); cx <= lastX; cx++) {
+            for (int cy = firstCell(Math.min(y, y + dy) - halfHeight); cy <= lastY; cy++) {
+                if (isBlocked(cx, cy)) {
+                    sweepCell(cx, cy, x, y, halfWidth, halfHeight, dx, dy);
+                }
+            }
+        }
+        return hit;
+    }
+
+    /**
+     * Move a square as far as it can go and let it slide along the walls it runs into
+     *
+     * @param position Center of the square, x and z are changed
+     * @param halfSize Half of the size of the square
+     * @param dx       Movement along x
+     * @param dz       Movement along z
+     */
+    public void moveBox(Vector3f position, float halfSize, float dx, float dz) {
+        for (int slide = 0; slide < MAX_SLIDES && (dx != 0 || dz != 0); slide++) {
+            Hit hit = sweep(position.x, position.z, halfSize, halfSize, dx, dz);
+            if (!hit.isHit()) {
+                position.x += dx;
+                position.z += dz;
+                return;
+            }
+            float travel = Math.max(0, hit.time - SKIN / (float) Math.sqrt(dx * dx + dz * dz));
+            position.x += dx * travel;
+            position.z += dz * travel;
+            // Keep the part of the remaining movement that runs along the wall
+            dx *= 1 - travel;
+            dz *= 1 - travel;
+            if (hit.normalX != 0) {
+                dx = 0;
+            } else {
+                dz = 0;
+            }
+        }
+    }
+
+    /**
+     * Move a circle and push it out of the walls it runs into, which makes it slide along walls and
+     * round corners. The movement is split into steps no longer than the radius, so the circle
+     * cannot skip a wall.
+     *
+     * @param position Center of the circle, x and z are changed
+     * @param radius   Radius of the circle, should be less than half a tile
+     * @param dx       Movement along x
+     * @param dz       Movement along z
+     */
+    public void moveCircle(Vector3f position, float radius, float dx, float dz) {
+        float length = (float) Math.sqrt(dx * dx + dz * dz);
+        int steps = Math.max(1, (int) Math.ceil(length / radius));
+        for (int step = 0; step < steps; step++) {
+            position.x += dx / steps;
+            position.z += dz / steps;
+            pushOut(position, radius);
+        }
+    }
+
+    /**
+     * Push a circle out of the blocking cells it overlaps
+     */
+    private void pushOut(Vector3f position, float radius) {
+        // A circle against an inside corner is pushed out of one cell into the other, a few passes settle it
+        for (int pass = 0; pass < 4; pass++) {
+            boolean moved = false;
+            int lastX = lastCell(position.x + radius), lastY = lastCell(position.z + radius);
+            for (int x = firstCell(position.x - radius); x <= lastX; x++) {
+                for (int y = firstCell(position.z - radius); y <= lastY; y++) {
+                    if (!isBlocked(x, y)) {
+                        continue;
+                    }
+                    float closestX = Math.max(x - 0.5f, Math.min(x + 0.5f, position.x));
+                    float closestY = Math.max(y - 0.5f, Math.min(y + 0.5f, position.z));
+                    float offsetX = position.x - closestX;
+                    float offsetY = position.z - closestY;
+                    float distanceSquared = offsetX * offsetX + offsetY * offsetY;
+                    if (distanceSquared >= radius * radius) {
+                        continue;
+                    }
+                    if (distanceSquared > 0) {
+                        float distance = (float) Math.sqrt(distanceSquared);
+                        float push = (radius - distance + SKIN) / distance;
+                        position.x += offsetX * push;
+                        position.z += offsetY * push;
+                    } else if (Math.abs(position.x - x) > Math.abs(position.z - y)) {
+                        // The center is inside the cell, leave through the nearest side
+                        position.x = x + Math.signum(position.x - x) * (0.5f + radius + SKIN);
+                    } else {
+                        position.z = y + (position.z >= y ? 1 : -1) * (0.5f + radius + SKIN);
+                    }
+                    moved = true;
+                }
+            }
+            if (!moved) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Slab test of the center of the box against the cell grown by the size of the box
+     */
+    private void sweepCell(int cx, int cy, float x, float y, float halfWidth, float halfHeight, float dx, float dy) {
+        float minX = cx - 0.5f - halfWidth, maxX = cx + 0.5f + halfWidth;
+        float minY = cy - 0.5f - halfHeight, maxY = cy + 0.5f + halfHeight;
+
+        float enterX, exitX, enterY, exitY;
+        if (dx == 0) {
+            if (x <= minX || x >= maxX) {
+                return;
+            }
+            enterX = Float.NEGATIVE_INFINITY;
+            exitX = Float.POSITIVE_INFINITY;
+        } else {
+            float t1 = (minX - x) / dx, t2 = (maxX - x) / dx;
+            enterX = Math.min(t1, t2);
+            exitX = Math.max(t1, t2);
+        }
+        if (dy == 0) {
+            if (y <= minY || y >= maxY) {
+                return;
+            }
+            enterY = Float.NEGATIVE_INFINITY;
+            exitY = Float.POSITIVE_INFINITY;
+        } else {
+            float t1 = (minY - y) / dy, t2 = (maxY - y) / dy;
+            enterY = Math.min(t1, t2);
+            exitY = Math.max(t1, t2);
+        }
+
+        float enter = Math.max(enterX, enterY);
+        float exit = Math.min(exitX, exitY);
+        if (enter >= exit || exit <= 0 || enter > hit.time) {
+            return;
+        }
+        if (enter >= 0) {
+            hit.set(enter, cx, cy, enterX > enterY ? -Math.signum(dx) : 0, enterX > enterY ? 0 : -Math.signum(dy));
+            return;
+        }
+        // Already overlapping, only block movement that goes deeper along the axis it overlaps least
+        float depthX = Math.min(x - minX, maxX - x);
+        float depthY = Math.min(y - minY, maxY - y);
+        if (depthX < depthY) {
+            float normalX = x < cx ? -1 : 1;
+            if (dx * normalX < 0) {
+                hit.set(0, cx, cy, normalX, 0);
+            }
+        } else {
+            float normalY = y < cy ? -1 : 1;
+            if (dy * normalY < 0) {
+                hit.set(0, cx, cy, 0, normalY);
+            }
+        }
+    }
+
+    /**
+     * @return First cell a shape reaching down to the given coordinate can overlap
+     */
+    private static int firstCell(float min) {
+        return (int) Math.floor(min + 0.5f);
+    }
+
+    /**
+     * @return Last cell a shape reaching up to the given coordinate can overlap
+     */
+    private static int lastCell(float max) {
+        return (int) Math.ceil(max + 0.5f) - 1;
+    }
+
+    /**
+     * First blocking cell found by a sweep
+     */
+    public static class Hit {
+
+        private float time;
+        private int tileX, tileY;
+        private float normalX, normalY;
+
+        void clear() {
+            time = 1;
+            tileX = -1;
+            tileY = -1;
+            normalX = 0;
+            normalY = 0;
+        }
+
+        void set(float time, int tileX, int tileY, float normalX, float normalY) {
+            this.time = time;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.normalX = normalX;
+            this.normalY = normalY;
+        }
+
+        public boolean isHit() {
+            return tileX != -1 || tileY != -1;
+        }
+
+        /**
+         * @return Fraction of the movement before the shape touches the cell, 1 if nothing was hit
+         */
+        public float getTime() {
+            return time;
+        }
+
+        public int getTileX() {
+            return tileX;
+        }
+
+        public int getTileY() {
+            return tileY;
+        }
+
+        /**
+         * @return Side of the cell that was hit, pointing away from the cell
+         */
+        public float getNormalX() {
+            return normalX;
+        }
+
+        public float getNormalY() {
+            return normalY;
+        }
+    }
+}
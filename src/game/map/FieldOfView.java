@@ -0,0 +1,205 @@
+package game.map;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The tiles that can be seen from a single tile, the origin, usually the tile of the player.
+ * <p>
+ * Computed with recursive shadowcasting: the eight octants around the origin are scanned row by
+ * row, moving away from the origin, and every solid tile narrows the range of slopes that is
+ * scanned in the rows behind it. Solid tiles that are seen are part of the field of view
+ * themselves, so the walls around the viewer are visible but nothing behind them. Missing tiles
+ * block the view like solid tiles, like in LineOfSight and Collision.
+ * <p>
+ * The result only depends on the tile of the origin, so it is computed again when the origin moves
+ * to another tile or a tile of the map changes solidity, and moving within a tile costs nothing.
+ * A level that uses a field of view sets it on its map, see Map.setFieldOfView, after which the
+ * renderer only draws what is in view and mobs use it to tell whether they can see the viewer.
+ */
+public class FieldOfView implements VisibleSet {
+
+    private final Map map;
+    private final int width, height;
+    private final int chunkCountX, chunkCountY;
+    private int radius;
+    /* Last row that is scanned, the radius or the distance to the furthest edge of the map */
+    private int lastRow;
+
+    private final BitSet visibleTiles;
+    private final boolean[] visibleChunks;
+    private int originX = -1, originY = -1;
+    private int mapVersion = -1;
+    private boolean dirty = true;
+
+    /**
+     * Field of view without a limit on the distance
+     */
+    public FieldOfView(Map map) {
+        this(map, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param radius Largest distance in tiles that can be seen
+     */
+    public FieldOfView(Map map, int radius) {
+        this.map = map;
+        width = map.getWidth();
+        height = map.getHeight();
+        chunkCountX = (width + Map.CHUNK_SIZE - 1) / Map.CHUNK_SIZE;
+        chunkCountY = (height + Map.CHUNK_SIZE - 1) / Map.CHUNK_SIZE;
+        visibleTiles = new BitSet(width * height);
+        visibleChunks = new boolean[chunkCountX * chunkCountY];
+        setRadius(radius);
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public void setRadius(int radius) {
+        this.radius = radius;
+        dirty = true;
+    }
+
+    /**
+     * Move the origin to the tile at the given position, the field of view is computed again when
+     * it is asked for and the origin moved to another tile
+     *
+     * @param x X position of the viewer
+     * @param y Y position of the viewer, the z coordinate in the world
+     */
+    public void update(float x, float y) {
+        int tileX = Math.round(x);
+        int tileY = Math.round(y);
+        if (tileX != originX || tileY != originY) {
+            originX = tileX;
+            originY = tileY;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Whether the tile at the given position is the origin
+     */
+    public boolean isOrigin(float x, float y) {
+        return Math.round(x) == originX && Math.round(y) == originY;
+    }
+
+    /**
+     * @param index x * height + y
+     * @return Whether the tile can be seen from the origin, everything is visible while the origin
+     * is outside of the map
+     */
+    @Override
+    public boolean isVisible(int index) {
+        refresh();
+        return !isInside(originX, originY) || visibleTiles.get(index);
+    }
+
+    /**
+     * @return Whether the tile at the given position can be seen from the origin, positions outside
+     * of the map are always visible
+     */
+    @Override
+    public boolean isVisible(float x, float y) {
+        int tileX = Math.round(x);
+        int tileY = Math.round(y);
+        return !isInside(tileX, tileY) || isVisible(tileX * height + tileY);
+    }
+
+    @Override
+    public boolean isChunkVisible(int chunkX, int chunkY) {
+        refresh();
+        return !isInside(originX, originY) || visibleChunks[chunkX * chunkCountY + chunkY];
+    }
+
+    private void refresh() {
+        if (!dirty && mapVersion == map.getVersion()) {
+            return;
+        }
+        dirty = false;
+        mapVersion = map.getVersion();
+        visibleTiles.clear();
+        Arrays.fill(visibleChunks, false);
+        if (!isInside(originX, originY)) {
+            return;
+        }
+
+        lastRow = Math.min(radius, Math.max(Math.max(originX, width - 1 - originX), Math.max(originY, height - 1 - originY)));
+        reveal(originX, originY);
+        // The octants as transformations of the first one, columns go along x and rows along y
+        castLight(1, 1.0f, 0.0f, 1, 0, 0, 1);
+        castLight(1, 1.0f, 0.0f, 0, 1, 1, 0);
+        castLight(1, 1.0f, 0.0f, 0, -1, 1, 0);
+        castLight(1, 1.0f, 0.0f, -1, 0, 0, 1);
+        castLight(1, 1.0f, 0.0f, -1, 0, 0, -1);
+        castLight(1, 1.0f, 0.0f, 0, -1, -1, 0);
+        castLight(1, 1.0f, 0.0f, 0, 1, -1, 0);
+        castLight(1, 1.0f, 0.0f, 1, 0, 0, -1);
+    }
+
+    /**
+     * Scan an octant from the given row outwards, between two slopes
+     *
+     * @param row   Distance of the first row from the origin
+     * @param start Slope of the start of the range that is still visible, decreasing towards end
+     * @param end   Slope of the end of the range
+     * @param xx    Transformation of the column and row of the octant to x and y
+     */
+    private void castLight(int row, float start, float end, int xx, int xy, int yx, int yy) {
+        if (start < end) {
+            return;
+        }
+        long radiusSquared = (long) radius * radius;
+        float nextStart = 0.0f;
+        for (int distance = row; distance <= lastRow; distance++) {
+            boolean blocked = false;
+            int dy = -distance;
+            for (int dx = -distance; dx <= 0; dx++) {
+                // Slopes of the two corners of the tile the scan line passes
+                float leftSlope = (dx - 0.5f) / (dy + 0.5f);
+                float rightSlope = (dx + 0.5f) / (dy - 0.5f);
+                if (start < rightSlope) {
+                    continue;
+                } else if (end > leftSlope) {
+                    break;
+                }
+
+                int x = originX + dx * xx + dy * xy;
+                int y = originY + dx * yx + dy * yy;
+                boolean inside = isInside(x, y);
+                if (inside && (long) dx * dx + (long) dy * dy <= radiusSquared) {
+                    reveal(x, y);
+                }
+
+                boolean opaque = !inside || !map.isWalkable(x * height + y);
+                if (blocked) {
+                    if (opaque) {
+                        nextStart = rightSlope;
+                    } else {
+                        blocked = false;
+                        start = nextStart;
+                    }
+                } else if (opaque && distance < lastRow) {
+                    // Scan the part of the next rows before this tile, continue after it
+                    blocked = true;
+                    castLight(distance + 1, start, leftSlope, xx, xy, yx, yy);
+                    nextStart = rightSlope;
+                }
+            }
+            if (blocked) {
+                break;
+            }
+        }
+    }
+
+    private void reveal(int x, int y) {
+        visibleTiles.set(x * height + y);
+        visibleChunks[x / Map.CHUNK_SIZE * chunkCountY + y / Map.CHUNK_SIZE] = true;
+    }
+
+    private boolean isInside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+}
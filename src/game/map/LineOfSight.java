@@ -0,0 +1,233 @@
+package game.map;
+
+import game.map.tile.Tile;
+
+import java.util.Arrays;
+
+/**
+ * Line of sight queries on the tile grid of a map.
+ * <p>
+ * Tile (x, y) covers the square of size 1 centred on (x, y). A ray visits exactly the tiles the
+ * segment passes through (Amanatides and Woo), so unlike sampling the segment in small steps the
+ * result does not depend on the frame time. A ray that passes exactly through a corner is blocked
+ * when either of the two tiles beside the corner is solid. Missing tiles and everything outside the
+ * map block the ray like solid tiles do, the same rule as in Collision, so a mob does not see or
+ * move across a hole it can not walk through.
+ * <p>
+ * Queries between two tile centres are cached per tile pair until a tile changes solidity. None of
+ * the queries allocate, so a single instance per map is shared by all mobs, see Map.getLineOfSight.
+ */
+public class LineOfSight implements MapListener {
+
+    private static final int CACHE_SIZE = 4096;
+
+    private final Map map;
+    private final int width, height;
+
+    /* Tiles already tested by the current swept query */
+    private final int[] tested;
+    private int testGeneration;
+
+    /* Direct mapped cache of tile pairs, an entry is only valid when its stamp is the current one */
+    private final long[] cacheKeys = new long[CACHE_SIZE];
+    private final int[] cacheStamps = new int[CACHE_SIZE];
+    private final boolean[] cacheValues = new boolean[CACHE_SIZE];
+    private int cacheGeneration = 1;
+
+    public LineOfSight(Map map) {
+        this.map = map;
+        width = map.getWidth();
+        height = map.getHeight();
+        tested = new int[width * height];
+        map.addListener(this);
+    }
+
+    /**
+     * Whether the straight line between the centres of two tiles is not blocked, cached until a tile
+     * changes solidity
+     */
+    public boolean isVisible(int x0, int y0, int x1, int y1) {
+        if (!isInside(x0, y0) || !isInside(x1, y1)) {
+            return isVisible((float) x0, (float) y0, (float) x1, (float) y1);
+        }
+        int a = x0 * height + y0;
+        int b = x1 * height + y1;
+        // Always trace in the same direction, so both orders share an entry and an answer
+        if (a > b) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        long key = (long) a << 32 | b;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 52) & (CACHE_SIZE - 1);
+        if (cacheStamps[slot] == cacheGeneration && cacheKeys[slot] == key) {
+            return cacheValues[slot];
+        }
+        boolean visible = trace(a / height, a % height, b / height, b % height, -1);
+        cacheKeys[slot] = key;
+        cacheStamps[slot] = cacheGeneration;
+        cacheValues[slot] = visible;
+        return visible;
+    }
+
+    /**
+     * Whether the straight line between two points is not blocked by a solid or missing tile
+     */
+    public boolean isVisible(float x0, float y0, float x1, float y1) {
+        return trace(x0, y0, x1, y1, -1);
+    }
+
+    /**
+     * Whether a circle with the given radius can move in a straight line between two points without
+     * touching a solid or missing tile
+     */
+    public boolean isClear(float x0, float y0, float x1, float y1, float radius) {
+        testGeneration++;
+        if (testGeneration == 0) {
+            Arrays.fill(tested, 0);
+            testGeneration = 1;
+        }
+        return trace(x0, y0, x1, y1, radius);
+    }
+
+    @Override
+    public void onTileChanged(Map map, Tile tile) {
+        cacheGeneration++;
+        if (cacheGeneration == 0) {
+            Arrays.fill(cacheStamps, 0);
+            cacheGeneration = 1;
+        }
+    }
+
+    /**
+     * Visit the tiles on the segment in order, with a negative radius only the tiles themselves are
+     * tested, otherwise every tile close enough to the swept circle
+     */
+    private boolean trace(float x0, float y0, float x1, float y1, float radius) {
+        // Shift by half a tile so tiles are the unit squares between integer coordinates
+        x0 += 0.5f;
+        y0 += 0.5f;
+        x1 += 0.5f;
+        y1 += 0.5f;
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+
+        int x = (int) Math.floor(x0);
+        int y = (int) Math.floor(y0);
+        int steps = Math.abs((int) Math.floor(x1) - x) + Math.abs((int) Math.floor(y1) - y);
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        float deltaX = dx != 0 ? 1 / Math.abs(dx) : Float.POSITIVE_INFINITY;
+        float deltaY = dy != 0 ? 1 / Math.abs(dy) : Float.POSITIVE_INFINITY;
+        float maxX = dx > 0 ? (x + 1 - x0) * deltaX : dx < 0 ? (x0 - x) * deltaX : Float.POSITIVE_INFINITY;
+        float maxY = dy > 0 ? (y + 1 - y0) * deltaY : dy < 0 ? (y0 - y) * deltaY : Float.POSITIVE_INFINITY;
+
+        if (blocks(x, y, x0, y0, x1, y1, radius)) {
+            return false;
+        }
+        for (int i = 0; i < steps; i++) {
+            if (maxX < maxY) {
+                x += stepX;
+                maxX += deltaX;
+            } else if (maxY < maxX) {
+                y += stepY;
+                maxY += deltaY;
+            } else {
+                // Exactly through a corner, do not slip between two diagonal walls
+                if (blocks(x + stepX, y, x0, y0, x1, y1, radius) || blocks(x, y + stepY, x0, y0, x1, y1, radius)) {
+                    return false;
+                }
+                x += stepX;
+                y += stepY;
+                maxX += deltaX;
+                maxY += deltaY;
+                i++;
+            }
+            if (blocks(x, y, x0, y0, x1, y1, radius)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean blocks(int x, int y, float x0, float y0, float x1, float y1, float radius) {
+        if (radius < 0) {
+            return isBlocked(x, y);
+        }
+        int reach = (int) Math.ceil(radius);
+        for (int nx = x - reach; nx <= x + reach; nx++) {
+            for (int ny = y - reach; ny <= y + reach; ny++) {
+                if (isInside(nx, ny)) {
+                    if (tested[nx * height + ny] == testGeneration) {
+                        continue;
+                    }
+                    tested[nx * height + ny] = testGeneration;
+                }
+                if (isBlocked(nx, ny) && distanceSquared(nx, ny, x0, y0, x1, y1) <= radius * radius) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isInside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    private boolean isBlocked(int x, int y) {
+        return !isInside(x, y) || !map.isWalkable(x * height + y);
+    }
+
+    /**
+     * Squared distance between the segment and the unit square with its lower corner at (x, y).
+     * If they do not intersect the closest points include an end of the segment or a corner of the
+     * square, so it is enough to test those.
+     */
+    private static float distanceSquared(int x, int y, float x0, float y0, float x1, float y1) {
+        if (intersects(x, y, x0, y0, x1, y1)) {
+            return 0;
+        }
+        float distance = Math.min(pointToSquare(x, y, x0, y0), pointToSquare(x, y, x1, y1));
+        distance = Math.min(distance, pointToSegment(x, y, x0, y0, x1, y1));
+        distance = Math.min(distance, pointToSegment(x + 1, y, x0, y0, x1, y1));
+        distance = Math.min(distance, pointToSegment(x, y + 1, x0, y0, x1, y1));
+        return Math.min(distance, pointToSegment(x + 1, y + 1, x0, y0, x1, y1));
+    }
+
+    private static boolean intersects(int x, int y, float x0, float y0, float x1, float y1) {
+        // Clip the segment against both slabs of the square
+        float enter = 0, exit = 1;
+        float dx = x1 - x0, dy = y1 - y0;
+        if (dx == 0) {
+            if (x0 < x || x0 > x + 1) return false;
+        } else {
+            float a = (x - x0) / dx, b = (x + 1 - x0) / dx;
+            enter = Math.max(enter, Math.min(a, b));
+            exit = Math.min(exit, Math.max(a, b));
+        }
+        if (dy == 0) {
+            if (y0 < y || y0 > y + 1) return false;
+        } else {
+            float a = (y - y0) / dy, b = (y + 1 - y0) / dy;
+            enter = Math.max(enter, Math.min(a, b));
+            exit = Math.min(exit, Math.max(a, b));
+        }
+        return enter <= exit;
+    }
+
+    private static float pointToSquare(int x, int y, float px, float py) {
+        float dx = Math.max(Math.max(x - px, 0), px - (x + 1));
+        float dy = Math.max(Math.max(y - py, 0), py - (y + 1));
+        return dx * dx + dy * dy;
+    }
+
+    private static float pointToSegment(float px, float py, float x0, float y0, float x1, float y1) {
+        float dx = x1 - x0, dy = y1 - y0;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared == 0 ? 0 : ((px - x0) * dx + (py - y0) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        float ex = x0 + t * dx - px, ey = y0 + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+}
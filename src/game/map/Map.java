@@ -2,17 +2,85 @@ package game.map;
 
 import game.map.loader.MapLoader;
 import game.map.tile.Tile;
-import org.joml.Vector2f;
+import graphics.Mesh;
+import org.joml.Vector3f;
+import pathfinding.Landmarks;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
+/**
+ * Grid of tiles.
+ * <p>
+ * The state of the tiles is stored in flat arrays indexed by x * height + y: a bitset of the cells
+ * that have a tile, a solidity bitset, a mesh id, a rotation id and a tag bitmask per cell. Meshes
+ * and rotations are interned in small per-map palettes, tags get one bit of the tag mask each the
+ * first time a tile of the map has them. The Tile objects in the map are views on these arrays, so
+ * code that loops over the map can read the arrays directly.
+ * <p>
+ * Next to the tag masks every tag has a bitset of the cells with the tag, for iterating over the
+ * tiles with a tag and for the tag regions.
+ * <p>
+ * The map is divided in chunks of CHUNK_SIZE by CHUNK_SIZE tiles, so rendering can cull whole
+ * chunks at once.
+ */
 public class Map {
 
+    /**
+     * Most distinct tags a single map can hold, one bit of the tag mask each
+     */
+    public static final int MAX_TAGS = 64;
+    /**
+     * Width and height of a chunk in tiles
+     */
+    public static final int CHUNK_SIZE = 16;
+
     /**
      * 2d tile array in which the tiles are stored in a [x][y] fashion
      */
     private Tile[][] tiles;
+    /**
+     * Bit per cell, set when the cell has a tile
+     */
+    private long[] present;
+    /**
+     * Bit per cell, set when the tile is solid
+     */
+    private long[] solid;
+    /**
+     * Index in the mesh palette per cell, -1 if the tile has no mesh
+     */
+    private short[] meshIds;
+    /**
+     * Index in the rotation palette per cell
+     */
+    private byte[] rotationIds;
+    /**
+     * Tag bits per cell, see tagBits
+     */
+    private long[] tagMasks;
+    /**
+     * Distinct meshes and rotations of the tiles, referred to by the arrays above
+     */
+    private final List<Mesh> meshPalette = new ArrayList<>();
+    private final List<Vector3f> rotationPalette = new ArrayList<>();
+    /**
+     * Bit of every tag on this map indexed by TagId.getId(), 0 for tags no tile of this map ever had
+     */
+    private long[] tagBits = new long[0];
+    /**
+     * Tag, cells with the tag and regions of the tag per bit, regions are computed on first use
+     */
+    private final TagId[] bitTags = new TagId[MAX_TAGS];
+    private final BitSet[] tagCells = new BitSet[MAX_TAGS];
+    private final List<List<TagRegion>> tagRegions = new ArrayList<>(Collections.nCopies(MAX_TAGS, null));
+    private int tagCount;
+    private int chunkCountX, chunkCountY;
     /**
      * Map that stores all tiles with a specific tag
      */
@@ -25,6 +93,35 @@ public class Map {
      * The height of the tile map
      */
     private int height;
+    /**
+     * Resource path of the level file this map was loaded from, null if it was not loaded from a file
+     */
+    private String sourcePath;
+    /**
+     * Listeners that are notified when a tile changes, pathfinders on worker threads may register
+     * themselves on a copy of the map
+     */
+    private List<MapListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * Bumped every time a tile changes solidity, so cached results can tell they are stale
+     */
+    private int version;
+    /**
+     * Line of sight queries shared by everything on this map, created on first use
+     */
+    private LineOfSight lineOfSight;
+    /**
+     * Collision queries shared by everything on this map, created on first use
+     */
+    private Collision collision;
+    /**
+     * Landmark distances that tighten the A* heuristic, null if they were not computed for this map
+     */
+    private Landmarks landmarks;
+    /**
+     * What the player can see, null if the level does not use a field of view
+     */
+    private FieldOfView fieldOfView;
 
     public Map(Tile[][] tiles) {
         this(tiles.length, tiles[0].length, tiles, new HashMap<>());
@@ -34,17 +131,111 @@ public class Map {
         this(tiles.length, tiles[0].length, tiles, taggedTiles);
     }
 
+    /**
+     * Copy of the cells that have a tile and the solid cells of a map, see copySolidity
+     */
+    private Map(Map source, Tile[][] cells) {
+        width = source.width;
+        height = source.height;
+        tiles = new Tile[width][height];
+        taggedTiles = new HashMap<>();
+        present = source.present.clone();
+        solid = source.solid.clone();
+        chunkCountX = source.chunkCountX;
+        chunkCountY = source.chunkCountY;
+        landmarks = source.landmarks;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (hasTile(x * height + y)) {
+                    tiles[x][y] = cells[x][y];
+                }
+            }
+        }
+    }
+
     public Map(int width, int height, Tile[][] tiles, java.util.Map<String, List<Tile>> taggedTiles) {
         this.width = width;
         this.height = height;
         this.tiles = tiles;
-        this.taggedTiles = taggedTiles;
+        // Fixed at load time, tiles that lose a tag later stay in these lists
+        this.taggedTiles = new HashMap<>();
+        taggedTiles.forEach((tag, list) -> this.taggedTiles.put(tag, Collections.unmodifiableList(list)));
+
+        int size = width * height;
+        present = new long[(size + 63) >> 6];
+        solid = new long[present.length];
+        meshIds = new short[size];
+        rotationIds = new byte[size];
+        tagMasks = new long[size];
+        chunkCountX = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        chunkCountY = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (tiles[x][y] != null) {
+                    attach(tiles[x][y], x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Store the state of a tile in the arrays of this map and turn the tile into a view on them
+     */
+    private void attach(Tile tile, int x, int y) {
+        if (tile.getMap() != null) {
+            tile.setMap(null, -1);
+        }
+        int index = x * height + y;
+        setBit(present, index, true);
+        setBit(solid, index, tile.isSolid());
+        meshIds[index] = (short) intern(meshPalette, tile.getMesh(), Short.MAX_VALUE);
+        // Copied, the palette entry is shared by all tiles with this rotation
+        Vector3f rotation = tile.getRotation() != null ? new Vector3f(tile.getRotation()) : new Vector3f();
+        rotationIds[index] = (byte) intern(rotationPalette, rotation, 256);
+        long mask = 0;
+        for (String tag : tile.getTags()) {
+            mask |= internTag(TagId.of(tag));
+        }
+        setTagMask(index, mask);
+        tile.setMap(this, index);
     }
 
+    /**
+     * Tile array of the map, use setTile to replace tiles
+     */
     public Tile[][] getTiles() {
         return tiles;
     }
 
+    /**
+     * Put a tile in the map, replacing the tile that was there. The old tile keeps its state but is
+     * no longer part of the map.
+     *
+     * @param x    x position in the array
+     * @param y    y position in the array
+     * @param tile The new tile, or null to leave the cell empty
+     */
+    public void setTile(int x, int y, Tile tile) {
+        int index = x * height + y;
+        Tile previous = tiles[x][y];
+        if (previous != null) {
+            previous.setMap(null, -1);
+        }
+        tiles[x][y] = tile;
+        if (tile != null) {
+            attach(tile, x, y);
+        } else {
+            setBit(present, index, false);
+            setBit(solid, index, false);
+            meshIds[index] = -1;
+            setTagMask(index, 0);
+        }
+        if (tile != null || previous != null) {
+            tileChanged(tile != null ? tile : previous);
+        }
+    }
+
     /**
      * Query a tile based on its x and y position
      *
@@ -56,6 +247,341 @@ public class Map {
         return tiles[x][y];
     }
 
+    /**
+     * @param index x * height + y
+     * @return Tile at the given index, null if the cell is empty
+     */
+    public Tile getTile(int index) {
+        return tiles[index / height][index % height];
+    }
+
+    /**
+     * @param index x * height + y
+     * @return Whether the cell has a tile
+     */
+    public boolean hasTile(int index) {
+        return (present[index >> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * @param index x * height + y
+     * @return Whether the cell has a solid tile
+     */
+    public boolean isSolid(int index) {
+        return (solid[index >> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * @param index x * height + y
+     * @return Whether the cell has a tile that can be walked on
+     */
+    public boolean isWalkable(int index) {
+        return (present[index >> 6] & ~solid[index >> 6] & 1L << index) != 0;
+    }
+
+    public void setSolid(int index, boolean solid) {
+        if (isSolid(index) == solid) {
+            return;
+        }
+        setBit(this.solid, index, solid);
+        tileChanged(getTile(index));
+    }
+
+    /**
+     * @param index x * height + y
+     * @return Mesh of the tile at the given index, null if it has none
+     */
+    public Mesh getMesh(int index) {
+        int id = meshIds[index];
+        return id < 0 ? null : meshPalette.get(id);
+    }
+
+    public void setMesh(int index, Mesh mesh) {
+        meshIds[index] = (short) intern(meshPalette, mesh, Short.MAX_VALUE);
+    }
+
+    /**
+     * @param index x * height + y
+     * @return Rotation of the tile at the given index, shared with all tiles with the same rotation
+     * so it must not be modified
+     */
+    public Vector3f getRotation(int index) {
+        return rotationPalette.get(rotationIds[index] & 0xFF);
+    }
+
+    /**
+     * @param index x * height + y
+     * @return Tag bitmask of the tile at the given index, see getTagBit
+     */
+    public long getTagMask(int index) {
+        return tagMasks[index];
+    }
+
+    /**
+     * @return Bit of the given tag in the tag masks of this map, 0 if no tile of this map has ever
+     * had the tag
+     */
+    public long getTagBit(TagId tag) {
+        int id = tag.getId();
+        return id < tagBits.length ? tagBits[id] : 0;
+    }
+
+    public boolean hasTag(int index, TagId tag) {
+        int id = tag.getId();
+        return id < tagBits.length && (tagMasks[index] & tagBits[id]) != 0;
+    }
+
+    public void addTag(int index, TagId tag) {
+        setTagMask(index, tagMasks[index] | internTag(tag));
+    }
+
+    public void removeTag(int index, TagId tag) {
+        setTagMask(index, tagMasks[index] & ~getTagBit(tag));
+    }
+
+    /**
+     * @return Names of the tags of the tile at the given index, in the order they were first seen on
+     * this map
+     */
+    public ArrayList<String> getTags(int index) {
+        ArrayList<String> tags = new ArrayList<>();
+        long mask = tagMasks[index];
+        while (mask != 0) {
+            tags.add(bitTags[Long.numberOfTrailingZeros(mask)].getName());
+            mask &= mask - 1;
+        }
+        return tags;
+    }
+
+    /**
+     * Iterate over the tiles that currently have a tag without creating a list, in index order:
+     * <pre>
+     * for (int i = map.nextTileWithTag(tag, 0); i >= 0; i = map.nextTileWithTag(tag, i + 1))
+     * </pre>
+     *
+     * @return Index of the first tile at or after the given index with the tag, -1 if there is none
+     */
+    public int nextTileWithTag(TagId tag, int fromIndex) {
+        long bit = getTagBit(tag);
+        return bit == 0 ? -1 : tagCells[Long.numberOfTrailingZeros(bit)].nextSetBit(fromIndex);
+    }
+
+    /**
+     * Run an action for all tiles that currently have a tag
+     */
+    public void forEachTileWithTag(TagId tag, Consumer<Tile> action) {
+        for (int i = nextTileWithTag(tag, 0); i >= 0; i = nextTileWithTag(tag, i + 1)) {
+            action.accept(getTile(i));
+        }
+    }
+
+    /**
+     * @return Number of tiles that currently have a tag
+     */
+    public int countTilesWithTag(TagId tag) {
+        long bit = getTagBit(tag);
+        return bit == 0 ? 0 : tagCells[Long.numberOfTrailingZeros(bit)].cardinality();
+    }
+
+    /**
+     * Groups of tiles with a tag that touch each other, e.g. the tiles of one trigger area. The
+     * regions are kept until a tile gains or loses the tag.
+     *
+     * @return The regions, in order of their first tile
+     */
+    public List<TagRegion> getTagRegions(TagId tag) {
+        long bit = getTagBit(tag);
+        if (bit == 0) {
+            return Collections.emptyList();
+        }
+        int tagBit = Long.numberOfTrailingZeros(bit);
+        List<TagRegion> regions = tagRegions.get(tagBit);
+        if (regions == null) {
+            regions = Collections.unmodifiableList(findRegions(tagCells[tagBit]));
+            tagRegions.set(tagBit, regions);
+        }
+        return regions;
+    }
+
+    /**
+     * Flood fill the cells of a tag into 4-connected regions
+     */
+    private List<TagRegion> findRegions(BitSet cells) {
+        List<TagRegion> regions = new ArrayList<>();
+        BitSet visited = new BitSet(width * height);
+        int[] queue = new int[cells.cardinality()];
+        for (int origin = cells.nextSetBit(0); origin >= 0; origin = cells.nextSetBit(origin + 1)) {
+            if (visited.get(origin)) {
+                continue;
+            }
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = -1, maxY = -1;
+            int head = 0, tail = 0;
+            queue[tail++] = origin;
+            visited.set(origin);
+            while (head < tail) {
+                int current = queue[head++];
+                int x = current / height;
+                int y = current % height;
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+                int[] neighbours = {
+                        x > 0 ? current - height : -1,
+                        x < width - 1 ? current + height : -1,
+                        y > 0 ? current - 1 : -1,
+                        y < height - 1 ? current + 1 : -1
+                };
+                for (int neighbour : neighbours) {
+                    if (neighbour >= 0 && cells.get(neighbour) && !visited.get(neighbour)) {
+                        visited.set(neighbour);
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+            regions.add(new TagRegion(minX, minY, maxX, maxY, tail));
+        }
+        return regions;
+    }
+
+    /**
+     * @return Bit of the tag in the tag masks of this map, assigned if the map did not have the tag yet
+     */
+    private long internTag(TagId tag) {
+        long bit = getTagBit(tag);
+        if (bit != 0) {
+            return bit;
+        }
+        if (tagCount == MAX_TAGS) {
+            throw new IllegalStateException("Map cannot hold more than " + MAX_TAGS + " distinct tags");
+        }
+        if (tag.getId() >= tagBits.length) {
+            tagBits = Arrays.copyOf(tagBits, Math.max(tag.getId() + 1, tagBits.length * 2));
+        }
+        bit = 1L << tagCount;
+        tagBits[tag.getId()] = bit;
+        bitTags[tagCount] = tag;
+        tagCells[tagCount] = new BitSet(width * height);
+        tagCount++;
+        return bit;
+    }
+
+    /**
+     * Replace the tag mask of a cell, keeping the cells of the tags in sync
+     */
+    private void setTagMask(int index, long mask) {
+        long changed = tagMasks[index] ^ mask;
+        tagMasks[index] = mask;
+        while (changed != 0) {
+            int bit = Long.numberOfTrailingZeros(changed);
+            tagCells[bit].set(index, (mask & 1L << bit) != 0);
+            tagRegions.set(bit, null);
+            changed &= changed - 1;
+        }
+    }
+
+    /**
+     * @return Index of the value in the palette, added at the end if it is not in there yet
+     */
+    private static <T> int intern(List<T> palette, T value, int limit) {
+        if (value == null) {
+            return -1;
+        }
+        int id = palette.indexOf(value);
+        if (id < 0) {
+            if (palette.size() == limit) {
+                throw new IllegalStateException("Map cannot hold more than " + limit + " distinct " + value.getClass().getSimpleName() + "s");
+            }
+            id = palette.size();
+            palette.add(value);
+        }
+        return id;
+    }
+
+    private static void setBit(long[] bits, int index, boolean value) {
+        if (value) {
+            bits[index >> 6] |= 1L << index;
+        } else {
+            bits[index >> 6] &= ~(1L << index);
+        }
+    }
+
+    public int getChunkCountX() {
+        return chunkCountX;
+    }
+
+    public int getChunkCountY() {
+        return chunkCountY;
+    }
+
+    /**
+     * Copy which cells have a tile and which are solid, for searches on other threads. Only the
+     * bitsets are copied, the landmarks are shared with this map and the tiles of the copy are
+     * taken from the given array, so they only carry a position and solidity has to be read from
+     * the copy. The copy has no meshes, rotations or tags.
+     *
+     * @param cells Tile for every cell of the map, can be reused by every copy
+     */
+    public Map copySolidity(Tile[][] cells) {
+        if (landmarks != null) {
+            // Rebuilt here, on the thread that owns this map, not by the searches on the copy
+            landmarks.update();
+        }
+        return new Map(this, cells);
+    }
+
+    /**
+     * Copy the state of all cells, e.g. right after a level is set up, so it can be restored when
+     * the level restarts.
+     */
+    public State saveState() {
+        return new State(this);
+    }
+
+    /**
+     * Put all cells back in a saved state, keeping the Tile objects that were in the map when the
+     * state was saved. Listeners are told about every tile that changed solidity or was replaced.
+     *
+     * @return Whether the meshes or rotations of the tiles differ from before, in which case baked
+     * static shadows are out of date
+     */
+    public boolean restoreState(State state) {
+        boolean meshesChanged = !Arrays.equals(meshIds, state.meshIds) || !Arrays.equals(rotationIds, state.rotationIds);
+        List<Tile> changed = new ArrayList<>();
+        for (int index = 0; index < state.tiles.length; index++) {
+            int x = index / height, y = index % height;
+            Tile current = tiles[x][y];
+            Tile saved = state.tiles[index];
+            if (current != saved) {
+                meshesChanged = true;
+                if (current != null) {
+                    current.setMap(null, -1);
+                    changed.add(current);
+                }
+                tiles[x][y] = saved;
+                if (saved != null) {
+                    saved.setMap(this, index);
+                }
+            }
+            if (saved != null && isSolid(index) != ((state.solid[index >> 6] & 1L << index) != 0)) {
+                changed.add(saved);
+            }
+        }
+        System.arraycopy(state.present, 0, present, 0, present.length);
+        System.arraycopy(state.solid, 0, solid, 0, solid.length);
+        System.arraycopy(state.meshIds, 0, meshIds, 0, meshIds.length);
+        System.arraycopy(state.rotationIds, 0, rotationIds, 0, rotationIds.length);
+        for (int index = 0; index < tagMasks.length; index++) {
+            if (tagMasks[index] != state.tagMasks[index]) {
+                setTagMask(index, state.tagMasks[index]);
+            }
+        }
+        for (Tile tile : changed) {
+            tileChanged(tile);
+        }
+        return meshesChanged;
+    }
+
     public Tile[] getNeighbours(Tile tile) {
         List<Tile> neighbours = new ArrayList<>();
         int x = tile.getPosition().x;
@@ -88,7 +614,8 @@ public class Map {
     /**
      * Get all tiles with the given tag
      * @param tag to search for
-     * @return a list with all tiles that have the given tag
+     * @return a list with all tiles that had the given tag when the map was loaded, null if there
+     * were none, see forEachTileWithTag for the tiles that have the tag now
      */
     public List<Tile> getTiles(String tag) {
         return taggedTiles.get(tag);
@@ -132,35 +659,99 @@ public class Map {
     public int getHeight() {
         return height;
     }
+
+    public void addListener(MapListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MapListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notify the listeners that a tile of this map changed, called by the tile itself
+     *
+     * @param tile The tile that changed
+     */
+    public void tileChanged(Tile tile) {
+        version++;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onTileChanged(this, tile);
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public LineOfSight getLineOfSight() {
+        if (lineOfSight == null) {
+            lineOfSight = new LineOfSight(this);
+        }
+        return lineOfSight;
+    }
+
+    public Collision getCollision() {
+        if (collision == null) {
+            collision = new Collision(this);
+        }
+        return collision;
+    }
+
+    public Landmarks getLandmarks() {
+        return landmarks;
+    }
+
+    public void setLandmarks(Landmarks landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    public FieldOfView getFieldOfView() {
+        return fieldOfView;
+    }
+
+    public void setFieldOfView(FieldOfView fieldOfView) {
+        this.fieldOfView = fieldOfView;
+    }
+
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    public void setSourcePath(String sourcePath) {
+        this.sourcePath = sourcePath;
+    }
   
     /**
      * Checks whether the specified square collides with
-     * any solid tiles in this map
-     * @return whether the circle collides with any solid tiles
+     * any solid tiles in this map, see Collision
+     * @return whether the square collides with any solid tiles
      */
     public boolean collidesSolid(float x1, float x2, float y1, float y2) {
-        Vector2f[] points = new Vector2f[]{
-                new Vector2f(x1, y1),
-                new Vector2f(x2, y1),
-                new Vector2f(x1, y2),
-                new Vector2f(x2, y2)
-        };
-
-        for (Vector2f point : points) {
-            int x = Math.round(point.x);
-            int y = Math.round(point.y);
-
-            if (x < 0 || y < 0 || x >= tiles.length || y >= tiles[x].length) {
-                return true;
-            }
-            Tile tile = getTile(x, y);
-            if (tile == null) {
-                return true;
-            }
-            if (tile.isSolid()) {
-                return true;
+        return getCollision().overlaps(x1, x2, y1, y2);
+    }
+
+    /**
+     * Copy of the cells of a map, see saveState
+     */
+    public static class State {
+
+        private final Tile[] tiles;
+        private final long[] present, solid;
+        private final short[] meshIds;
+        private final byte[] rotationIds;
+        private final long[] tagMasks;
+
+        private State(Map map) {
+            tiles = new Tile[map.width * map.height];
+            for (int x = 0; x < map.width; x++) {
+                System.arraycopy(map.tiles[x], 0, tiles, x * map.height, map.height);
             }
+            present = map.present.clone();
+            solid = map.solid.clone();
+            meshIds = map.meshIds.clone();
+            rotationIds = map.rotationIds.clone();
+            tagMasks = map.tagMasks.clone();
         }
-        return false;
     }
 }
@@ -0,0 +1,18 @@
+package game.map;
+
+import game.map.tile.Tile;
+
+/**
+ * Listener that is notified when tiles of a map change, e.g. to keep data that is derived from
+ * the map up to date
+ */
+public interface MapListener {
+
+    /**
+     * Called after a tile of the map became solid or non-solid
+     *
+     * @param map  The map the tile belongs to
+     * @param tile The tile that changed
+     */
+    void onTileChanged(Map map, Tile tile);
+}
@@ -0,0 +1,52 @@
+package game.map;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interned tile tag name.
+ * <p>
+ * Every tag name has exactly one TagId, so levels can look their tags up once, e.g. in a static
+ * field, and test tiles for them without comparing strings. Each map gives the tags of its tiles
+ * a bit of its own, see Map.
+ */
+public final class TagId {
+
+    private static final ConcurrentHashMap<String, TagId> tags = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private final String name;
+    private final int id;
+
+    private TagId(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * @return The tag with the given name, created the first time the name is used
+     */
+    public static TagId of(String name) {
+        TagId tag = tags.get(name);
+        if (tag == null) {
+            tag = tags.computeIfAbsent(name, n -> new TagId(n, nextId.getAndIncrement()));
+        }
+        return tag;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Small number that is unique for every tag name
+     */
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
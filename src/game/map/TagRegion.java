@@ -0,0 +1,53 @@
+package game.map;
+
+/**
+ * Group of tiles with the same tag that touch each other, described by the rectangle around them
+ */
+public class TagRegion {
+
+    private final int minX, minY, maxX, maxY;
+    private final int size;
+
+    TagRegion(int minX, int minY, int maxX, int maxY, int size) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.size = size;
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * @return Number of tiles in the region
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Whether a position lies within the rectangle around the region, which is exact for the
+     * rectangular trigger areas levels use
+     */
+    public boolean contains(int x, int y) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    public boolean contains(float x, float y) {
+        return contains(Math.round(x), Math.round(y));
+    }
+}
@@ -0,0 +1,25 @@
+package game.map;
+
+/**
+ * Tiles of a map that the viewer may see, used to skip drawing what is out of sight. Tile (x, y)
+ * covers the square of size 1 centred on (x, y).
+ */
+public interface VisibleSet {
+
+    /**
+     * @param index x * height + y
+     * @return Whether the tile may be seen
+     */
+    boolean isVisible(int index);
+
+    /**
+     * @return Whether the tile at the given position may be seen, positions outside of the map are
+     * always visible
+     */
+    boolean isVisible(float x, float y);
+
+    /**
+     * @return Whether any tile of the chunk may be seen, see Map.CHUNK_SIZE
+     */
+    boolean isChunkVisible(int chunkX, int chunkY);
+}
@@ -0,0 +1,123 @@
+package game.map.loader;
+
+import engine.util.AssetStore;
+import engine.util.Utilities;
+import game.map.Map;
+import game.map.tile.Tile;
+import graphics.Mesh;
+import org.joml.Vector2i;
+import org.joml.Vector3f;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Loads levels in the compiled binary format written by LevelCompiler.
+ * <p>
+ * The file is a slice of the asset pack, or else memory mapped when it is a plain file and read in
+ * one go when it is packed in a jar, after which the map is built straight from the buffer without
+ * any text parsing. All numbers are big endian, strings are a short byte length followed by UTF-8:
+ * <pre>
+ * int    magic "DDLV"
+ * short  format version
+ * int    width, height
+ * short  number of mesh names, followed by the names
+ * int    number of tiles, followed by the tiles:
+ *        short x, short y, short mesh name, byte rotation (multiple of 90 degrees), byte solid
+ * short  number of tags, followed by the tags:
+ *        string name, int number of tiles, int tile index (x * height + y) per tile
+ * </pre>
+ * Air tiles are not stored at all. Tags are added to the tiles in the order of the tag table, so
+ * the tags of a single tile may be in a different order than in the text level.
+ */
+public class BinaryMapLoader implements MapLoader {
+
+    static final int MAGIC = 0x44444C56;
+    static final short VERSION = 1;
+
+    private final String resourcePath;
+    private boolean editorMode = false;
+    private boolean loadMeshes = true;
+
+    public BinaryMapLoader(String resourcePath) {
+        this.resourcePath = resourcePath;
+    }
+
+    public void setEditorMode(boolean editorMode) { this.editorMode = editorMode; }
+
+    public void setLoadMeshes(boolean loadMeshes) { this.loadMeshes = loadMeshes; }
+
+    /**
+     * @return Resource path of the compiled version of a text level
+     */
+    public static String binaryPath(String textPath) {
+        return textPath + "b";
+    }
+
+    /**
+     * Whether a compiled version of the text level exists and can be used instead. If both are
+     * plain files, the compiled one must not be older, so levels saved by the editor are not
+     * shadowed by a stale compiled copy.
+     */
+    public static boolean isUpToDate(String textPath) {
+        return Utilities.isCompiledUpToDate(textPath, binaryPath(textPath));
+    }
+
+    @Override
+    public Map load() throws Exception {
+        ByteBuffer buffer = Utilities.readResource(resourcePath);
+
+        if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+            throw new Exception("Level file is not defined correctly");
+        }
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+
+        String[] meshNames = new String[buffer.getShort()];
+        Mesh[] meshes = new Mesh[meshNames.length];
+        for (int i = 0; i < meshNames.length; i++) {
+            meshNames[i] = readString(buffer);
+            meshes[i] = loadMeshes ? AssetStore.getTileMesh(meshNames[i]) : null;
+        }
+
+        Tile[][] tileList = new Tile[width][height];
+        int tileCount = buffer.getInt();
+        for (int i = 0; i < tileCount; i++) {
+            int x = buffer.getShort();
+            int y = buffer.getShort();
+            int mesh = buffer.getShort();
+            int rotationIndex = buffer.get();
+            boolean solid = buffer.get() != 0;
+
+            Tile tile = new Tile(new Vector2i(x, y), new Vector3f(0, rotationIndex * 90, 0), meshes[mesh], solid);
+            if (editorMode && meshes[mesh] != null) tile.getMesh().setName(meshNames[mesh]);
+            tileList[x][y] = tile;
+        }
+
+        java.util.Map<String, List<Tile>> taggedTiles = new HashMap<>();
+        int tagCount = buffer.getShort();
+        for (int i = 0; i < tagCount; i++) {
+            String tag = readString(buffer);
+            int count = buffer.getInt();
+            List<Tile> tilesWithTag = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) {
+                int index = buffer.getInt();
+                Tile tile = tileList[index / height][index % height];
+                tilesWithTag.add(tile);
+                tile.addTag(tag);
+            }
+            taggedTiles.put(tag, tilesWithTag);
+        }
+
+        return new Map(width, height, tileList, taggedTiles);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -7,6 +7,7 @@ import game.map.tile.Tile;
 import graphics.Mesh;
 import org.joml.Vector2i;
 import org.joml.Vector3f;
+import pathfinding.Landmarks;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import java.util.ArrayList;
@@ -15,6 +16,7 @@ import java.util.List;
 public class MapFileLoader implements MapLoader {
 
     private boolean editorMode = false;
+    private boolean loadMeshes = true;
     private String resourcePath;
 
     public MapFileLoader(String resourcePath) {
@@ -23,8 +25,31 @@ public class MapFileLoader implements MapLoader {
 
     public void setEditorMode(boolean editorMode) { this.editorMode = editorMode; }
 
+    /**
+     * Leave the meshes of the tiles null, so a map can be loaded without an OpenGL context, e.g. by tools
+     */
+    public void setLoadMeshes(boolean loadMeshes) { this.loadMeshes = loadMeshes; }
+
+    /**
+     * Load the level, from its compiled version if there is an up to date one, see LevelCompiler
+     */
     @Override
     public Map load() throws Exception {
+        Map map;
+        if (BinaryMapLoader.isUpToDate(resourcePath)) {
+            BinaryMapLoader binaryLoader = new BinaryMapLoader(BinaryMapLoader.binaryPath(resourcePath));
+            binaryLoader.setEditorMode(editorMode);
+            binaryLoader.setLoadMeshes(loadMeshes);
+            map = binaryLoader.load();
+        } else {
+            map = loadText();
+        }
+        map.setSourcePath(resourcePath);
+        map.setLandmarks(new Landmarks(map));
+        return map;
+    }
+
+    private Map loadText() throws Exception {
 
         List<String> lineList = Utilities.readAllLines(resourcePath);
 
@@ -68,10 +93,10 @@ public class MapFileLoader implements MapLoader {
 
                 Vector2i position = new Vector2i(y, x);
 
-                Mesh mesh = AssetStore.getTileMesh(meshName);
+                Mesh mesh = loadMeshes ? AssetStore.getTileMesh(meshName) : null;
 
                 Tile tile = new Tile(position, rotation, mesh, solid);
-                if (editorMode) tile.getMesh().setName(meshName);
+                if (editorMode && mesh != null) tile.getMesh().setName(meshName);
                 tileList[y][x] = tile;
 
                 if (tileProperties.length == 4) {
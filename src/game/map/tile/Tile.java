@@ -1,11 +1,20 @@
 package game.map.tile;
 
+import game.map.Map;
+import game.map.TagId;
 import graphics.Mesh;
 import org.joml.Vector2i;
 import org.joml.Vector3f;
 
 import java.util.ArrayList;
 
+/**
+ * Tile of a map.
+ * <p>
+ * Once a tile is part of a map its state lives in the arrays of the map and the tile only reads
+ * and writes those. Until then, e.g. while a loader builds the tile array, the state is kept in
+ * the tile itself.
+ */
 public class Tile {
 
     /**
@@ -13,19 +22,27 @@ public class Tile {
      */
     private Vector2i position;
     /**
-     * The rotation of the tile
+     * The map this tile belongs to, notified when the tile changes
+     */
+    private Map map;
+    /**
+     * Index of the tile in the arrays of the map, x * height + y
+     */
+    private int index = -1;
+    /**
+     * The rotation of the tile, only used while the tile is not part of a map
      */
     private Vector3f rotation;
     /**
-     * The actual model of the tile
+     * The actual model of the tile, only used while the tile is not part of a map
      */
     private Mesh mesh;
     /**
-     * Solid tiles cannot be walked on by the player
+     * Solid tiles cannot be walked on by the player, only used while the tile is not part of a map
      */
     private boolean solid;
     /**
-     * Tags associated with this tile
+     * Tags associated with this tile, only used while the tile is not part of a map
      */
     private ArrayList<String> tags;
 
@@ -53,40 +70,112 @@ public class Tile {
         return position;
     }
 
+    /**
+     * @return The rotation, which is shared with the other tiles of the map with the same rotation
+     * and must not be modified
+     */
     public Vector3f getRotation() {
-        return rotation;
+        return map != null ? map.getRotation(index) : rotation;
     }
 
     public Mesh getMesh() {
-        return mesh;
+        return map != null ? map.getMesh(index) : mesh;
     }
 
     public void setMesh(Mesh mesh) {
-        this.mesh = mesh;
+        if (map != null) {
+            map.setMesh(index, mesh);
+        } else {
+            this.mesh = mesh;
+        }
     }
 
     public boolean isSolid() {
-        return solid;
+        return map != null ? map.isSolid(index) : solid;
     }
 
     public void setSolid(boolean solid) {
-        this.solid = solid;
+        if (map != null) {
+            map.setSolid(index, solid);
+        } else {
+            this.solid = solid;
+        }
+    }
+
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * @return Index of the tile in the arrays of its map, -1 if it is not part of a map
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Called by the map when the tile is added to or removed from it. A tile that leaves its map
+     * takes its state with it.
+     *
+     * @param map   The map, null if the tile is no longer part of a map
+     * @param index Index of the tile in the arrays of the map
+     */
+    public void setMap(Map map, int index) {
+        if (this.map != null) {
+            rotation = this.map.getRotation(this.index);
+            mesh = this.map.getMesh(this.index);
+            solid = this.map.isSolid(this.index);
+            tags = this.map.getTags(this.index);
+        }
+        this.map = map;
+        this.index = index;
+        if (map != null) {
+            rotation = null;
+            mesh = null;
+            tags = null;
+        }
     }
 
     public void addTag(String tag) {
-        tags.add(tag);
+        addTag(TagId.of(tag));
+    }
+
+    public void addTag(TagId tag) {
+        if (map != null) {
+            map.addTag(index, tag);
+        } else if (!tags.contains(tag.getName())) {
+            tags.add(tag.getName());
+        }
     }
 
     public void removeTag(String tag) {
-        tags.remove(tag);
+        removeTag(TagId.of(tag));
+    }
+
+    public void removeTag(TagId tag) {
+        if (map != null) {
+            map.removeTag(index, tag);
+        } else {
+            tags.remove(tag.getName());
+        }
     }
 
     public boolean hasTag(String tag) {
-        return tags.contains(tag);
+        return hasTag(TagId.of(tag));
     }
 
+    /**
+     * Cheaper than hasTag(String), meant for checks that run every frame
+     */
+    public boolean hasTag(TagId tag) {
+        return map != null ? map.hasTag(index, tag) : tags.contains(tag.getName());
+    }
+
+    /**
+     * @return Tags of the tile, a copy if the tile is part of a map
+     */
     public ArrayList<String> getTags() {
-        return tags;
+        return map != null ? map.getTags(index) : tags;
     }
 
 }
@@ -3,22 +3,29 @@ package game.mobs;
 import engine.entities.Entity;
 import engine.entities.LivingEntity;
 import engine.util.Spline;
+import game.map.FieldOfView;
 import game.map.Map;
 import game.map.tile.Tile;
 import graphics.Mesh;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
-import pathfinding.A_star;
-import sun.security.ssl.Debug;
+import pathfinding.DStarLite;
+import pathfinding.IndexedAStar;
+import pathfinding.PathRequest;
+import pathfinding.Pathfinding;
+import pathfinding.PathfindingService;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class SimpleMob extends LivingEntity {
-    private A_star pathfinder = new A_star();
+    private Pathfinding pathfinder = new IndexedAStar();
+    private PathfindingService pathfindingService;
+    private PathRequest pathRequest;
     private Tile currentTile, targetTile;
     private Vector2f lastTargetPos;
     private Vector3f direction = new Vector3f(0, 0, 1);
-    private List<Tile> path;
+    private List<Tile> path = new ArrayList<>();
     private int pathProgress = 0;
     private Entity target;
     private Spline pathSmoother = new Spline();
@@ -47,81 +54,73 @@ public class SimpleMob extends LivingEntity {
         target = entity;
     }
 
-    public void followOnSightOnly(boolean sightOnly) {
-        followOnSightOnly = sightOnly;
+    /**
+     * Replace the pathfinding algorithm, e.g. with a JumpPointSearch on maps with large open rooms, a
+     * FlowField that is shared by all mobs chasing the same target or a DStarLite of its own on maps
+     * with long, winding corridors
+     */
+    public void setPathfinder(Pathfinding pathfinder) {
+        this.pathfinder = pathfinder;
+        forcePathUpdate = true;
     }
 
     /**
-     * Custom line of sight algorithm
-     *
-     * @param start
-     * @param end
-     * @return
+     * Let the service compute paths on a worker thread instead of searching during the update, the
+     * mob keeps following its previous path until the new one arrives
      */
-    public boolean isInLineOfSightWithoutCollision(Vector2f start, Vector2f end, float radius, float precision) {
-        Vector2f pos = new Vector2f(start);
-        Vector2f dir = new Vector2f(end).sub(start).normalize();
-        if (dir.length() == 0) return false;
-        float length = (new Vector2f(end).sub(start)).length();
-        Vector2f perpDir = new Vector2f(dir.y, -dir.x);
-        Vector2f spot1, spot2;
-        float t = 0;
-
-        while (t < 1.0f) {
-            spot1 = new Vector2f(pos).add(new Vector2f(perpDir).mul(radius));
-            spot2 = new Vector2f(pos).add(new Vector2f(perpDir).mul(-radius));
-
-            try {
-                if (isWithinMap(pos.x, pos.y) && getMap().getTile(Math.round(pos.x), Math.round(pos.y)).isSolid()) {
-                    return false;
-                } else if (isWithinMap(spot2.x, spot2.y) && getMap().getTile(Math.round(spot2.x), Math.round(spot2.y)).isSolid()) {
-                    return false;
-                } else if (isWithinMap(spot1.x, spot1.y) && getMap().getTile(Math.round(spot1.x), Math.round(spot1.y)).isSolid()) {
-                    return false;
-                }
-            } catch (Exception e) {
-                Debug.println("MOB", "EXCEPTION");
-            }
-
-            pos = new Vector2f(start).mul(1.0f - t);
-            pos.add(new Vector2f(end).mul(t));
-
-            t += precision / length;
+    public void setPathfindingService(PathfindingService pathfindingService) {
+        if (pathRequest != null) {
+            pathRequest.cancel();
+            pathRequest = null;
         }
-
-        return true;
+        this.pathfindingService = pathfindingService;
+        forcePathUpdate = true;
     }
 
-    public boolean isInLineOfSight(Vector2f start, Vector2f end, float precision) {
-        Vector2f pos = new Vector2f(start);
-        float length = (new Vector2f(end).sub(start)).length();
-        float t = 0;
-
-        while (t < 1.0f) {
-            try {
-                if (isWithinMap(pos.x, pos.y) && getMap().getTile(Math.round(pos.x), Math.round(pos.y)).isSolid()) {
-                    return false;
-                }
-            } catch (Exception e) {
-                Debug.println("MOB", "EXCEPTION2");
-            }
+    public void followOnSightOnly(boolean sightOnly) {
+        followOnSightOnly = sightOnly;
+    }
 
-            pos = new Vector2f(start).mul(1.0f - t);
-            pos.add(new Vector2f(end).mul(t));
+    /**
+     * Whether the mob, as a circle with the given radius, can move straight from start to end
+     * without touching a solid tile
+     */
+    public boolean isInLineOfSightWithoutCollision(Vector2f start, Vector2f end, float radius) {
+        return getMap().getLineOfSight().isClear(start.x, start.y, end.x, end.y, radius);
+    }
 
-            t += precision / length;
+    /**
+     * Whether the tile of end can be seen from the tile of start, cached by the map until a tile
+     * changes solidity. When end is the origin of the field of view of the map, e.g. the player,
+     * the field of view answers instead, so the mob sees the player exactly when the player sees it.
+     */
+    public boolean isInLineOfSight(Vector2f start, Vector2f end) {
+        FieldOfView fieldOfView = getMap().getFieldOfView();
+        if (fieldOfView != null && fieldOfView.isOrigin(end.x, end.y)) {
+            return fieldOfView.isVisible(start.x, start.y);
         }
-
-        return true;
+        return getMap().getLineOfSight().isVisible(Math.round(start.x), Math.round(start.y), Math.round(end.x), Math.round(end.y));
     }
 
-    private boolean isWithinMap(float x, float y) {
-        int xr = Math.round(x), yr = Math.round(y);
-        if (0 <= xr && xr < getMap().getWidth() && 0 <= yr && yr < getMap().getHeight()) {
-            return true;
+    @Override
+    public void reset() {
+        if (pathRequest != null) {
+            pathRequest.cancel();
+            pathRequest = null;
         }
-
-        return false;
+        if (pathfinder instanceof DStarLite) {
+            // It listens to the map, which outlives the mob when the level restarts
+            ((DStarLite) pathfinder).detach();
+        }
+        currentTile = null;
+        targetTile = null;
+        lastTargetPos = null;
+        direction.set(0, 0, 1);
+        path = new ArrayList<>();
+        pathProgress = 0;
+        isInLineOfSight = false;
+        forcePathUpdate = true;
+        isMoving = false;
     }
 
     @Override
@@ -131,21 +130,22 @@ public class SimpleMob extends LivingEntity {
             // Variables
             Vector2f pos = new Vector2f(position.x, position.z);
             Vector2f curTarPos = new Vector2f(target.getPosition().x, target.getPosition().z);
-            if (followOnSightOnly && isInLineOfSight(pos, curTarPos, delta * getSpeed())) {
+            if (followOnSightOnly && isInLineOfSight(pos, curTarPos)) {
                 lastTargetPos = curTarPos;
             } else if (!followOnSightOnly) {
                 lastTargetPos = curTarPos;
             }
             // Check if mob can see the target
             if ((new Vector2f(lastTargetPos).sub(pos)).length() > 0.5f) {
-                if (isInLineOfSightWithoutCollision(pos, lastTargetPos, 0.35f, delta * getSpeed())) {
+                if (isInLineOfSightWithoutCollision(pos, lastTargetPos, 0.35f)) {
                     isInLineOfSight = true;
                     setupPathSmootherMode3(position, direction, new Vector3f(lastTargetPos.x, getPosition().y, lastTargetPos.y));
                     pathSmoother.update(delta * getSpeed() * 0.8f);
                     Vector3f finalPos = pathSmoother.getResult();
                     direction = new Vector3f(finalPos).sub(position).normalize();
                     setRotation(0, (float) Math.toDegrees(-Math.atan2(direction.z, direction.x)) + 180, 0);
-                    setPosition(finalPos);
+                    // The curve can bend away from the straight line that was checked, keep it out of the walls
+                    getMap().getCollision().moveCircle(position, 0.35f, finalPos.x - position.x, finalPos.z - position.z);
                     isMoving = true;
                 } else {
                     currentTile = super.getMap().getTile(Math.round(pos.x), Math.round(pos.y));
@@ -153,31 +153,37 @@ public class SimpleMob extends LivingEntity {
                     if (newTargetCurrentTile != targetTile || forcePathUpdate) {
                         forcePathUpdate = false;
                         targetTile = super.getMap().getTile(Math.round(lastTargetPos.x), Math.round(lastTargetPos.y));
-                        long time = System.nanoTime();
-                        path = findPathToTile(currentTile, targetTile);
-                        pathProgress = 1;
-                        if (!isInLineOfSight) {
-                            if (pathProgress < path.size()) {
-                                setupPathSmootherMode2(
-                                        getPosition(),
-                                        new Vector3f(path.get(pathProgress - 1).getPosition().x, getPosition().y, path.get(pathProgress - 1).getPosition().y),
-                                        new Vector3f(path.get(pathProgress).getPosition().x, getPosition().y, path.get(pathProgress).getPosition().y));
-                            } else {
-                                isMoving = false;
-                                return;
+                        if (pathfindingService != null) {
+                            // The target moved again before the last result arrived
+                            if (pathRequest != null) {
+                                pathRequest.cancel();
+                            }
+                            pathRequest = pathfindingService.submit(currentTile, targetTile);
+                            if (isInLineOfSight) {
+                                // The old path does not start where the mob is anymore
+                                pathProgress = 0;
                             }
                         } else {
-                            if (pathProgress < path.size()) {
-                                setupPathSmootherMode2(
-                                        getPosition(),
-                                        new Vector3f(getPosition()).add(new Vector3f(direction).normalize().mul(0.2f)),
-                                        new Vector3f(path.get(pathProgress).getPosition().x, getPosition().y, path.get(pathProgress).getPosition().y));
-                            } else {
-                                isMoving = false;
+                            path = findPathToTile(currentTile, targetTile);
+                            if (!startPath(1)) {
                                 return;
                             }
                         }
                     }
+                    if (pathRequest != null && pathRequest.isDone()) {
+                        path.clear();
+                        path.addAll(pathRequest.getPath());
+                        pathRequest = null;
+                        // The mob kept moving while the path was computed
+                        if (!startPath(Math.max(1, path.indexOf(currentTile) + 1))) {
+                            return;
+                        }
+                    }
+                    if (pathProgress == 0 || pathProgress >= path.size()) {
+                        // Still waiting for the first path
+                        isMoving = false;
+                        return;
+                    }
                     float remaining = pathSmoother.update(delta * getSpeed());
                     while (remaining != 0 && pathProgress < path.size() - 1 && !path.get(pathProgress + 1).isSolid()) {
                         setupPathSmootherMode1(
@@ -240,8 +246,34 @@ public class SimpleMob extends LivingEntity {
         pathSmoother.setup(entrancePoint, currentTilePos, leavingPoint);
     }
 
+    /**
+     * Start following the path from the given index
+     *
+     * @return false if the path is too short to follow
+     */
+    private boolean startPath(int progress) {
+        pathProgress = progress;
+        if (pathProgress >= path.size()) {
+            isMoving = false;
+            return false;
+        }
+        if (!isInLineOfSight) {
+            setupPathSmootherMode2(
+                    getPosition(),
+                    new Vector3f(path.get(pathProgress - 1).getPosition().x, getPosition().y, path.get(pathProgress - 1).getPosition().y),
+                    new Vector3f(path.get(pathProgress).getPosition().x, getPosition().y, path.get(pathProgress).getPosition().y));
+        } else {
+            setupPathSmootherMode2(
+                    getPosition(),
+                    new Vector3f(getPosition()).add(new Vector3f(direction).normalize().mul(0.2f)),
+                    new Vector3f(path.get(pathProgress).getPosition().x, getPosition().y, path.get(pathProgress).getPosition().y));
+        }
+        return true;
+    }
+
     private List<Tile> findPathToTile(Tile start, Tile target) {
-        return pathfinder.computePath(start, target, super.getMap());
+        pathfinder.computePath(start, target, super.getMap(), path);
+        return path;
     }
 
     @Override
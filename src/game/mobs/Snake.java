@@ -23,6 +23,12 @@ public class Snake extends SimpleMob {
         super(mesh, map, position, rotation, scale, speed);
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        morph = 0.0f;
+    }
+
     @Override
     public void update(float delta) {
         super.update(delta);
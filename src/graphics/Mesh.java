@@ -10,6 +10,7 @@ import java.nio.Buffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -57,6 +58,10 @@ public class Mesh {
     protected int vertexCount; // Amount of vertices we are rendering
     protected Material material;
     protected boolean isStatic = true;
+    /**
+     * Hash of the geometry, used to detect whether cached data of this mesh is still valid
+     */
+    protected long contentHash;
 
     /**
      * Indicates whether vertex colors have been defined
@@ -69,6 +74,7 @@ public class Mesh {
 
     // Only used in AnimatedMesh
     protected Mesh(MeshData data) {
+        contentHash = hashContent(data.getVertices(), data.getIndices());
     }
 
     /**
@@ -82,6 +88,7 @@ public class Mesh {
         try {
             // Create VAO/VBO
             vertexCount = plyData.indicies.length;
+            contentHash = hashContent(plyData.positions, plyData.indicies);
             vboIdList = new ArrayList<>();
 
             vaoId = glGenVertexArrays();
@@ -117,6 +124,7 @@ public class Mesh {
         try {
             // Create VAO/VBO
             vertexCount = objData.indicies.length;
+            contentHash = hashContent(objData.positions, objData.indicies);
             vboIdList = new ArrayList<>();
 
             vaoId = glGenVertexArrays();
@@ -288,6 +296,21 @@ public class Mesh {
         glDeleteVertexArrays(vaoId);
     }
 
+    /**
+     * Combine the hashes of the positions and indices into a single value, the positions in the
+     * high and the indices in the low 32 bits
+     */
+    protected static long hashContent(float[] positions, int[] indices) {
+        return ((long) Arrays.hashCode(positions) << 32) | (Arrays.hashCode(indices) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return Hash of the vertex positions and indices of this mesh
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
     public boolean isStatic() {
         return isStatic;
     }
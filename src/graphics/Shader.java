@@ -151,6 +151,7 @@ public class Shader {
         createUniform(uniformName + ".att.exponent");
         createUniform(uniformName + ".staticShadowMap");
         createUniform(uniformName + ".dynamicShadowMap");
+        createUniform(uniformName + ".shadowFilter");
         createUniform(uniformName + ".plane");
     }
 
@@ -169,6 +170,7 @@ public class Shader {
         createUniform(uniformName + ".att.exponent");
         createUniform(uniformName + ".staticShadowMap");
         createUniform(uniformName + ".dynamicShadowMap");
+        createUniform(uniformName + ".shadowFilter");
         createUniform(uniformName + ".conedir");
         createUniform(uniformName + ".cutoff");
         createUniform(uniformName + ".outerCutoff");
@@ -179,10 +181,14 @@ public class Shader {
         createUniform(uniformName + ".colour");
         createUniform(uniformName + ".direction");
         createUniform(uniformName + ".intensity");
-        createUniform(uniformName + ".staticShadowMap");
-        createUniform(uniformName + ".dynamicShadowMap");
-        createUniform(uniformName + ".lightSpaceMatrix");
+        createUniform(uniformName + ".shadowMap");
         createUniform(uniformName + ".shadowEnable");
+        createUniform(uniformName + ".shadowFilter");
+        createUniform(uniformName + ".cascadeCount");
+        for (int i = 0; i < DirectionalLight.MAX_CASCADES; i++) {
+            createUniform(uniformName + ".cascadeSplits[" + i + "]");
+            createUniform(uniformName + ".cascadeMatrices[" + i + "]");
+        }
     }
 
     public void createMaterialUniform(String uniformName) throws Exception {
@@ -294,8 +300,12 @@ public class Shader {
         setUniform(uniformName + ".colour", dirLight.getColor());
         setUniform(uniformName + ".direction", dirLight.getDirection());
         setUniform(uniformName + ".intensity", dirLight.getIntensity());
-        setUniform(uniformName + ".lightSpaceMatrix", dirLight.getLightSpaceMatrix());
-        setUniform(uniformName + ".shadowEnable", dirLight.isShadowEnabled());
+        setUniform(uniformName + ".shadowEnable", dirLight.isShadowEnabled() && dirLight.getShadowMap() != null);
+        setUniform(uniformName + ".cascadeCount", dirLight.getCascadeCount());
+        for (int i = 0; i < dirLight.getCascadeCount(); i++) {
+            setUniform(uniformName + ".cascadeSplits[" + i + "]", dirLight.getCascadeSplits()[i]);
+            setUniform(uniformName + ".cascadeMatrices[" + i + "]", dirLight.getCascadeMatrix(i));
+        }
     }
 
     public void setUniform(String uniformName, Material material) {
@@ -0,0 +1,351 @@
+package graphics;
+
+import engine.entities.Entity;
+import engine.lights.PointLight;
+import engine.lights.SceneLight;
+import engine.lights.SpotLight;
+import game.map.Map;
+import game.map.tile.Tile;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.*;
+import java.nio.IntBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE_CUBE_MAP;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE_CUBE_MAP_POSITIVE_X;
+
+/**
+ * On-disk cache of the static shadow maps of a level.
+ * <p>
+ * After the static shadows of a level have been rendered, the depth maps are read back and
+ * written, compressed, to a cache file named after the level file. The file starts with a hash
+ * of everything the static shadow maps depend on: the tiles, the static entities, the geometry of
+ * their meshes and the parameters of the lights. On the next load of the level the
+ * maps are uploaded straight from the file when the hash still matches. Otherwise the cache is
+ * stale and the shadows are rendered as usual. That has to happen on the thread that owns the
+ * OpenGL context, so only compressing and writing the new file is done on a background thread.
+ * <p>
+ * Only maps that are loaded from a level file are cached, since the file name is derived from it.
+ */
+public class ShadowCache {
+
+    private static final int MAGIC = 0x444E4453;
+    private static final int VERSION = 1;
+
+    /**
+     * Compresses and writes cache files so the game loop does not have to wait for it
+     */
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SHADOW_CACHE_WRITER");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Folder in which the cache files are stored
+     */
+    private final File directory;
+
+    public ShadowCache() {
+        this(new File(System.getProperty("user.dir"), "cache/shadows"));
+    }
+
+    public ShadowCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Upload the cached static shadow maps of the level, if the cache is up to date
+     *
+     * @return Whether all static shadow maps were loaded from the cache
+     */
+    public boolean load(Map map, List<Entity> entities, SceneLight sceneLight) {
+        File file = getFile(map);
+        if (file == null || !file.isFile()) {
+            return false;
+        }
+
+        List<ShadowMap> shadowMaps = getStaticShadowMaps(sceneLight);
+        byte[] key = computeKey(map, entities, sceneLight, shadowMaps);
+        if (key == null) {
+            return false;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            // The header is not compressed so a stale cache is detected without inflating anything
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            byte[] storedKey = new byte[key.length];
+            in.readFully(storedKey);
+            if (!Arrays.equals(key, storedKey) || in.readInt() != shadowMaps.size()) {
+                return false;
+            }
+
+            DataInputStream data = new DataInputStream(new BufferedInputStream(new InflaterInputStream(in)));
+            for (ShadowMap shadowMap : shadowMaps) {
+                upload(shadowMap, data);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("ShadowCache: could not read " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Read back the static shadow maps of the level and write them to the cache in the background
+     */
+    public void store(Map map, List<Entity> entities, SceneLight sceneLight) {
+        File file = getFile(map);
+        if (file == null) {
+            return;
+        }
+
+        List<ShadowMap> shadowMaps = getStaticShadowMaps(sceneLight);
+        byte[] key = computeKey(map, entities, sceneLight, shadowMaps);
+        if (key == null) {
+            return;
+        }
+
+        // Reading back has to happen on this thread since it owns the OpenGL context
+        List<int[]> layers = new ArrayList<>();
+        List<int[]> descriptions = new ArrayList<>();
+        for (ShadowMap shadowMap : shadowMaps) {
+            descriptions.add(new int[]{shadowMap.getTarget(), shadowMap.getResolution(), shadowMap.getLayers()});
+            readBack(shadowMap, layers);
+        }
+
+        writer.submit(() -> write(file, key, descriptions, layers));
+    }
+
+    /**
+     * @return The static shadow maps in a fixed order, point lights first
+     */
+    private List<ShadowMap> getStaticShadowMaps(SceneLight sceneLight) {
+        List<ShadowMap> shadowMaps = new ArrayList<>();
+        for (PointLight light : sceneLight.pointLights) {
+            if (light.getIntensity() > 0 && !light.isDynamicOnly() && light.acquireStaticShadowMap() != null) {
+                shadowMaps.add(light.getStaticShadowMap());
+            }
+        }
+        for (SpotLight light : sceneLight.spotLights) {
+            if (light.getIntensity() > 0 && !light.isDynamicOnly() && light.acquireStaticShadowMap() != null) {
+                shadowMaps.add(light.getStaticShadowMap());
+            }
+        }
+        return shadowMaps;
+    }
+
+    private File getFile(Map map) {
+        if (map == null || map.getSourcePath() == null) {
+            return null;
+        }
+        String name = map.getSourcePath().replaceAll("[^A-Za-z0-9_.-]", "_");
+        return new File(directory, name + ".shadows");
+    }
+
+    /**
+     * Hash everything that is rendered into the static shadow maps
+     */
+    private byte[] computeKey(Map map, List<Entity> entities, SceneLight sceneLight, List<ShadowMap> shadowMaps) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(VERSION);
+            out.writeInt(map.getWidth());
+            out.writeInt(map.getHeight());
+            // All tiles cast shadows, not only the static ones, so any change to a tile mesh or to
+            // whether it is static makes the cache stale
+            for (Tile[] row : map.getTiles()) {
+                for (Tile tile : row) {
+                    if (tile == null || tile.getMesh() == null) {
+                        continue;
+                    }
+                    out.writeInt(tile.getPosition().x);
+                    out.writeInt(tile.getPosition().y);
+                    writeVector(out, tile.getRotation());
+                    out.writeBoolean(tile.getMesh().isStatic());
+                    out.writeLong(tile.getMesh().getContentHash());
+                }
+            }
+            for (Entity entity : entities) {
+                if (!entity.getMesh().isStatic()) {
+                    continue;
+                }
+                writeVector(out, entity.getPosition());
+                writeVector(out, entity.getRotation());
+                writeVector(out, entity.getScaleVector());
+                out.writeLong(entity.getMesh().getContentHash());
+            }
+            for (PointLight light : sceneLight.pointLights) {
+                if (light.getIntensity() > 0 && !light.isDynamicOnly()) {
+                    writeVector(out, light.getPosition());
+                    writeVector(out, light.getPlane());
+                }
+            }
+            for (SpotLight light : sceneLight.spotLights) {
+                if (light.getIntensity() > 0 && !light.isDynamicOnly()) {
+                    writeVector(out, light.getPosition());
+                    writeVector(out, light.getConeDirection());
+                    writeVector(out, light.getPlane());
+                    out.writeFloat(light.getOuterCutOff());
+                }
+            }
+            for (ShadowMap shadowMap : shadowMaps) {
+                out.writeInt(shadowMap.getTarget());
+                out.writeInt(shadowMap.getResolution());
+            }
+
+            out.flush();
+            return digest.digest(bytes.toByteArray());
+        } catch (NoSuchAlgorithmException | IOException e) {
+            System.err.println("ShadowCache: could not hash the level, not using the cache");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void writeVector(DataOutputStream out, Vector3f vector) throws IOException {
+        out.writeFloat(vector.x);
+        out.writeFloat(vector.y);
+        out.writeFloat(vector.z);
+    }
+
+    private void writeVector(DataOutputStream out, Vector2f vector) throws IOException {
+        out.writeFloat(vector.x);
+        out.writeFloat(vector.y);
+    }
+
+    /**
+     * Read every face or layer of a shadow map into an array
+     */
+    private void readBack(ShadowMap shadowMap, List<int[]> layers) {
+        int resolution = shadowMap.getResolution();
+        IntBuffer buffer = MemoryUtil.memAllocInt(resolution * resolution);
+        try {
+            glBindTexture(shadowMap.getTarget(), shadowMap.getDepthMap());
+            for (int layer = 0; layer < shadowMap.getLayers(); layer++) {
+                int target = shadowMap.isCubeMap() ? GL_TEXTURE_CUBE_MAP_POSITIVE_X + layer : shadowMap.getTarget();
+                glGetTexImage(target, 0, GL_DEPTH_COMPONENT, GL_UNSIGNED_INT, buffer);
+                int[] texels = new int[resolution * resolution];
+                buffer.get(texels).rewind();
+                layers.add(texels);
+            }
+            glBindTexture(shadowMap.getTarget(), 0);
+        } finally {
+            MemoryUtil.memFree(buffer);
+        }
+    }
+
+    /**
+     * Upload every face or layer of a shadow map from the cache
+     */
+    private void upload(ShadowMap shadowMap, DataInputStream in) throws IOException {
+        int target = in.readInt();
+        int resolution = in.readInt();
+        int layers = in.readInt();
+        if (target != shadowMap.getTarget() || resolution != shadowMap.getResolution() || layers != shadowMap.getLayers()) {
+            throw new IOException("cached shadow map does not match");
+        }
+
+        IntBuffer buffer = MemoryUtil.memAllocInt(resolution * resolution);
+        byte[] row = new byte[resolution * 4];
+        try {
+            glBindTexture(shadowMap.getTarget(), shadowMap.getDepthMap());
+            for (int layer = 0; layer < layers; layer++) {
+                buffer.clear();
+                for (int y = 0; y < resolution; y++) {
+                    in.readFully(row);
+                    // Rows are stored as differences between neighbouring texels
+                    int value = 0;
+                    for (int x = 0; x < resolution; x++) {
+                        int i = x * 4;
+                        value += (row[i] & 0xFF) << 24 | (row[i + 1] & 0xFF) << 16 | (row[i + 2] & 0xFF) << 8 | (row[i + 3] & 0xFF);
+                        buffer.put(value);
+                    }
+                }
+                buffer.flip();
+                int faceTarget = target == GL_TEXTURE_CUBE_MAP ? GL_TEXTURE_CUBE_MAP_POSITIVE_X + layer : target;
+                glTexSubImage2D(faceTarget, 0, 0, 0, resolution, resolution, GL_DEPTH_COMPONENT, GL_UNSIGNED_INT, buffer);
+            }
+            glBindTexture(shadowMap.getTarget(), 0);
+        } finally {
+            MemoryUtil.memFree(buffer);
+        }
+    }
+
+    /**
+     * Compress and write the cache file, runs on the writer thread
+     */
+    private void write(File file, byte[] key, List<int[]> descriptions, List<int[]> layers) {
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("could not create " + directory);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(key);
+                out.writeInt(descriptions.size());
+
+                DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED), 1 << 16);
+                DataOutputStream data = new DataOutputStream(deflater);
+                int layer = 0;
+                for (int[] description : descriptions) {
+                    data.writeInt(description[0]);
+                    data.writeInt(description[1]);
+                    data.writeInt(description[2]);
+                    int resolution = description[1];
+                    byte[] row = new byte[resolution * 4];
+                    for (int l = 0; l < description[2]; l++) {
+                        int[] texels = layers.get(layer);
+                        // Drop the reference so the memory can be reclaimed while writing
+                        layers.set(layer++, null);
+                        for (int y = 0; y < resolution; y++) {
+                            int previous = 0;
+                            for (int x = 0; x < resolution; x++) {
+                                int value = texels[y * resolution + x];
+                                int delta = value - previous;
+                                previous = value;
+                                int i = x * 4;
+                                row[i] = (byte) (delta >>> 24);
+                                row[i + 1] = (byte) (delta >>> 16);
+                                row[i + 2] = (byte) (delta >>> 8);
+                                row[i + 3] = (byte) delta;
+                            }
+                            data.write(row);
+                        }
+                    }
+                }
+                data.flush();
+                deflater.finish();
+            }
+            if (file.exists() && !file.delete()) {
+                throw new IOException("could not replace " + file);
+            }
+            if (!temporary.renameTo(file)) {
+                throw new IOException("could not rename " + temporary);
+            }
+        } catch (IOException e) {
+            System.err.println("ShadowCache: could not write " + file + ": " + e.getMessage());
+            temporary.delete();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package graphics;
+
+import org.joml.Vector3f;
+
+/**
+ * Shadow filter selection.
+ * <p>
+ * Shadow maps are sampled with hardware depth comparison, so every lookup already returns a
+ * bilinear filtered result. On top of that a light can take 4 or 16 lookups spread over a rotated
+ * Poisson disk for softer edges. Lights that contribute most to the image get the widest filter,
+ * lights far away from the camera get a single lookup. Point lights sample two cube maps for every
+ * lookup and are limited to 4 lookups by default.
+ * <p>
+ * Every renderer owns its own filter settings.
+ */
+public class ShadowFilter {
+
+    /**
+     * A single hardware filtered lookup
+     */
+    public static final int HARDWARE = 0;
+
+    /**
+     * 4 lookups on a rotated Poisson disk
+     */
+    public static final int POISSON_4 = 1;
+
+    /**
+     * 16 lookups on a rotated Poisson disk
+     */
+    public static final int POISSON_16 = 2;
+
+    /**
+     * Lights at least this important use 16 lookups
+     */
+    private float highImportance = 1.0f;
+
+    /**
+     * Lights at least this important use 4 lookups
+     */
+    private float lowImportance = 0.3f;
+
+    /**
+     * Widest filter any light may use
+     */
+    private int maxFilter = POISSON_16;
+
+    /**
+     * Widest filter of point lights, which sample both a static and a dynamic cube map
+     */
+    private int maxCubeFilter = POISSON_4;
+
+    /**
+     * Rough measure of how much a light adds to the image, lights close to the camera matter most
+     *
+     * @param intensity      Intensity of the light
+     * @param lightPosition  Position of the light
+     * @param cameraPosition Position of the camera
+     * @return Importance of the light
+     */
+    public static float getImportance(float intensity, Vector3f lightPosition, Vector3f cameraPosition) {
+        return intensity / (1.0f + lightPosition.distanceSquared(cameraPosition) * 0.01f);
+    }
+
+    /**
+     * Select the filter of a spot light
+     *
+     * @param intensity      Intensity of the light
+     * @param lightPosition  Position of the light
+     * @param cameraPosition Position of the camera
+     * @return One of HARDWARE, POISSON_4 or POISSON_16
+     */
+    public int select(float intensity, Vector3f lightPosition, Vector3f cameraPosition) {
+        float importance = getImportance(intensity, lightPosition, cameraPosition);
+        int filter = HARDWARE;
+        if (importance >= highImportance) {
+            filter = POISSON_16;
+        } else if (importance >= lowImportance) {
+            filter = POISSON_4;
+        }
+        return Math.min(filter, maxFilter);
+    }
+
+    /**
+     * Select the filter of a point light, every lookup is done in two cube maps
+     *
+     * @return One of HARDWARE or POISSON_4, unless the cube map limit is raised
+     */
+    public int selectCube(float intensity, Vector3f lightPosition, Vector3f cameraPosition) {
+        return Math.min(select(intensity, lightPosition, cameraPosition), maxCubeFilter);
+    }
+
+    /**
+     * @return Filter of the directional light, which covers the whole view
+     */
+    public int selectDirectional() {
+        return Math.min(POISSON_4, maxFilter);
+    }
+
+    public int getMaxFilter() {
+        return maxFilter;
+    }
+
+    /**
+     * @param maxFilter Widest filter any light may use, HARDWARE gives the cheapest shadows
+     */
+    public void setMaxFilter(int maxFilter) {
+        this.maxFilter = clamp(maxFilter);
+    }
+
+    /**
+     * @param maxCubeFilter Widest filter point lights may use
+     */
+    public void setMaxCubeFilter(int maxCubeFilter) {
+        this.maxCubeFilter = clamp(maxCubeFilter);
+    }
+
+    /**
+     * @param high Importance from which lights use 16 lookups
+     * @param low  Importance from which lights use 4 lookups
+     */
+    public void setImportanceThresholds(float high, float low) {
+        highImportance = high;
+        lowImportance = low;
+    }
+
+    private static int clamp(int filter) {
+        return Math.max(HARDWARE, Math.min(POISSON_16, filter));
+    }
+}
@@ -13,6 +13,8 @@ public class ShadowMap {
     private final int resolution;
     private final int depthMapFBO;
     private final int depthMap;
+    private int target = GL_TEXTURE_2D;
+    private int layers = 1;
 
     public ShadowMap(int resolution) {
         this.resolution = resolution;
@@ -22,6 +24,10 @@ public class ShadowMap {
     }
 
     public void initShadowCubeMap() throws Exception {
+        target = GL_TEXTURE_CUBE_MAP;
+        layers = 6;
+        // Discard errors of earlier calls so an allocation failure can be detected
+        while (glGetError() != GL_NO_ERROR);
         // Create depth map texture
         glEnable(GL_TEXTURE_CUBE_MAP_SEAMLESS);
         glBindTexture(GL_TEXTURE_CUBE_MAP, depthMap);
@@ -29,11 +35,16 @@ public class ShadowMap {
             glTexImage2D(GL_TEXTURE_CUBE_MAP_POSITIVE_X + i, 0, GL_DEPTH_COMPONENT,
                     resolution, resolution, 0, GL_DEPTH_COMPONENT, GL_FLOAT, (ByteBuffer)null);
         }
-        glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
-        glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
         glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
         glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
         glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_WRAP_R, GL_CLAMP_TO_EDGE);
+        setCompareMode(GL_TEXTURE_CUBE_MAP);
+        if (glGetError() == GL_OUT_OF_MEMORY) {
+            glBindTexture(GL_TEXTURE_CUBE_MAP, 0);
+            throw new Exception("ShadowMap could not allocate texture");
+        }
 
         // Create FBO
         glBindFramebuffer(GL_FRAMEBUFFER, depthMapFBO);
@@ -51,6 +62,10 @@ public class ShadowMap {
     }
 
     public void initShadowMap() throws Exception {
+        target = GL_TEXTURE_2D;
+        layers = 1;
+        // Discard errors of earlier calls so an allocation failure can be detected
+        while (glGetError() != GL_NO_ERROR);
         // Create depth map texture
         glBindTexture(GL_TEXTURE_2D, depthMap);
         glTexImage2D(GL_TEXTURE_2D, 0, GL_DEPTH_COMPONENT32F, resolution, resolution,
@@ -59,6 +74,11 @@ public class ShadowMap {
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        setCompareMode(GL_TEXTURE_2D);
+        if (glGetError() == GL_OUT_OF_MEMORY) {
+            glBindTexture(GL_TEXTURE_2D, 0);
+            throw new Exception("ShadowMap could not allocate texture");
+        }
 
         // Create FBO
         glBindFramebuffer(GL_FRAMEBUFFER, depthMapFBO);
@@ -76,6 +96,54 @@ public class ShadowMap {
         glBindFramebuffer(GL_FRAMEBUFFER, 0);
     }
 
+    /**
+     * Initialize this map as an array of 2D depth maps, each layer is rendered to separately
+     *
+     * @param layers Number of layers
+     */
+    public void initShadowMapArray(int layers) throws Exception {
+        this.target = GL_TEXTURE_2D_ARRAY;
+        this.layers = layers;
+        // Discard errors of earlier calls so an allocation failure can be detected
+        while (glGetError() != GL_NO_ERROR);
+        // Create depth map texture
+        glBindTexture(GL_TEXTURE_2D_ARRAY, depthMap);
+        glTexImage3D(GL_TEXTURE_2D_ARRAY, 0, GL_DEPTH_COMPONENT32F, resolution, resolution, layers,
+                0, GL_DEPTH_COMPONENT, GL_FLOAT, (ByteBuffer)null);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        setCompareMode(GL_TEXTURE_2D_ARRAY);
+        if (glGetError() == GL_OUT_OF_MEMORY) {
+            glBindTexture(GL_TEXTURE_2D_ARRAY, 0);
+            throw new Exception("ShadowMap could not allocate texture");
+        }
+
+        // Create FBO, layers are attached one at a time while rendering
+        glBindFramebuffer(GL_FRAMEBUFFER, depthMapFBO);
+        glFramebufferTextureLayer(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, depthMap, 0, 0);
+        glDrawBuffer(GL_NONE);
+        glReadBuffer(GL_NONE);
+
+        // Error Check
+        if (glCheckFramebufferStatus(GL_FRAMEBUFFER) != GL_FRAMEBUFFER_COMPLETE)
+            throw new Exception("ShadowMap could not create FrameBuffer");
+
+        // Unbind Depth Map and FBO
+        glBindTexture(GL_TEXTURE_2D_ARRAY, 0);
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    /**
+     * Let the hardware compare depth values on lookups, with linear filtering this gives bilinear
+     * filtered shadows from a single fetch
+     */
+    private void setCompareMode(int target) {
+        glTexParameteri(target, GL_TEXTURE_COMPARE_MODE, GL_COMPARE_REF_TO_TEXTURE);
+        glTexParameteri(target, GL_TEXTURE_COMPARE_FUNC, GL_LEQUAL);
+    }
+
     public int getDepthMapFBO() {
         return depthMapFBO;
     }
@@ -88,6 +156,55 @@ public class ShadowMap {
         return resolution;
     }
 
+    /**
+     * @return The texture target of the depth map, e.g. GL_TEXTURE_CUBE_MAP
+     */
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * @return Number of faces or layers of the depth map
+     */
+    public int getLayers() {
+        return layers;
+    }
+
+    public boolean isCubeMap() {
+        return target == GL_TEXTURE_CUBE_MAP;
+    }
+
+    /**
+     * @return Estimated amount of video memory used by this map in bytes
+     */
+    public long getMemorySize() {
+        return getMemorySize(resolution, layers);
+    }
+
+    /**
+     * Estimate the amount of video memory a shadow map uses, assuming 4 bytes per depth texel
+     *
+     * @param resolution Resolution of the map
+     * @param layers     Number of faces or layers
+     * @return Size in bytes
+     */
+    public static long getMemorySize(int resolution, int layers) {
+        return (long) resolution * resolution * 4 * layers;
+    }
+
+    /**
+     * Reset all depth values of this map to the far plane
+     */
+    public void clear() {
+        glBindFramebuffer(GL_FRAMEBUFFER, depthMapFBO);
+        if (target != GL_TEXTURE_2D) {
+            // Attach all faces or layers so a single clear resets the whole texture
+            glFramebufferTexture(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, depthMap, 0);
+        }
+        glClear(GL_DEPTH_BUFFER_BIT);
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
     public void cleanup() {
         // Delete resources
         glDeleteFramebuffers(depthMapFBO);
@@ -0,0 +1,296 @@
+package graphics;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE_CUBE_MAP;
+import static org.lwjgl.opengl.GL30.GL_TEXTURE_2D_ARRAY;
+
+/**
+ * Shadow map pool.
+ * <p>
+ * Keeps track of every shadow map that lives on the GPU. Lights acquire their maps from here the
+ * first time they actually cast shadows and hand them back when they are cleaned up, so maps are
+ * reused across lights and level switches instead of being allocated for every light up front.
+ * Free maps are kept around until the memory budget is exceeded, after which the least recently
+ * released ones are deleted first.
+ */
+public class ShadowMapPool {
+
+    /**
+     * Decides the resolution a shadow map is actually allocated with
+     */
+    public interface ResolutionPolicy {
+        /**
+         * @param requested Resolution the light asked for
+         * @param cubeMap   Whether the map is a cube map
+         * @return Resolution to allocate
+         */
+        int getResolution(int requested, boolean cubeMap);
+    }
+
+    /**
+     * Default budget of the pool in bytes
+     */
+    public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+    /**
+     * Maps that are not used by any light, least recently released first
+     */
+    private static LinkedList<ShadowMap> freeMaps = new LinkedList<>();
+
+    /**
+     * Maps that are currently handed out to a light
+     */
+    private static List<ShadowMap> usedMaps = new ArrayList<>();
+
+    /**
+     * Resolution policy, the default keeps the requested resolution
+     */
+    private static ResolutionPolicy resolutionPolicy = (requested, cubeMap) -> requested;
+
+    /**
+     * Amount of bytes the pool may keep allocated before free maps are deleted
+     */
+    private static long budget = DEFAULT_BUDGET;
+
+    /**
+     * Cleared 1x1 maps that are bound in place of the map of a light that does not have one, one
+     * for every target. They are not part of the budget.
+     */
+    private static ShadowMap fallbackMap, fallbackCubeMap, fallbackMapArray;
+
+    /**
+     * Acquire a cube shadow map, used by point lights
+     *
+     * @param resolution Requested resolution of a single face
+     * @return The shadow map or null if it could not be allocated
+     */
+    public static ShadowMap acquireCubeMap(int resolution) {
+        return acquire(resolution, GL_TEXTURE_CUBE_MAP, 6);
+    }
+
+    /**
+     * Acquire a 2D shadow map, used by spot and directional lights
+     *
+     * @param resolution Requested resolution
+     * @return The shadow map or null if it could not be allocated
+     */
+    public static ShadowMap acquireMap(int resolution) {
+        return acquire(resolution, GL_TEXTURE_2D, 1);
+    }
+
+    /**
+     * Acquire an array of 2D shadow maps, used by the cascades of directional lights
+     *
+     * @param resolution Requested resolution of a single layer
+     * @param layers     Number of layers
+     * @return The shadow map or null if it could not be allocated
+     */
+    public static ShadowMap acquireMapArray(int resolution, int layers) {
+        return acquire(resolution, GL_TEXTURE_2D_ARRAY, layers);
+    }
+
+    /**
+     * Return a shadow map to the pool so another light can use it
+     *
+     * @param shadowMap The shadow map to release, may be null
+     */
+    public static void release(ShadowMap shadowMap) {
+        if (shadowMap == null || !usedMaps.remove(shadowMap)) {
+            return;
+        }
+
+        freeMaps.addLast(shadowMap);
+        enforceBudget();
+    }
+
+    private static ShadowMap acquire(int requested, int target, int layers) {
+        int resolution = resolutionPolicy.getResolution(requested, target == GL_TEXTURE_CUBE_MAP);
+
+        // Reuse the most recently released map that matches
+        Iterator<ShadowMap> iterator = freeMaps.descendingIterator();
+        while (iterator.hasNext()) {
+            ShadowMap shadowMap = iterator.next();
+            if (shadowMap.getTarget() == target && shadowMap.getLayers() == layers
+                    && shadowMap.getResolution() == resolution) {
+                iterator.remove();
+                usedMaps.add(shadowMap);
+                // Contents belong to the previous owner
+                shadowMap.clear();
+                return shadowMap;
+            }
+        }
+
+        // Make room before allocating a new one
+        long size = ShadowMap.getMemorySize(resolution, layers);
+        while (!freeMaps.isEmpty() && getAllocatedBytes() + size > budget) {
+            freeMaps.removeFirst().cleanup();
+        }
+
+        ShadowMap shadowMap;
+        try {
+            shadowMap = allocate(resolution, target, layers);
+        } catch (Exception e) {
+            if (freeMaps.isEmpty()) {
+                e.printStackTrace();
+                return null;
+            }
+            // Out of video memory, free everything we can spare and try once more
+            trim();
+            try {
+                shadowMap = allocate(resolution, target, layers);
+            } catch (Exception retryException) {
+                retryException.printStackTrace();
+                return null;
+            }
+        }
+
+        usedMaps.add(shadowMap);
+        shadowMap.clear();
+        return shadowMap;
+    }
+
+    private static ShadowMap allocate(int resolution, int target, int layers) throws Exception {
+        ShadowMap shadowMap = new ShadowMap(resolution);
+        try {
+            if (target == GL_TEXTURE_CUBE_MAP) {
+                shadowMap.initShadowCubeMap();
+            } else if (target == GL_TEXTURE_2D_ARRAY) {
+                shadowMap.initShadowMapArray(layers);
+            } else {
+                shadowMap.initShadowMap();
+            }
+            return shadowMap;
+        } catch (Exception e) {
+            shadowMap.cleanup();
+            throw e;
+        }
+    }
+
+    /**
+     * Depth texture to bind to a shadow sampler when a light has no shadow map, either because it
+     * did not cast shadows yet or because its map could not be allocated. Every depth in it lies on
+     * the far plane, so nothing is in shadow.
+     *
+     * @param target GL_TEXTURE_2D, GL_TEXTURE_CUBE_MAP or GL_TEXTURE_2D_ARRAY
+     * @return The texture, or 0 if not even a 1x1 map could be allocated
+     */
+    public static int getFallbackDepthMap(int target) {
+        if (target == GL_TEXTURE_CUBE_MAP) {
+            if (fallbackCubeMap == null) {
+                fallbackCubeMap = allocateFallback(target);
+            }
+            return fallbackCubeMap != null ? fallbackCubeMap.getDepthMap() : 0;
+        } else if (target == GL_TEXTURE_2D_ARRAY) {
+            if (fallbackMapArray == null) {
+                fallbackMapArray = allocateFallback(target);
+            }
+            return fallbackMapArray != null ? fallbackMapArray.getDepthMap() : 0;
+        } else {
+            if (fallbackMap == null) {
+                fallbackMap = allocateFallback(target);
+            }
+            return fallbackMap != null ? fallbackMap.getDepthMap() : 0;
+        }
+    }
+
+    private static ShadowMap allocateFallback(int target) {
+        try {
+            ShadowMap shadowMap = allocate(1, target, 1);
+            shadowMap.clear();
+            return shadowMap;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Delete free maps until the pool fits its budget again
+     */
+    private static void enforceBudget() {
+        while (!freeMaps.isEmpty() && getAllocatedBytes() > budget) {
+            freeMaps.removeFirst().cleanup();
+        }
+    }
+
+    /**
+     * Delete all maps that are not used by any light
+     */
+    public static void trim() {
+        for (ShadowMap shadowMap : freeMaps) {
+            shadowMap.cleanup();
+        }
+        freeMaps.clear();
+    }
+
+    /**
+     * Delete all maps, including the ones that are still in use and the fallback maps
+     */
+    public static void terminate() {
+        trim();
+        for (ShadowMap shadowMap : usedMaps) {
+            shadowMap.cleanup();
+        }
+        usedMaps.clear();
+        for (ShadowMap shadowMap : new ShadowMap[]{fallbackMap, fallbackCubeMap, fallbackMapArray}) {
+            if (shadowMap != null) {
+                shadowMap.cleanup();
+            }
+        }
+        fallbackMap = fallbackCubeMap = fallbackMapArray = null;
+    }
+
+    /**
+     * @return Total amount of video memory held by shadow maps in bytes
+     */
+    public static long getAllocatedBytes() {
+        return getInUseBytes() + getFreeBytes();
+    }
+
+    /**
+     * @return Amount of video memory held by shadow maps that are used by a light in bytes
+     */
+    public static long getInUseBytes() {
+        long bytes = 0;
+        for (ShadowMap shadowMap : usedMaps) {
+            bytes += shadowMap.getMemorySize();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return Amount of video memory held by shadow maps that are kept for reuse in bytes
+     */
+    public static long getFreeBytes() {
+        long bytes = 0;
+        for (ShadowMap shadowMap : freeMaps) {
+            bytes += shadowMap.getMemorySize();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return Number of shadow maps currently allocated on the GPU
+     */
+    public static int getAllocatedCount() {
+        return usedMaps.size() + freeMaps.size();
+    }
+
+    public static long getBudget() {
+        return budget;
+    }
+
+    public static void setBudget(long budget) {
+        ShadowMapPool.budget = budget;
+        enforceBudget();
+    }
+
+    public static void setResolutionPolicy(ResolutionPolicy resolutionPolicy) {
+        ShadowMapPool.resolutionPolicy = resolutionPolicy;
+    }
+}
@@ -0,0 +1,353 @@
+package graphics;
+
+import engine.animation.ModelAnimator;
+import engine.entities.Entity;
+import engine.entities.animatedModel.Player;
+import engine.lights.PointLight;
+import engine.lights.SceneLight;
+import engine.lights.SpotLight;
+import game.map.VisibleSet;
+import game.mobs.Snake;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL33.GL_TIME_ELAPSED;
+import static org.lwjgl.opengl.GL33.glGetQueryObjecti64;
+
+/**
+ * Decides which dynamic shadow map faces are refreshed every frame.
+ * <p>
+ * A face only needs to be rendered again when the light moved or when the dynamic casters inside
+ * its frustum changed. Faces that need an update are ranked by how much their light contributes
+ * to what the camera sees and by how long they have been waiting, and only the highest ranked
+ * faces that fit in the budget are rendered. All other faces keep their last shadow map. The
+ * budget is either a number of faces or a number of milliseconds, in which case the GPU time of a
+ * face is measured with timer queries. Lights the viewer can not see, according to the field of
+ * view of the map, are not rendered at all until they come into view again.
+ */
+public class ShadowUpdateScheduler {
+
+    /**
+     * Number of timer queries in flight, results are read a few frames later to avoid stalls
+     */
+    private static final int QUERY_COUNT = 4;
+
+    /**
+     * Weight of a new measurement in the running average of the cost of a face
+     */
+    private static final float COST_SMOOTHING = 0.1f;
+
+    /**
+     * How much the priority of a face grows for every frame it had to wait
+     */
+    private static final float AGE_WEIGHT = 0.25f;
+
+    /**
+     * Update state of a single light
+     */
+    private static class LightState {
+        private final Vector3f position = new Vector3f(Float.NaN);
+        private final long[] casterHashes = new long[6];
+        private final int[] waitingFrames = new int[6];
+        private int dirtyMask = 0x3F;
+        private int scheduledMask;
+        private int lastSeenFrame;
+    }
+
+    /**
+     * A face that needs an update, reused between frames
+     */
+    private static class Candidate {
+        private LightState state;
+        private int face;
+        private float priority;
+    }
+
+    private final IdentityHashMap<Object, LightState> states = new IdentityHashMap<>();
+    private final List<Candidate> candidates = new ArrayList<>();
+    private int candidateCount;
+    private final FrustumIntersection frustumIntersection = new FrustumIntersection();
+    private int frame;
+
+    // Budget
+    private int faceBudget = 12;
+    private float timeBudget = 0.0f;
+
+    // GPU timing
+    private int[] queries;
+    private final int[] queryFaces = new int[QUERY_COUNT];
+    private int queryIndex;
+    private boolean queryActive;
+    private float faceCost = 0.0f;
+    private int facesThisFrame;
+
+    /**
+     * Limit the number of faces that are rendered every frame, a point light has 6 faces and a
+     * spot light has 1
+     *
+     * @param faceBudget Maximum number of faces per frame
+     */
+    public void setFaceBudget(int faceBudget) {
+        this.faceBudget = Math.max(1, faceBudget);
+        this.timeBudget = 0.0f;
+    }
+
+    /**
+     * Limit the GPU time spent on dynamic shadows every frame, at least one face is always rendered
+     *
+     * @param milliseconds Maximum GPU time per frame
+     */
+    public void setTimeBudget(float milliseconds) {
+        this.timeBudget = milliseconds;
+    }
+
+    /**
+     * @return Average measured GPU time of a single face in milliseconds, 0 if not measured yet
+     */
+    public float getFaceCost() {
+        return faceCost;
+    }
+
+    /**
+     * Force all faces of all lights to be rendered again, e.g. when the static scene changed
+     */
+    public void invalidate() {
+        for (LightState state : states.values()) {
+            state.dirtyMask = 0x3F;
+        }
+    }
+
+    /**
+     * Decide which faces are rendered this frame
+     *
+     * @param sceneLight     The lights of the scene
+     * @param entities       All entities that may cast a shadow
+     * @param cameraPosition Position of the camera
+     * @param visibility     What the viewer can see, null if everything may be seen
+     */
+    public void schedule(SceneLight sceneLight, List<Entity> entities, Vector3f cameraPosition, VisibleSet visibility) {
+        frame++;
+        candidateCount = 0;
+
+        int numLights = sceneLight.pointLights != null ? sceneLight.pointLights.size() : 0;
+        for (int i = 0; i < numLights; i++) {
+            PointLight light = sceneLight.pointLights.get(i);
+            if (light.getIntensity() <= 0) {
+                continue;
+            }
+            LightState state = getState(light);
+            boolean hidden = isHidden(light.getPosition(), visibility);
+            if (hidden || !state.position.equals(light.getPosition())) {
+                state.position.set(light.getPosition());
+                state.dirtyMask = 0x3F;
+            }
+            if (hidden) {
+                continue;
+            }
+            for (int face = 0; face < 6; face++) {
+                checkCasters(state, face, light.getView(face), light.getPosition(), light.getPlane().y,
+                        light.isDynamicOnly(), entities);
+            }
+            addCandidates(state, 6, ShadowFilter.getImportance(light.getIntensity(), light.getPosition(), cameraPosition));
+        }
+
+        numLights = sceneLight.spotLights != null ? sceneLight.spotLights.size() : 0;
+        for (int i = 0; i < numLights; i++) {
+            SpotLight light = sceneLight.spotLights.get(i);
+            if (light.getIntensity() <= 0) {
+                continue;
+            }
+            LightState state = getState(light);
+            boolean hidden = isHidden(light.getPosition(), visibility);
+            if (hidden || !state.position.equals(light.getPosition())) {
+                state.position.set(light.getPosition());
+                state.dirtyMask = 0x3F;
+            }
+            if (hidden) {
+                continue;
+            }
+            checkCasters(state, 0, light.getLightSpaceMatrix(), light.getPosition(), Float.POSITIVE_INFINITY,
+                    light.isDynamicOnly(), entities);
+            addCandidates(state, 1, ShadowFilter.getImportance(light.getIntensity(), light.getPosition(), cameraPosition));
+        }
+
+        // Forget lights that were removed from the scene
+        states.values().removeIf(state -> state.lastSeenFrame != frame);
+
+        // Pick the highest ranked faces that fit in the budget
+        candidates.subList(0, candidateCount).sort((a, b) -> Float.compare(b.priority, a.priority));
+        int budget = getBudget();
+        for (int i = 0; i < candidateCount; i++) {
+            Candidate candidate = candidates.get(i);
+            if (i < budget) {
+                candidate.state.scheduledMask |= 1 << candidate.face;
+                candidate.state.dirtyMask &= ~(1 << candidate.face);
+                candidate.state.waitingFrames[candidate.face] = 0;
+            } else {
+                candidate.state.waitingFrames[candidate.face]++;
+            }
+        }
+    }
+
+    /**
+     * @param light The point or spot light
+     * @param face  Face of the light, always 0 for spot lights
+     * @return Whether the face should be rendered in this frame
+     */
+    public boolean isScheduled(Object light, int face) {
+        LightState state = states.get(light);
+        return state != null && (state.scheduledMask & (1 << face)) != 0;
+    }
+
+    /**
+     * Start measuring the GPU time of the faces rendered this frame
+     */
+    public void beginFrame() {
+        facesThisFrame = 0;
+        if (timeBudget <= 0) {
+            return;
+        }
+        if (queries == null) {
+            queries = new int[QUERY_COUNT];
+            glGenQueries(queries);
+        }
+        int query = queries[queryIndex];
+        // Read the result of the query that was issued QUERY_COUNT frames ago
+        if (queryFaces[queryIndex] > 0) {
+            if (glGetQueryObjecti(query, GL_QUERY_RESULT_AVAILABLE) == GL_TRUE) {
+                float milliseconds = glGetQueryObjecti64(query, GL_QUERY_RESULT) / 1000000.0f;
+                float cost = milliseconds / queryFaces[queryIndex];
+                faceCost = faceCost == 0.0f ? cost : faceCost + (cost - faceCost) * COST_SMOOTHING;
+            }
+            queryFaces[queryIndex] = 0;
+        }
+        glBeginQuery(GL_TIME_ELAPSED, query);
+        queryActive = true;
+    }
+
+    /**
+     * Register that a face has been rendered
+     */
+    public void faceRendered() {
+        facesThisFrame++;
+    }
+
+    /**
+     * Stop measuring the GPU time of this frame
+     */
+    public void endFrame() {
+        if (queryActive) {
+            glEndQuery(GL_TIME_ELAPSED);
+            queryFaces[queryIndex] = facesThisFrame;
+            queryIndex = (queryIndex + 1) % QUERY_COUNT;
+            queryActive = false;
+        }
+        for (LightState state : states.values()) {
+            state.scheduledMask = 0;
+        }
+    }
+
+    public void cleanup() {
+        if (queries != null) {
+            glDeleteQueries(queries);
+            queries = null;
+        }
+        states.clear();
+    }
+
+    /**
+     * Whether the light is out of view, its shadow map is then rendered completely once it is seen
+     */
+    private static boolean isHidden(Vector3f position, VisibleSet visibility) {
+        return visibility != null && !visibility.isVisible(position.x, position.z);
+    }
+
+    private LightState getState(Object light) {
+        LightState state = states.get(light);
+        if (state == null) {
+            state = new LightState();
+            states.put(light, state);
+        }
+        state.lastSeenFrame = frame;
+        return state;
+    }
+
+    private int getBudget() {
+        if (timeBudget > 0) {
+            if (faceCost <= 0.0f) {
+                // Nothing measured yet
+                return faceBudget;
+            }
+            return Math.max(1, (int) (timeBudget / faceCost));
+        }
+        return faceBudget;
+    }
+
+    /**
+     * Mark a face dirty when the casters inside its frustum are not the same as when it was
+     * last rendered, this includes casters that left the frustum
+     */
+    private void checkCasters(LightState state, int face, Matrix4f view, Vector3f lightPosition, float range,
+                              boolean dynamicOnly, List<Entity> entities) {
+        frustumIntersection.set(view);
+        long hash = 17;
+        for (Entity entity : entities) {
+            Mesh mesh = entity.getMesh();
+            if (mesh.isStatic() && !dynamicOnly) {
+                continue;
+            }
+            Vector3f position = entity.getPosition();
+            if (position.distance(lightPosition) > range) {
+                continue;
+            }
+            int frustrum = frustumIntersection.intersectAab(position.x - 1.0f, position.y - 1.1f, position.z - 1.0f,
+                    position.x + 1.0f, position.y + 3.0f, position.z + 1.0f);
+            if (frustrum != -2 && frustrum != -1) {
+                continue;
+            }
+            hash = hash * 31 + System.identityHashCode(entity);
+            hash = hash * 31 + Float.floatToIntBits(position.x);
+            hash = hash * 31 + Float.floatToIntBits(position.y);
+            hash = hash * 31 + Float.floatToIntBits(position.z);
+            hash = hash * 31 + Float.floatToIntBits(entity.getRotation().x);
+            hash = hash * 31 + Float.floatToIntBits(entity.getRotation().y);
+            hash = hash * 31 + Float.floatToIntBits(entity.getRotation().z);
+            hash = hash * 31 + Float.floatToIntBits(entity.getScaleVector().x);
+            if (entity instanceof Snake) {
+                hash = hash * 31 + Float.floatToIntBits(((Snake) entity).getMorph());
+            } else if (entity instanceof Player) {
+                // The pose of the skeleton changes the shadow while the player stands still
+                ModelAnimator animator = ((Player) entity).getAnimatedModel().getAnimator();
+                hash = hash * 31 + System.identityHashCode(animator.getCurrentAnimation());
+                hash = hash * 31 + Float.floatToIntBits(animator.getAnimationTime());
+                hash = hash * 31 + Float.floatToIntBits(animator.getIdleAnimationTime());
+                hash = hash * 31 + (animator.isIdle() ? 1 : 0);
+            }
+        }
+        if (hash != state.casterHashes[face]) {
+            state.casterHashes[face] = hash;
+            state.dirtyMask |= 1 << face;
+        }
+    }
+
+    private void addCandidates(LightState state, int faces, float contribution) {
+        for (int face = 0; face < faces; face++) {
+            if ((state.dirtyMask & (1 << face)) == 0) {
+                continue;
+            }
+            if (candidateCount == candidates.size()) {
+                candidates.add(new Candidate());
+            }
+            Candidate candidate = candidates.get(candidateCount++);
+            candidate.state = state;
+            candidate.face = face;
+            candidate.priority = contribution * (1.0f + state.waitingFrames[face] * AGE_WEIGHT);
+        }
+    }
+}
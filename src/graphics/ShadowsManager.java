@@ -1,14 +1,16 @@
 package graphics;
 
 import engine.Transformation;
+import engine.camera.Camera;
 import engine.entities.Entity;
 import engine.entities.animatedModel.Player;
+import engine.lights.DirectionalLight;
 import engine.lights.PointLight;
 import engine.lights.SceneLight;
 import engine.lights.SpotLight;
 import game.ShaderManager;
 import game.map.Map;
-import game.map.tile.Tile;
+import game.map.VisibleSet;
 import game.mobs.Snake;
 import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
@@ -22,99 +24,76 @@ import static org.lwjgl.opengl.GL13.GL_TEXTURE_CUBE_MAP_POSITIVE_X;
 import static org.lwjgl.opengl.GL30.*;
 
 public class ShadowsManager {
+    private final ShadowUpdateScheduler scheduler = new ShadowUpdateScheduler();
+    // Reused for every tile and entity that is rendered to a shadow map
+    private final FrustumIntersection frustumIntersection = new FrustumIntersection();
+    private final Vector3f tilePos = new Vector3f();
+    private final Vector3f morphHead = new Vector3f();
+    private final float[] bounds = new float[4];
+
     //
     // Public Methods for rendering Shadows
     //
-    public void renderDynamicShadows(Transformation transformation, SceneLight sceneLight, ShaderManager shaderManager, Map map, List<Entity>  entities) {
-        if (sceneLight != null)
-            renderShadows(transformation, sceneLight, shaderManager, map, entities, true);
+    /**
+     * @param visibility What the viewer can see, point and spot lights out of view are skipped. Null
+     *                   if everything may be seen.
+     */
+    public void renderDynamicShadows(Transformation transformation, SceneLight sceneLight, ShaderManager shaderManager, Map map, List<Entity>  entities, Camera camera, VisibleSet visibility) {
+        if (sceneLight == null) {
+            return;
+        }
+        // The cascades follow the camera, so the directional light only has dynamic shadows
+        if (sceneLight.directionalLight != null && sceneLight.directionalLight.isShadowEnabled()) {
+            renderCascades(transformation, sceneLight.directionalLight, shaderManager, map, entities);
+        }
+        // Only refresh the point and spot light faces that fit in the budget of this frame
+        scheduler.schedule(sceneLight, entities, camera.getPosition(), visibility);
+        scheduler.beginFrame();
+        renderShadows(transformation, sceneLight, shaderManager, map, entities, true);
+        scheduler.endFrame();
     }
     public void renderStaticShadows(Transformation transformation, SceneLight sceneLight, ShaderManager shaderManager, Map map, List<Entity> entities) {
         if (sceneLight != null)
             renderShadows(transformation, sceneLight, shaderManager, map, entities, false);
     }
 
+    /**
+     * @return The scheduler that decides which dynamic shadow maps are refreshed every frame
+     */
+    public ShadowUpdateScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public void cleanup() {
+        scheduler.cleanup();
+    }
+
     //
     // Handle internally
     //
     private void renderShadows(Transformation transformation, SceneLight sceneLight, ShaderManager shaderManager, Map map, List<Entity>  entities, boolean isDynamic) {
-        FrustumIntersection frustumIntersection = new FrustumIntersection();
         Matrix4f model;
         int numLights;
         ShadowMap shadowMap;
 
-        if (sceneLight.directionalLight != null && sceneLight.directionalLight.isShadowEnabled()) {
-            if (isDynamic || sceneLight.directionalLight.isDynamicOnly()) {
-                shadowMap = sceneLight.directionalLight.getDynamicShadowMap();
-            } else {
-                shadowMap = sceneLight.directionalLight.getStaticShadowMap();
-            }
-
-            glViewport(0, 0, shadowMap.getResolution(), shadowMap.getResolution());
-            glBindFramebuffer(GL_FRAMEBUFFER, shadowMap.getDepthMapFBO());
-            glClear(GL_DEPTH_BUFFER_BIT);
-
-            frustumIntersection.set(sceneLight.directionalLight.getLightSpaceMatrix());
-            shaderManager.bindDepthMapShader();
-            shaderManager.initializeDepthShader(sceneLight.directionalLight.getLightSpaceMatrix());
-            if (map != null) {
-                for (Tile[] row : map.getTiles()) {
-                    for (Tile tile : row) {
-                        if (tile == null) {
-                            continue;
-                        }
-                        Vector3f tilePos = new Vector3f(tile.getPosition().x, 0, tile.getPosition().y);
-                        int frustrum = frustumIntersection.intersectAab(new Vector3f(tilePos).sub(1.0f, 1.1f, 1.0f), new Vector3f(tilePos).add(1.0f,3.0f, 1.0f));
-                        // Calculate the Model matrix in World coordinates
-                        if (frustrum == -2 || frustrum == -1) {
-                            Mesh mesh = tile.getMesh();
-                            if ((isDynamic && !mesh.isStatic()) || (!isDynamic && mesh.isStatic()) || sceneLight.directionalLight.isDynamicOnly()) {
-                                model = transformation.getWorldMatrix(
-                                        new Vector3f(tile.getPosition().x, 0, tile.getPosition().y),
-                                        tile.getRotation(),
-                                        0.5f);
-                                // Set model view matrix for this item
-                                shaderManager.updateDepthShader(model);
-                                shaderManager.setDepthShaderModeDefault();
-                                // Render the mesh
-                                mesh.render();
-                            }
-                        }
-                    }
-                }
-            }
-            for (Entity entity : entities) {
-                int frustrum = frustumIntersection.intersectAab(new Vector3f(entity.getPosition()).sub(1.0f, 1.1f, 1.0f), new Vector3f(entity.getPosition()).add(1.0f,3.0f, 1.0f));
-                if (frustrum == -2 || frustrum == -1) {
-                    Mesh mesh = entity.getMesh();
-                    if ((isDynamic && !mesh.isStatic()) || (!isDynamic && mesh.isStatic()) || sceneLight.directionalLight.isDynamicOnly()) {
-                        model = transformation.getWorldMatrix(entity.getPosition(), entity.getRotation(), entity.getScaleVector());
-                        shaderManager.updateDepthShader(model);
-                        if (entity instanceof Snake) {
-                            shaderManager.setDepthShaderMode0(((Snake) entity).getMorph(), new Vector3f(entity.getPosition()).add(1,0,0));
-                        } else {
-                            shaderManager.setDepthShaderModeDefault();
-                        }
-                        // Render the mesh
-                        mesh.render();
-                    }
-                }
-            }
-            //Unbind FBO and shader
-            shaderManager.unbindDepthMapShader();
-        }
         // Point Light Depth Shader
         numLights = sceneLight.pointLights != null ? sceneLight.pointLights.size() : 0;
         for (int i = 0; i < numLights; i++) {
             if (sceneLight.pointLights.get(i).getIntensity() > 0) {
                 PointLight pointLight = sceneLight.pointLights.get(i);
                 if (isDynamic || pointLight.isDynamicOnly()) {
-                    shadowMap = pointLight.getDynamicShadowMap();
+                    shadowMap = pointLight.acquireDynamicShadowMap();
                 } else {
-                    shadowMap = pointLight.getStaticShadowMap();
+                    shadowMap = pointLight.acquireStaticShadowMap();
+                }
+                if (shadowMap == null) {
+                    continue;
                 }
 
                 for (int s = 0; s < 6; s++) {
+                    if (isDynamic && !scheduler.isScheduled(pointLight, s)) {
+                        continue;
+                    }
                     glViewport(0, 0, shadowMap.getResolution(), shadowMap.getResolution());
                     glBindFramebuffer(GL_DRAW_FRAMEBUFFER, shadowMap.getDepthMapFBO());
                     glFramebufferTexture2D(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_TEXTURE_CUBE_MAP_POSITIVE_X + s, shadowMap.getDepthMap(), 0);
@@ -125,22 +104,29 @@ public class ShadowsManager {
 
                     frustumIntersection.set(pointLight.getView(s));
                     if (map != null) {
-                        for (Tile[] row : map.getTiles()) {
-                            for (Tile tile : row) {
-                                if (tile == null) {
+                        // Only visit the tiles within the range of the light
+                        int height = map.getHeight();
+                        float range = pointLight.getPlane().y + 1;
+                        int minX = Math.max(0, (int) Math.floor(pointLight.getPosition().x - range));
+                        int maxX = Math.min(map.getWidth() - 1, (int) Math.ceil(pointLight.getPosition().x + range));
+                        int minY = Math.max(0, (int) Math.floor(pointLight.getPosition().z - range));
+                        int maxY = Math.min(height - 1, (int) Math.ceil(pointLight.getPosition().z + range));
+                        for (int x = minX; x <= maxX; x++) {
+                            for (int y = minY; y <= maxY; y++) {
+                                int index = x * height + y;
+                                if (!map.hasTile(index)) {
                                     continue;
                                 }
-                                Vector3f tilePos = new Vector3f(tile.getPosition().x, 0, tile.getPosition().y);
-                                int frustrum = frustumIntersection.intersectAab(new Vector3f(tilePos).sub(1.0f, 1.1f, 1.0f), new Vector3f(tilePos).add(1.0f,3.0f, 1.0f));
+                                int frustrum = frustumIntersection.intersectAab(x - 1.0f, -1.1f, y - 1.0f, x + 1.0f, 3.0f, y + 1.0f);
                                 // Calculate the Model matrix in World coordinates
                                 if (frustrum == -2 || frustrum == -1) {
                                     // Calculate the Model matrix in World coordinates
-                                    Mesh mesh = tile.getMesh();
-                                    if ((new Vector3f(pointLight.getPosition()).sub(new Vector3f(tile.getPosition().x, 0, tile.getPosition().y))).length() <= pointLight.getPlane().y) {
+                                    Mesh mesh = map.getMesh(index);
+                                    if (pointLight.getPosition().distance(x, 0, y) <= pointLight.getPlane().y) {
                                         if ((isDynamic && !mesh.isStatic()) || (!isDynamic && mesh.isStatic()) || pointLight.isDynamicOnly()) {
                                             model = transformation.getWorldMatrix(
-                                                    new Vector3f(tile.getPosition().x, 0, tile.getPosition().y),
-                                                    tile.getRotation(),
+                                                    tilePos.set(x, 0, y),
+                                                    map.getRotation(index),
                                                     0.5f);
                                             // Set model view matrix for this item
                                             shaderManager.updateDepthCubeMapShader(model);
@@ -154,15 +140,15 @@ public class ShadowsManager {
                         }
                     }
                     for (Entity entity : entities) {
-                        int frustrum = frustumIntersection.intersectAab(new Vector3f(entity.getPosition()).sub(1.0f, 1.1f, 1.0f), new Vector3f(entity.getPosition()).add(1.0f,3.0f, 1.0f));
+                        int frustrum = intersectEntity(entity.getPosition());
                         if (frustrum == -2 || frustrum == -1) {
                             Mesh mesh = entity.getMesh();
-                            if ((new Vector3f(pointLight.getPosition()).sub(new Vector3f(entity.getPosition()))).length() <= pointLight.getPlane().y) {
+                            if (pointLight.getPosition().distance(entity.getPosition()) <= pointLight.getPlane().y) {
                                 if ((isDynamic && !mesh.isStatic()) || (!isDynamic && mesh.isStatic()) || (pointLight.isDynamicOnly())) {
                                     model = transformation.getWorldMatrix(entity.getPosition(), entity.getRotation(), entity.getScaleVector());
                                     shaderManager.updateDepthCubeMapShader(model);
                                     if (entity instanceof Snake) {
-                                        shaderManager.setDepthShaderCubeMode0(((Snake) entity).getMorph(), new Vector3f(entity.getPosition()).add(1, 0, 0));
+                                        shaderManager.setDepthShaderCubeMode0(((Snake) entity).getMorph(), morphHead.set(entity.getPosition()).add(1, 0, 0));
                                     } else if (entity instanceof Player) {
                                         shaderManager.setDepthShaderCubeMode1(((Player) entity).getAnimatedModel().getJointTransforms());
                                         glDisable(GL_CULL_FACE);
@@ -177,6 +163,7 @@ public class ShadowsManager {
                     }
                     //Unbind FBO and shader
                     shaderManager.unbindDepthCubeMapShader();
+                    scheduler.faceRendered();
                 }
             }
         }
@@ -186,9 +173,12 @@ public class ShadowsManager {
             if (sceneLight.spotLights.get(i).getIntensity() > 0) {
                 SpotLight spotLight = sceneLight.spotLights.get(i);
                 if (isDynamic || spotLight.isDynamicOnly()) {
-                    shadowMap = spotLight.getDynamicShadowMap();
+                    shadowMap = spotLight.acquireDynamicShadowMap();
                 } else {
-                    shadowMap = spotLight.getStaticShadowMap();
+                    shadowMap = spotLight.acquireStaticShadowMap();
+                }
+                if (shadowMap == null || (isDynamic && !scheduler.isScheduled(spotLight, 0))) {
+                    continue;
                 }
 
                 glViewport(0, 0, shadowMap.getResolution(), shadowMap.getResolution());
@@ -199,33 +189,45 @@ public class ShadowsManager {
                 shaderManager.bindDepthMapShader();
                 shaderManager.initializeDepthShader(spotLight.getLightSpaceMatrix());
                 if (map != null) {
-                    for (Tile[] row : map.getTiles()) {
-                        for (Tile tile : row) {
-                            if (tile == null) {
+                    // Skip whole chunks that are not in the cone of the light
+                    int height = map.getHeight();
+                    for (int chunkX = 0; chunkX < map.getChunkCountX(); chunkX++) {
+                        for (int chunkY = 0; chunkY < map.getChunkCountY(); chunkY++) {
+                            int minX = chunkX * Map.CHUNK_SIZE, maxX = Math.min(map.getWidth(), minX + Map.CHUNK_SIZE);
+                            int minY = chunkY * Map.CHUNK_SIZE, maxY = Math.min(height, minY + Map.CHUNK_SIZE);
+                            int chunkFrustum = frustumIntersection.intersectAab(minX - 1.0f, -1.1f, minY - 1.0f, maxX, 3.0f, maxY);
+                            if (chunkFrustum != -2 && chunkFrustum != -1) {
                                 continue;
                             }
-                            Vector3f tilePos = new Vector3f(tile.getPosition().x, 0, tile.getPosition().y);
-                            int frustrum = frustumIntersection.intersectAab(new Vector3f(tilePos).sub(1.0f, 1.1f, 1.0f), new Vector3f(tilePos).add(1.0f,3.0f, 1.0f));
-                            // Calculate the Model matrix in World coordinates
-                            if (frustrum == -2 || frustrum == -1) {
-                                Mesh mesh = tile.getMesh();
-                                if ((isDynamic && !mesh.isStatic()) || (!isDynamic && mesh.isStatic()) || spotLight.isDynamicOnly()) {
-                                    model = transformation.getWorldMatrix(
-                                            new Vector3f(tile.getPosition().x, 0, tile.getPosition().y),
-                                            tile.getRotation(),
-                                            0.5f);
-                                    // Set model view matrix for this item
-                                    shaderManager.updateDepthShader(model);
-                                    shaderManager.setDepthShaderModeDefault();
-                                    // Render the mesh
-                                    mesh.render();
+                            for (int x = minX; x < maxX; x++) {
+                                for (int y = minY; y < maxY; y++) {
+                                    int index = x * height + y;
+                                    if (!map.hasTile(index)) {
+                                        continue;
+                                    }
+                                    int frustrum = frustumIntersection.intersectAab(x - 1.0f, -1.1f, y - 1.0f, x + 1.0f, 3.0f, y + 1.0f);
+                                    // Calculate the Model matrix in World coordinates
+                                    if (frustrum == -2 || frustrum == -1) {
+                                        Mesh mesh = map.getMesh(index);
+                                        if ((isDynamic && !mesh.isStatic()) || (!isDynamic && mesh.isStatic()) || spotLight.isDynamicOnly()) {
+                                            model = transformation.getWorldMatrix(
+                                                    tilePos.set(x, 0, y),
+                                                    map.getRotation(index),
+                                                    0.5f);
+                                            // Set model view matrix for this item
+                                            shaderManager.updateDepthShader(model);
+                                            shaderManager.setDepthShaderModeDefault();
+                                            // Render the mesh
+                                            mesh.render();
+                                        }
+                                    }
                                 }
                             }
                         }
                     }
                 }
                 for (Entity entity : entities) {
-                    int frustrum = frustumIntersection.intersectAab(new Vector3f(entity.getPosition()).sub(1.0f, 1.1f, 1.0f), new Vector3f(entity.getPosition()).add(1.0f,3.0f, 1.0f));
+                    int frustrum = intersectEntity(entity.getPosition());
                     if (frustrum == -2 || frustrum == -1) {
                         Mesh mesh = entity.getMesh();
                         if ((isDynamic && !mesh.isStatic()) || (!isDynamic && mesh.isStatic()) || (spotLight.isDynamicOnly())) {
@@ -233,7 +235,7 @@ public class ShadowsManager {
                             // Set model view matrix for this item
                             shaderManager.updateDepthShader(model);
                             if (entity instanceof Snake) {
-                                shaderManager.setDepthShaderMode0(((Snake) entity).getMorph(), new Vector3f(entity.getPosition()).add(1,0,0));
+                                shaderManager.setDepthShaderMode0(((Snake) entity).getMorph(), morphHead.set(entity.getPosition()).add(1,0,0));
                             } else {
                                 shaderManager.setDepthShaderModeDefault();
                             }
@@ -244,7 +246,77 @@ public class ShadowsManager {
                 }
                 //Unbind FBO and shader
                 shaderManager.unbindDepthMapShader();
+                scheduler.faceRendered();
             }
         }
     }
+
+    private void renderCascades(Transformation transformation, DirectionalLight light, ShaderManager shaderManager, Map map, List<Entity> entities) {
+        ShadowMap shadowMap = light.acquireShadowMap();
+        if (shadowMap == null) {
+            return;
+        }
+        Matrix4f model;
+
+        glViewport(0, 0, shadowMap.getResolution(), shadowMap.getResolution());
+        glBindFramebuffer(GL_FRAMEBUFFER, shadowMap.getDepthMapFBO());
+        shaderManager.bindDepthMapShader();
+        for (int cascade = 0; cascade < light.getCascadeCount(); cascade++) {
+            glFramebufferTextureLayer(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, shadowMap.getDepthMap(), 0, cascade);
+            glClear(GL_DEPTH_BUFFER_BIT);
+
+            Matrix4f cascadeMatrix = light.getCascadeMatrix(cascade);
+            frustumIntersection.set(cascadeMatrix);
+            shaderManager.initializeDepthShader(cascadeMatrix);
+            if (map != null) {
+                // Only visit the tiles below the cascade, meshes stick out of their tile by at most one unit
+                light.getCascadeBounds(cascade, bounds);
+                int minX = Math.max(0, (int) Math.floor(bounds[0]) - 1);
+                int maxX = Math.min(map.getWidth() - 1, (int) Math.ceil(bounds[1]) + 1);
+                int minY = Math.max(0, (int) Math.floor(bounds[2]) - 1);
+                int maxY = Math.min(map.getHeight() - 1, (int) Math.ceil(bounds[3]) + 1);
+                for (int x = minX; x <= maxX; x++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        int index = x * map.getHeight() + y;
+                        if (!map.hasTile(index)) {
+                            continue;
+                        }
+                        int frustrum = frustumIntersection.intersectAab(x - 1.0f, -1.1f, y - 1.0f, x + 1.0f, 3.0f, y + 1.0f);
+                        if (frustrum == -2 || frustrum == -1) {
+                            model = transformation.getWorldMatrix(
+                                    tilePos.set(x, 0, y),
+                                    map.getRotation(index),
+                                    0.5f);
+                            shaderManager.updateDepthShader(model);
+                            shaderManager.setDepthShaderModeDefault();
+                            map.getMesh(index).render();
+                        }
+                    }
+                }
+            }
+            for (Entity entity : entities) {
+                int frustrum = intersectEntity(entity.getPosition());
+                if (frustrum == -2 || frustrum == -1) {
+                    model = transformation.getWorldMatrix(entity.getPosition(), entity.getRotation(), entity.getScaleVector());
+                    shaderManager.updateDepthShader(model);
+                    if (entity instanceof Snake) {
+                        shaderManager.setDepthShaderMode0(((Snake) entity).getMorph(), morphHead.set(entity.getPosition()).add(1,0,0));
+                    } else {
+                        shaderManager.setDepthShaderModeDefault();
+                    }
+                    entity.getMesh().render();
+                }
+            }
+        }
+        //Unbind FBO and shader
+        shaderManager.unbindDepthMapShader();
+    }
+
+    /**
+     * Test the box around an entity against the current frustum, same as for the tiles
+     */
+    private int intersectEntity(Vector3f position) {
+        return frustumIntersection.intersectAab(position.x - 1.0f, position.y - 1.1f, position.z - 1.0f,
+                position.x + 1.0f, position.y + 3.0f, position.z + 1.0f);
+    }
 }
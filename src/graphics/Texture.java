@@ -2,6 +2,7 @@ package graphics;
 
 import de.matthiasmann.twl.utils.PNGDecoder;
 import de.matthiasmann.twl.utils.PNGDecoder.Format;
+import engine.util.Utilities;
 
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -23,7 +24,7 @@ public class Texture {
     private final int height;
 
     public Texture(String fileName) throws Exception {
-        this(Texture.class.getResourceAsStream(fileName));
+        this(Utilities.openResource(fileName));
     }
 
     public Texture(InputStream is) throws Exception {
@@ -53,7 +53,7 @@ public class A_star implements Pathfinding{
                     closedNodes.add(q);
                     break outerloop;
                 }
-                if (!n.isSolid() && !closed.containsKey(n)) {
+                if (!map.isSolid(n.getPosition().x * map.getHeight() + n.getPosition().y) && !closed.containsKey(n)) {
                     int h = Math.abs(n.getPosition().x-target.getPosition().x)
                         + Math.abs(n.getPosition().y-target.getPosition().y);
                     open.add(new Node(n, q.g+1, h, q)); // Add new node to open queue
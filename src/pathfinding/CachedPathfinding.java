@@ -0,0 +1,176 @@
+package pathfinding;
+
+import game.map.Map;
+import game.map.tile.Tile;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Remembers the paths another pathfinder found, for mobs and scripts that keep asking for the same
+ * paths.
+ * <p>
+ * Paths are stored by start and target tile and the least recently used path is dropped once the
+ * cache is full. A request whose start and target both lie on a path that was found before is
+ * answered with that part of the path, which is just as short. All paths are forgotten as soon as
+ * the version of the map changes, i.e. when a tile changes solidity.
+ * <p>
+ * Not thread safe, every worker thread should wrap its own pathfinder.
+ */
+public class CachedPathfinding implements Pathfinding {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Pathfinding pathfinder;
+    private final LinkedHashMap<Long, CachedPath> paths;
+
+    /* Map and version the cached paths belong to */
+    private Map map;
+    private int version;
+    private int height;
+
+    private int hits, subpathHits, misses;
+
+    public CachedPathfinding(Pathfinding pathfinder) {
+        this(pathfinder, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param pathfinder Computes the paths that are not in the cache
+     * @param capacity   Number of paths to remember
+     */
+    public CachedPathfinding(Pathfinding pathfinder, int capacity) {
+        this.pathfinder = pathfinder;
+        paths = new LinkedHashMap<Long, CachedPath>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(java.util.Map.Entry<Long, CachedPath> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public List<Tile> computePath(Tile start, Tile target, Map map) {
+        List<Tile> path = new ArrayList<>();
+        computePath(start, target, map, path);
+        return path;
+    }
+
+    @Override
+    public boolean computePath(Tile start, Tile target, Map map, List<Tile> path) {
+        path.clear();
+        if (map != this.map || map.getVersion() != version) {
+            paths.clear();
+            this.map = map;
+            version = map.getVersion();
+            height = map.getHeight();
+        }
+
+        int from = index(start);
+        int to = index(target);
+        long key = (long) from << 32 | to;
+        CachedPath cached = paths.get(key);
+        if (cached != null) {
+            hits++;
+            copy(cached.tiles, 0, cached.tiles.length - 1, path);
+            return cached.found;
+        }
+        if (findSubpath(from, to, path)) {
+            hits++;
+            subpathHits++;
+            return true;
+        }
+
+        misses++;
+        boolean found = pathfinder.computePath(start, target, map, path);
+        int[] tiles = new int[path.size()];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = index(path.get(i));
+        }
+        paths.put(key, new CachedPath(tiles, found));
+        return found;
+    }
+
+    /**
+     * @return Number of requests answered from the cache, including the ones answered with part of a path
+     */
+    public int getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return Number of requests answered with part of a longer path
+     */
+    public int getSubpathHitCount() {
+        return subpathHits;
+    }
+
+    /**
+     * @return Number of requests that were handed to the pathfinder
+     */
+    public int getMissCount() {
+        return misses;
+    }
+
+    public void clear() {
+        paths.clear();
+    }
+
+    /**
+     * Look for a found path that passes both tiles, a part of a shortest path is a shortest path
+     * itself. The grid is undirected, so the part may be walked in reverse.
+     */
+    private boolean findSubpath(int from, int to, List<Tile> path) {
+        Long source = null;
+        int first = -1, last = -1;
+        for (java.util.Map.Entry<Long, CachedPath> entry : paths.entrySet()) {
+            CachedPath cached = entry.getValue();
+            if (!cached.found) {
+                continue;
+            }
+            first = -1;
+            last = -1;
+            int[] tiles = cached.tiles;
+            for (int i = 0; i < tiles.length && (first < 0 || last < 0); i++) {
+                if (tiles[i] == from && first < 0) first = i;
+                if (tiles[i] == to && last < 0) last = i;
+            }
+            if (first >= 0 && last >= 0) {
+                source = entry.getKey();
+                break;
+            }
+        }
+        if (source == null) {
+            return false;
+        }
+        // Touch the path that was used, so it is not the next one to be dropped
+        copy(paths.get(source).tiles, first, last, path);
+        return true;
+    }
+
+    private void copy(int[] tiles, int first, int last, List<Tile> path) {
+        if (tiles.length == 0) {
+            return;
+        }
+        int step = first <= last ? 1 : -1;
+        for (int i = first; i != last + step; i += step) {
+            path.add(map.getTile(tiles[i] / height, tiles[i] % height));
+        }
+    }
+
+    private int index(Tile tile) {
+        return tile.getPosition().x * height + tile.getPosition().y;
+    }
+
+    private static class CachedPath {
+
+        final int[] tiles;
+        final boolean found;
+
+        CachedPath(int[] tiles, boolean found) {
+            this.tiles = tiles;
+            this.found = found;
+        }
+    }
+}
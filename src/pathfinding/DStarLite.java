@@ -0,0 +1,382 @@
+package pathfinding;
+
+import game.map.Map;
+import game.map.MapListener;
+import game.map.tile.Tile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * D* Lite for a single mob chasing a moving target.
+ * <p>
+ * The search is rooted at the tile the mob stood on when it was last planned from scratch and
+ * stores for every tile the walking distance from that root. When the target moves to another tile
+ * only the distances the move affects are repaired: the heuristic offset km absorbs the moved
+ * target, like the moving start of the original algorithm. Tiles that change solidity are repaired
+ * the same way on the next query, they are collected through MapListener.
+ * <p>
+ * As long as the mob walks along the planned path the tree stays valid and the path is returned
+ * from the mob's tile on. Once the mob leaves the path, for instance because it walked straight to
+ * a target in sight, the search is rooted at the mob again.
+ * <p>
+ * The state belongs to one mob, so every mob needs its own instance. Like IndexedAStar, the target
+ * may be solid and when it cannot be reached the path to the closest reachable tile is returned.
+ * <p>
+ * Repairing only pays off when a search from scratch is expensive, in mazes and maps with many
+ * scattered walls. On the rooms of the shipped levels IndexedAStar with landmarks expands fewer
+ * tiles, see ChaseComparison in the benchmarks module, so mobs only use D* Lite when it is set.
+ */
+public class DStarLite implements Pathfinding, MapListener {
+
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    private final IndexedAStar fallback = new IndexedAStar();
+
+    private Map map;
+    private int width, height;
+
+    /* Distance from the root after the last expansion, and the one-step lookahead of it */
+    private int[] g, rhs;
+    /* Keys of the tiles in the queue, only valid while queued */
+    private int[] key1, key2;
+    private int[] heap, heapIndex;
+    private int size;
+
+    private int root = -1;
+    private int goal = -1;
+    private int km;
+
+    /* Tiles that changed solidity since the last query */
+    private int[] changed = new int[16];
+    private int changedCount;
+
+    /* Path from the root to the goal of the last query */
+    private int[] lastPath = new int[16];
+    private int lastPathLength;
+
+    /* Number of tiles expanded by the last query */
+    private int expanded;
+
+    @Override
+    public List<Tile> computePath(Tile start, Tile target, Map map) {
+        List<Tile> path = new ArrayList<>();
+        computePath(start, target, map, path);
+        return path;
+    }
+
+    @Override
+    public boolean computePath(Tile start, Tile target, Map map, List<Tile> path) {
+        path.clear();
+        prepare(map);
+        expanded = 0;
+
+        int startIndex = index(start);
+        int targetIndex = index(target);
+
+        if (root < 0 || (startIndex != root && pathPosition(startIndex) < 0)) {
+            reset(startIndex, targetIndex);
+        } else {
+            moveGoal(targetIndex);
+        }
+        computeShortestPath();
+
+        if (g[goal] >= INFINITY) {
+            lastPathLength = 0;
+            return fallback.computePath(start, target, map, path);
+        }
+        extractPath();
+        int from = pathPosition(startIndex);
+        if (from < 0) {
+            // The new path no longer passes the mob, plan again from where it stands
+            reset(startIndex, targetIndex);
+            computeShortestPath();
+            extractPath();
+            from = 0;
+        }
+        for (int i = from; i < lastPathLength; i++) {
+            path.add(map.getTile(lastPath[i] / height, lastPath[i] % height));
+        }
+        return true;
+    }
+
+    @Override
+    public void onTileChanged(Map map, Tile tile) {
+        if (map != this.map || root < 0) {
+            return;
+        }
+        if (changedCount == changed.length) {
+            changed = Arrays.copyOf(changed, changed.length * 2);
+        }
+        changed[changedCount++] = index(tile);
+    }
+
+    /**
+     * Stop listening to the map and forget the search, for when the mob is reset or removed. The next
+     * query plans from scratch and listens to its map again.
+     */
+    public void detach() {
+        if (map != null) {
+            map.removeListener(this);
+        }
+        map = null;
+        g = rhs = key1 = key2 = heap = heapIndex = null;
+        size = 0;
+        root = -1;
+        goal = -1;
+        changedCount = 0;
+        lastPathLength = 0;
+    }
+
+    /**
+     * @return Number of tiles expanded by the last query
+     */
+    public int getExpandedCount() {
+        return expanded;
+    }
+
+    private void prepare(Map map) {
+        if (map == this.map && map.getWidth() == width && map.getHeight() == height) {
+            return;
+        }
+        if (this.map != null) {
+            this.map.removeListener(this);
+        }
+        this.map = map;
+        width = map.getWidth();
+        height = map.getHeight();
+        int size = width * height;
+        g = new int[size];
+        rhs = new int[size];
+        key1 = new int[size];
+        key2 = new int[size];
+        heap = new int[size];
+        heapIndex = new int[size];
+        root = -1;
+        map.addListener(this);
+    }
+
+    /**
+     * Forget all distances and root the search at the given tile
+     */
+    private void reset(int start, int target) {
+        Arrays.fill(g, INFINITY);
+        Arrays.fill(rhs, INFINITY);
+        Arrays.fill(heapIndex, -1);
+        size = 0;
+        km = 0;
+        changedCount = 0;
+        root = start;
+        goal = target;
+        rhs[root] = 0;
+        insert(root);
+    }
+
+    private void moveGoal(int target) {
+        int previous = goal;
+        if (target != previous) {
+            km += heuristic(previous, target);
+            goal = target;
+            // A solid goal may be entered, so both the old and the new goal change cost
+            updateVertex(previous);
+            updateVertex(goal);
+        }
+        for (int i = 0; i < changedCount; i++) {
+            updateVertex(changed[i]);
+        }
+        changedCount = 0;
+    }
+
+    private void computeShortestPath() {
+        while (size > 0) {
+            int u = heap[0];
+            int goalKey1 = Math.min(g[goal], rhs[goal]) + km;
+            int goalKey2 = Math.min(g[goal], rhs[goal]);
+            if (!less(key1[u], key2[u], goalKey1, goalKey2) && rhs[goal] == g[goal]) {
+                break;
+            }
+            expanded++;
+
+            int old1 = key1[u], old2 = key2[u];
+            int k2 = Math.min(g[u], rhs[u]);
+            int k1 = k2 + heuristic(u, goal) + km;
+            if (less(old1, old2, k1, k2)) {
+                key1[u] = k1;
+                key2[u] = k2;
+                siftDown(0);
+            } else if (g[u] > rhs[u]) {
+                g[u] = rhs[u];
+                remove(u);
+                updateNeighbours(u);
+            } else {
+                g[u] = INFINITY;
+                updateVertex(u);
+                updateNeighbours(u);
+            }
+        }
+    }
+
+    private void updateNeighbours(int u) {
+        int x = u / height;
+        int y = u - x * height;
+        if (x > 0) updateVertex(u - height);
+        if (x < width - 1) updateVertex(u + height);
+        if (y > 0) updateVertex(u - 1);
+        if (y < height - 1) updateVertex(u + 1);
+    }
+
+    private void updateVertex(int u) {
+        if (u != root) {
+            rhs[u] = isBlocked(u) ? INFINITY : lowestNeighbour(u) + 1;
+            if (rhs[u] > INFINITY) {
+                rhs[u] = INFINITY;
+            }
+        }
+        if (heapIndex[u] >= 0) {
+            remove(u);
+        }
+        if (g[u] != rhs[u]) {
+            insert(u);
+        }
+    }
+
+    private int lowestNeighbour(int u) {
+        int x = u / height;
+        int y = u - x * height;
+        int lowest = INFINITY;
+        if (x > 0) lowest = Math.min(lowest, g[u - height]);
+        if (x < width - 1) lowest = Math.min(lowest, g[u + height]);
+        if (y > 0) lowest = Math.min(lowest, g[u - 1]);
+        if (y < height - 1) lowest = Math.min(lowest, g[u + 1]);
+        return lowest;
+    }
+
+    private boolean isBlocked(int u) {
+        return !map.hasTile(u) || (map.isSolid(u) && u != goal);
+    }
+
+    /**
+     * Walk back from the goal along the lowest distances and store the path in lastPath
+     */
+    private void extractPath() {
+        lastPathLength = 0;
+        int current = goal;
+        push(current);
+        while (current != root) {
+            int x = current / height;
+            int y = current - x * height;
+            // Same order as Map.getNeighbours, the root is the only blocked tile a path may start on
+            int next = -1;
+            int best = g[current];
+            if (x > 0 && g[current - height] < best && (!isBlocked(current - height) || current - height == root)) best = g[next = current - height];
+            if (x < width - 1 && g[current + height] < best && (!isBlocked(current + height) || current + height == root)) best = g[next = current + height];
+            if (y > 0 && g[current - 1] < best && (!isBlocked(current - 1) || current - 1 == root)) best = g[next = current - 1];
+            if (y < height - 1 && g[current + 1] < best && (!isBlocked(current + 1) || current + 1 == root)) best = g[next = current + 1];
+            if (next < 0) {
+                break;
+            }
+            current = next;
+            push(current);
+        }
+        // Stored from the goal back, turn it around
+        for (int i = 0, j = lastPathLength - 1; i < j; i++, j--) {
+            int swap = lastPath[i];
+            lastPath[i] = lastPath[j];
+            lastPath[j] = swap;
+        }
+    }
+
+    private void push(int index) {
+        if (lastPathLength == lastPath.length) {
+            lastPath = Arrays.copyOf(lastPath, lastPath.length * 2);
+        }
+        lastPath[lastPathLength++] = index;
+    }
+
+    /**
+     * @return Position of the tile on the last path, -1 if it is not on it
+     */
+    private int pathPosition(int index) {
+        for (int i = 0; i < lastPathLength; i++) {
+            if (lastPath[i] == index) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int index(Tile tile) {
+        return tile.getPosition().x * height + tile.getPosition().y;
+    }
+
+    private int heuristic(int a, int b) {
+        int ax = a / height, bx = b / height;
+        return Math.abs(ax - bx) + Math.abs(a - ax * height - (b - bx * height));
+    }
+
+    private static boolean less(int a1, int a2, int b1, int b2) {
+        return a1 < b1 || (a1 == b1 && a2 < b2);
+    }
+
+    private void insert(int u) {
+        key2[u] = Math.min(g[u], rhs[u]);
+        key1[u] = key2[u] + heuristic(u, goal) + km;
+        heap[size] = u;
+        heapIndex[u] = size;
+        siftUp(size++);
+    }
+
+    private void remove(int u) {
+        int position = heapIndex[u];
+        heapIndex[u] = -1;
+        size--;
+        if (position < size) {
+            int moved = heap[size];
+            heap[position] = moved;
+            heapIndex[moved] = position;
+            siftDown(position);
+            siftUp(heapIndex[moved]);
+        }
+    }
+
+    private boolean before(int a, int b) {
+        return less(key1[a], key2[a], key1[b], key2[b]);
+    }
+
+    private void siftUp(int position) {
+        int index = heap[position];
+        while (position > 0) {
+            int up = (position - 1) >> 1;
+            if (!before(index, heap[up])) {
+                break;
+            }
+            heap[position] = heap[up];
+            heapIndex[heap[position]] = position;
+            position = up;
+        }
+        heap[position] = index;
+        heapIndex[index] = position;
+    }
+
+    private void siftDown(int position) {
+        int index = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], index)) {
+                break;
+            }
+            heap[position] = heap[child];
+            heapIndex[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = index;
+        heapIndex[index] = position;
+    }
+}
@@ -0,0 +1,157 @@
+package pathfinding;
+
+import game.map.Map;
+import game.map.MapListener;
+import game.map.tile.Tile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flow field toward a single target tile.
+ * <p>
+ * A breadth first search from the target stores the walking distance to it for every tile of the
+ * map. Any tile then finds its next step by picking a neighbour that is one step closer, so every
+ * mob chasing the same target can share one field and only pays for walking its own path. The
+ * field is only recomputed when the target moves to another tile or a tile of the map changes
+ * solidity.
+ * <p>
+ * As a Pathfinding the field is recomputed whenever it is asked for another target, so it should
+ * only be shared by mobs that chase the same target. Tiles that cannot reach the target are handed
+ * to IndexedAStar, which returns the path to the closest reachable tile.
+ */
+public class FlowField implements Pathfinding, MapListener {
+
+    private final IndexedAStar fallback = new IndexedAStar();
+
+    private Map map;
+    private int width, height;
+    private Tile target;
+    private boolean dirty;
+
+    /* Walking distance to the target per tile, -1 if it cannot be reached */
+    private int[] distance;
+    private int[] queue;
+
+    /* Number of times the field was recomputed */
+    private int updates;
+
+    /**
+     * Make sure the field leads to the given target
+     *
+     * @param target Tile to flow toward
+     * @param map    Map the target is on
+     */
+    public void update(Tile target, Map map) {
+        if (map != this.map || distance == null || map.getWidth() != width || map.getHeight() != height) {
+            if (this.map != null) {
+                this.map.removeListener(this);
+            }
+            this.map = map;
+            width = map.getWidth();
+            height = map.getHeight();
+            distance = new int[width * height];
+            queue = new int[width * height];
+            map.addListener(this);
+            dirty = true;
+        }
+        if (target != this.target || dirty) {
+            this.target = target;
+            dirty = false;
+            compute();
+        }
+    }
+
+    /**
+     * @return Walking distance from the tile to the target, -1 if it cannot reach the target
+     */
+    public int getDistance(Tile tile) {
+        return distance[tile.getPosition().x * height + tile.getPosition().y];
+    }
+
+    /**
+     * @return The next tile on a shortest path to the target, null if the tile is the target or
+     * cannot reach it
+     */
+    public Tile getNextTile(Tile tile) {
+        int x = tile.getPosition().x;
+        int y = tile.getPosition().y;
+        int current = distance[x * height + y];
+        if (current <= 0) {
+            return null;
+        }
+        // Same order as Map.getNeighbours, so ties are broken the same way every time
+        if (x > 0 && distance[(x - 1) * height + y] == current - 1) return map.getTile(x - 1, y);
+        if (x < width - 1 && distance[(x + 1) * height + y] == current - 1) return map.getTile(x + 1, y);
+        if (y > 0 && distance[x * height + y - 1] == current - 1) return map.getTile(x, y - 1);
+        if (y < height - 1 && distance[x * height + y + 1] == current - 1) return map.getTile(x, y + 1);
+        return null;
+    }
+
+    @Override
+    public List<Tile> computePath(Tile start, Tile target, Map map) {
+        List<Tile> path = new ArrayList<>();
+        computePath(start, target, map, path);
+        return path;
+    }
+
+    @Override
+    public boolean computePath(Tile start, Tile target, Map map, List<Tile> path) {
+        update(target, map);
+        if (getDistance(start) < 0) {
+            return fallback.computePath(start, target, map, path);
+        }
+        path.clear();
+        for (Tile tile = start; tile != null; tile = getNextTile(tile)) {
+            path.add(tile);
+        }
+        return true;
+    }
+
+    @Override
+    public void onTileChanged(Map map, Tile tile) {
+        if (map == this.map) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * @return Number of times the field was recomputed
+     */
+    public int getUpdateCount() {
+        return updates;
+    }
+
+    private void compute() {
+        updates++;
+        Arrays.fill(distance, -1);
+        int origin = target.getPosition().x * height + target.getPosition().y;
+        distance[origin] = 0;
+        int head = 0, tail = 0;
+        queue[tail++] = origin;
+        while (head < tail) {
+            int current = queue[head++];
+            int x = current / height;
+            int y = current - x * height;
+            int next = distance[current] + 1;
+            if (x > 0) tail = visit(x - 1, y, next, tail);
+            if (x < width - 1) tail = visit(x + 1, y, next, tail);
+            if (y > 0) tail = visit(x, y - 1, next, tail);
+            if (y < height - 1) tail = visit(x, y + 1, next, tail);
+        }
+    }
+
+    private int visit(int x, int y, int cost, int tail) {
+        int index = x * height + y;
+        if (distance[index] >= 0) {
+            return tail;
+        }
+        if (!map.isWalkable(index)) {
+            return tail;
+        }
+        distance[index] = cost;
+        queue[tail] = index;
+        return tail + 1;
+    }
+}
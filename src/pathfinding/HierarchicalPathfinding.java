@@ -0,0 +1,476 @@
+package pathfinding;
+
+import game.map.Map;
+import game.map.MapListener;
+import game.map.tile.Tile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hierarchical pathfinding (HPA*).
+ * <p>
+ * The map is split into square clusters. Where two neighbouring clusters share a stretch of
+ * walkable tiles along their border an entrance is created, one transition in the middle of short
+ * stretches and one at both ends of long ones. The transition tiles form an abstract graph: tiles
+ * on both sides of a transition are connected with cost 1, and all transition tiles within a
+ * cluster are connected with their walking distance inside that cluster.
+ * <p>
+ * A query connects the start to the transitions of its own and the surrounding clusters and the
+ * target to the transitions of its cluster, searches the small abstract graph with A* and then
+ * refines every abstract edge into tiles with a breadth first search limited to those clusters.
+ * Paths are close to, but not always exactly, the shortest. When a tile changes solidity only the
+ * entrances around its cluster and the distances inside that cluster and its neighbours are
+ * recomputed.
+ * <p>
+ * When the target cannot be reached the query is handed to IndexedAStar, which returns the path
+ * to the closest reachable tile.
+ */
+public class HierarchicalPathfinding implements Pathfinding, MapListener {
+
+    /* Directions: -x, +x, -y, +y */
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+
+    /* Entrances at least this long get a transition at both ends */
+    private static final int LONG_ENTRANCE = 6;
+
+    private final int clusterSize;
+    private final IndexedAStar fallback = new IndexedAStar();
+
+    private Map map;
+    private int width, height;
+    private int clustersX, clustersY;
+
+    /* Per tile, one bit per direction in which a transition leaves the cluster */
+    private byte[] crossings;
+    /* Per cluster, the transition tiles and the distances between them, -1 if not connected */
+    private int[][] clusterNodes;
+    private int[][] clusterDistances;
+    /* Per tile, the position in the node list of its cluster or -1 */
+    private int[] slot;
+
+    /* Abstract search */
+    private OpenSet open;
+    private int targetIndex, targetX, targetY;
+
+    /* Breadth first searches inside a cluster, one for the start, one for the target and a scratch one */
+    private final ClusterSearch startSearch = new ClusterSearch();
+    private final ClusterSearch targetSearch = new ClusterSearch();
+    private final ClusterSearch scratch = new ClusterSearch();
+
+    /* Number of abstract nodes expanded by the last query */
+    private int expanded;
+
+    public HierarchicalPathfinding() {
+        this(10);
+    }
+
+    /**
+     * @param clusterSize Width and height of a cluster in tiles
+     */
+    public HierarchicalPathfinding(int clusterSize) {
+        this.clusterSize = clusterSize;
+    }
+
+    @Override
+    public List<Tile> computePath(Tile start, Tile target, Map map) {
+        List<Tile> path = new ArrayList<>();
+        computePath(start, target, map, path);
+        return path;
+    }
+
+    @Override
+    public boolean computePath(Tile start, Tile target, Map map, List<Tile> path) {
+        path.clear();
+        prepare(map);
+
+        targetX = target.getPosition().x;
+        targetY = target.getPosition().y;
+        targetIndex = targetX * height + targetY;
+        int startIndex = start.getPosition().x * height + start.getPosition().y;
+        if (startIndex == targetIndex) {
+            path.add(start);
+            return true;
+        }
+
+        int startCluster = clusterOf(startIndex);
+        int targetCluster = clusterOf(targetIndex);
+        // The start is searched from over the surrounding clusters as well, which finds direct paths
+        // to targets close by and keeps paths from detouring through a transition next to the start
+        startSearch.run(startIndex, startCluster, 1, targetIndex);
+        targetSearch.run(targetIndex, targetCluster, 0, -1);
+
+        expanded = 0;
+        open.reset();
+        open.open(startIndex, 0, heuristic(startIndex), -1);
+        boolean found = false;
+        while (!open.isEmpty()) {
+            int current = open.pop();
+            if (current == targetIndex) {
+                found = true;
+                break;
+            }
+            expanded++;
+            int cost = open.g[current];
+            int cluster = clusterOf(current);
+
+            if (current == startIndex) {
+                // Connect the start to the transitions around it and maybe directly to the target
+                int cx = startCluster / clustersY;
+                int cy = startCluster % clustersY;
+                for (int nx = Math.max(0, cx - 1); nx <= Math.min(clustersX - 1, cx + 1); nx++) {
+                    for (int ny = Math.max(0, cy - 1); ny <= Math.min(clustersY - 1, cy + 1); ny++) {
+                        for (int node : clusterNodes[nx * clustersY + ny]) {
+                            int distance = startSearch.distance(node);
+                            if (distance > 0) {
+                                open.relax(node, cost + distance, heuristic(node), current);
+                            }
+                        }
+                    }
+                }
+                int direct = startSearch.distance(targetIndex);
+                if (direct > 0) {
+                    open.relax(targetIndex, cost + direct, 0, current);
+                }
+            } else if (slot[current] >= 0) {
+                // Other transitions of the same cluster
+                int[] nodes = clusterNodes[cluster];
+                int[] distances = clusterDistances[cluster];
+                int row = slot[current] * nodes.length;
+                for (int i = 0; i < nodes.length; i++) {
+                    int distance = distances[row + i];
+                    if (distance > 0) {
+                        open.relax(nodes[i], cost + distance, heuristic(nodes[i]), current);
+                    }
+                }
+            }
+
+            // Transitions into the neighbouring clusters
+            int bits = crossings[current];
+            for (int dir = 0; dir < 4; dir++) {
+                if ((bits & (1 << dir)) != 0) {
+                    int next = current + DX[dir] * height + DY[dir];
+                    open.relax(next, cost + 1, heuristic(next), current);
+                }
+            }
+
+            // The target, from any transition of its cluster
+            if (cluster == targetCluster && current != startIndex) {
+                int distance = targetSearch.distance(current);
+                if (distance > 0) {
+                    open.relax(targetIndex, cost + distance, 0, current);
+                }
+            }
+        }
+
+        if (!found) {
+            return fallback.computePath(start, target, map, path);
+        }
+
+        // Refine the abstract path from the target back to the start
+        int index = targetIndex;
+        path.add(tileAt(index));
+        while (open.parent[index] >= 0) {
+            int previous = open.parent[index];
+            refine(previous, index, path);
+            index = previous;
+        }
+        Collections.reverse(path);
+        return true;
+    }
+
+    /**
+     * @return Number of abstract nodes expanded by the last query
+     */
+    public int getExpandedCount() {
+        return expanded;
+    }
+
+    /**
+     * Build the abstract graph for a map ahead of the first query, e.g. right after it is loaded
+     */
+    public void precompute(Map map) {
+        prepare(map);
+    }
+
+    @Override
+    public void onTileChanged(Map map, Tile tile) {
+        if (map != this.map || crossings == null) {
+            return;
+        }
+        int index = tile.getPosition().x * height + tile.getPosition().y;
+        int cluster = clusterOf(index);
+        int cx = cluster / clustersY;
+        int cy = cluster % clustersY;
+
+        // Entrances on all four borders of the cluster
+        if (cx > 0) buildVerticalBorder(cx - 1, cy);
+        if (cx < clustersX - 1) buildVerticalBorder(cx, cy);
+        if (cy > 0) buildHorizontalBorder(cx, cy - 1);
+        if (cy < clustersY - 1) buildHorizontalBorder(cx, cy);
+
+        // Distances inside the cluster and the neighbours that share those entrances
+        buildCluster(cluster);
+        if (cx > 0) buildCluster(cluster - clustersY);
+        if (cx < clustersX - 1) buildCluster(cluster + clustersY);
+        if (cy > 0) buildCluster(cluster - 1);
+        if (cy < clustersY - 1) buildCluster(cluster + 1);
+    }
+
+    private void prepare(Map map) {
+        if (this.map == map && open != null && map.getWidth() == width && map.getHeight() == height) {
+            return;
+        }
+        if (this.map != null) {
+            this.map.removeListener(this);
+        }
+        this.map = map;
+        width = map.getWidth();
+        height = map.getHeight();
+        clustersX = (width + clusterSize - 1) / clusterSize;
+        clustersY = (height + clusterSize - 1) / clusterSize;
+
+        int size = width * height;
+        open = new OpenSet(size);
+        startSearch.resize(size);
+        targetSearch.resize(size);
+        scratch.resize(size);
+        crossings = new byte[size];
+        slot = new int[size];
+        clusterNodes = new int[clustersX * clustersY][];
+        clusterDistances = new int[clustersX * clustersY][];
+
+        for (int cx = 0; cx < clustersX; cx++) {
+            for (int cy = 0; cy < clustersY; cy++) {
+                if (cx < clustersX - 1) buildVerticalBorder(cx, cy);
+                if (cy < clustersY - 1) buildHorizontalBorder(cx, cy);
+            }
+        }
+        for (int cluster = 0; cluster < clustersX * clustersY; cluster++) {
+            buildCluster(cluster);
+        }
+        map.addListener(this);
+    }
+
+    /**
+     * Find the entrances on the border between cluster (cx, cy) and (cx + 1, cy)
+     */
+    private void buildVerticalBorder(int cx, int cy) {
+        int left = (cx + 1) * clusterSize - 1;
+        int first = cy * clusterSize;
+        int last = Math.min(height, first + clusterSize) - 1;
+        int run = -1;
+        for (int y = first; y <= last + 1; y++) {
+            boolean open = y <= last && isWalkable(left, y) && isWalkable(left + 1, y);
+            if (y <= last) {
+                crossings[left * height + y] &= ~(1 << 1);
+                crossings[(left + 1) * height + y] &= ~(1 << 0);
+            }
+            if (open && run < 0) {
+                run = y;
+            } else if (!open && run >= 0) {
+                for (int transition : transitions(run, y - 1)) {
+                    crossings[left * height + transition] |= 1 << 1;
+                    crossings[(left + 1) * height + transition] |= 1 << 0;
+                }
+                run = -1;
+            }
+        }
+    }
+
+    /**
+     * Find the entrances on the border between cluster (cx, cy) and (cx, cy + 1)
+     */
+    private void buildHorizontalBorder(int cx, int cy) {
+        int bottom = (cy + 1) * clusterSize - 1;
+        int first = cx * clusterSize;
+        int last = Math.min(width, first + clusterSize) - 1;
+        int run = -1;
+        for (int x = first; x <= last + 1; x++) {
+            boolean open = x <= last && isWalkable(x, bottom) && isWalkable(x, bottom + 1);
+            if (x <= last) {
+                crossings[x * height + bottom] &= ~(1 << 3);
+                crossings[x * height + bottom + 1] &= ~(1 << 2);
+            }
+            if (open && run < 0) {
+                run = x;
+            } else if (!open && run >= 0) {
+                for (int transition : transitions(run, x - 1)) {
+                    crossings[transition * height + bottom] |= 1 << 3;
+                    crossings[transition * height + bottom + 1] |= 1 << 2;
+                }
+                run = -1;
+            }
+        }
+    }
+
+    /**
+     * @return Positions of the transitions of an entrance from first to last, inclusive
+     */
+    private int[] transitions(int first, int last) {
+        if (last - first + 1 >= LONG_ENTRANCE) {
+            return new int[]{first, last};
+        }
+        return new int[]{(first + last) / 2};
+    }
+
+    /**
+     * Collect the transitions of a cluster and the walking distances between them
+     */
+    private void buildCluster(int cluster) {
+        int x0 = (cluster / clustersY) * clusterSize;
+        int y0 = (cluster % clustersY) * clusterSize;
+        int x1 = Math.min(width, x0 + clusterSize);
+        int y1 = Math.min(height, y0 + clusterSize);
+
+        int count = 0;
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
+                int index = x * height + y;
+                slot[index] = -1;
+                if (crossings[index] != 0) {
+                    count++;
+                }
+            }
+        }
+        int[] nodes = new int[count];
+        count = 0;
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
+                int index = x * height + y;
+                if (crossings[index] != 0) {
+                    slot[index] = count;
+                    nodes[count++] = index;
+                }
+            }
+        }
+
+        int[] distances = new int[count * count];
+        for (int i = 0; i < count; i++) {
+            scratch.run(nodes[i], cluster, 0, -1);
+            for (int j = 0; j < count; j++) {
+                distances[i * count + j] = i == j ? 0 : scratch.distance(nodes[j]);
+            }
+        }
+        clusterNodes[cluster] = nodes;
+        clusterDistances[cluster] = distances;
+    }
+
+    /**
+     * Add the tiles between two consecutive abstract nodes, excluding 'to' and including 'from'
+     */
+    private void refine(int from, int to, List<Tile> path) {
+        int dx = Math.abs(from / height - to / height);
+        int dy = Math.abs(from % height - to % height);
+        if (dx + dy == 1) {
+            path.add(tileAt(from));
+            return;
+        }
+        // Walk back from 'to' along the search tree of 'from', with the bounds it was connected with
+        int radius = open.parent[from] < 0 ? 1 : 0;
+        scratch.run(from, clusterOf(from), radius, to == targetIndex ? targetIndex : -1);
+        int index = scratch.parent[to];
+        while (index != from) {
+            path.add(tileAt(index));
+            index = scratch.parent[index];
+        }
+        path.add(tileAt(from));
+    }
+
+    private int clusterOf(int index) {
+        int x = index / height;
+        int y = index - x * height;
+        return (x / clusterSize) * clustersY + y / clusterSize;
+    }
+
+    private int heuristic(int index) {
+        int x = index / height;
+        int y = index - x * height;
+        return Math.abs(x - targetX) + Math.abs(y - targetY);
+    }
+
+    private boolean isWalkable(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+        return map.isWalkable(x * height + y);
+    }
+
+    private Tile tileAt(int index) {
+        return map.getTile(index / height, index % height);
+    }
+
+    /**
+     * Breadth first search limited to the tiles of a cluster and the clusters around it
+     */
+    private class ClusterSearch {
+        private int[] distance;
+        private int[] parent;
+        private int[] stamp;
+        private int[] queue;
+        private int generation;
+
+        void resize(int size) {
+            distance = new int[size];
+            parent = new int[size];
+            stamp = new int[size];
+            queue = new int[Math.min(size, 9 * clusterSize * clusterSize)];
+            generation = 0;
+        }
+
+        /**
+         * @param origin    Tile to search from, may be solid
+         * @param cluster   Cluster to stay within
+         * @param radius    Number of clusters around it that may be entered as well
+         * @param enterable Solid tile that may be entered but not passed, or -1
+         */
+        void run(int origin, int cluster, int radius, int enterable) {
+            generation++;
+            int x0 = Math.max(0, (cluster / clustersY - radius) * clusterSize);
+            int y0 = Math.max(0, (cluster % clustersY - radius) * clusterSize);
+            int x1 = Math.min(width, (cluster / clustersY + radius + 1) * clusterSize);
+            int y1 = Math.min(height, (cluster % clustersY + radius + 1) * clusterSize);
+
+            int head = 0, tail = 0;
+            stamp[origin] = generation;
+            distance[origin] = 0;
+            parent[origin] = -1;
+            queue[tail++] = origin;
+            while (head < tail) {
+                int current = queue[head++];
+                if (current == enterable && current != origin) {
+                    continue;
+                }
+                int x = current / height;
+                int y = current - x * height;
+                for (int dir = 0; dir < 4; dir++) {
+                    int nx = x + DX[dir];
+                    int ny = y + DY[dir];
+                    if (nx < x0 || ny < y0 || nx >= x1 || ny >= y1) {
+                        continue;
+                    }
+                    int next = nx * height + ny;
+                    if (stamp[next] == generation || (next != enterable && !isWalkable(nx, ny))) {
+                        continue;
+                    }
+                    if (next == enterable && map.getTile(nx, ny) == null) {
+                        continue;
+                    }
+                    stamp[next] = generation;
+                    distance[next] = distance[current] + 1;
+                    parent[next] = current;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        /**
+         * @return Distance from the origin of the last search, -1 if not reached
+         */
+        int distance(int index) {
+            return stamp[index] == generation ? distance[index] : -1;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package pathfinding;
+
+import game.map.Map;
+import game.map.tile.Tile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A* on the tile grid without allocating anything per query.
+ * <p>
+ * Tiles are identified by their index x * height + y. The open set is an indexed binary heap, so
+ * a shorter path to a tile that is already open moves it up in place instead of adding a second
+ * node. Scores and parents live in arrays sized to the map that are reused between queries, see
+ * OpenSet.
+ * <p>
+ * When the map has Landmarks the heuristic is the largest of Manhattan distance and the landmark
+ * lower bound, which stays admissible and expands far fewer tiles in levels with many walls.
+ * <p>
+ * Like A_star, the target may be solid and when it cannot be reached the path to the closest
+ * reachable tile is returned instead.
+ */
+public class IndexedAStar implements Pathfinding {
+
+    private int width, height;
+    private OpenSet open;
+    private boolean useLandmarks = true;
+    /* Landmarks of the map of the current query, null if it has none or they are not used */
+    private Landmarks landmarks;
+
+    /* Number of tiles expanded by the last query */
+    private int expanded;
+
+    /**
+     * Compute the path from start to target
+     *
+     * @param start  Tile which is the start of our search
+     * @param target Tile which is the end of our search
+     * @param map    Map which contains the space to search through
+     * @return A new list with the path, including the start tile
+     */
+    @Override
+    public List<Tile> computePath(Tile start, Tile target, Map map) {
+        List<Tile> path = new ArrayList<>();
+        computePath(start, target, map, path);
+        return path;
+    }
+
+    /**
+     * Compute the path from start to target into an existing list, which does not allocate anything
+     * once the list has grown large enough
+     *
+     * @param start  Tile which is the start of our search
+     * @param target Tile which is the end of our search
+     * @param map    Map which contains the space to search through
+     * @param path   List that is cleared and filled with the path, including the start tile
+     * @return Whether the target was reached, if not the path leads to the closest reachable tile
+     */
+    @Override
+    public boolean computePath(Tile start, Tile target, Map map, List<Tile> path) {
+        path.clear();
+        prepare(map);
+
+        int targetX = target.getPosition().x;
+        int targetY = target.getPosition().y;
+        int startIndex = start.getPosition().x * height + start.getPosition().y;
+        int targetIndex = targetX * height + targetY;
+
+        // Best fallback if the target cannot be reached: lowest heuristic, then lowest cost
+        int closest = startIndex;
+        int closestH = heuristic(startIndex, targetX, targetY);
+
+        open.open(startIndex, 0, closestH, -1);
+        expanded = 0;
+        boolean found = startIndex == targetIndex;
+        int[] g = open.g;
+
+        while (!open.isEmpty() && !found) {
+            int current = open.pop();
+            expanded++;
+
+            int h = open.f[current] - g[current];
+            if (h < closestH || (h == closestH && g[current] < g[closest])) {
+                closest = current;
+                closestH = h;
+            }
+
+            int x = current / height;
+            int y = current - x * height;
+            // Same order as Map.getNeighbours
+            for (int i = 0; i < 4; i++) {
+                int nx = x, ny = y;
+                switch (i) {
+                    case 0: nx--; break;
+                    case 1: nx++; break;
+                    case 2: ny--; break;
+                    default: ny++; break;
+                }
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+                    continue;
+                }
+                int neighbour = nx * height + ny;
+                if (neighbour == targetIndex) {
+                    // The target is accepted even if it is solid, e.g. the tile a player stands against
+                    if (map.hasTile(neighbour)) {
+                        open.open(neighbour, g[current] + 1, 0, current);
+                        found = true;
+                        break;
+                    }
+                    continue;
+                }
+                if (!map.isWalkable(neighbour)) {
+                    continue;
+                }
+                open.relax(neighbour, g[current] + 1, heuristic(neighbour, targetX, targetY), current);
+            }
+        }
+
+        // Walk back from the end of the path to the start
+        int index = found ? targetIndex : closest;
+        while (index >= 0) {
+            path.add(map.getTile(index / height, index % height));
+            index = open.parent[index];
+        }
+        Collections.reverse(path);
+        return found;
+    }
+
+    /**
+     * Whether to use the landmarks of the map for the heuristic, on by default
+     */
+    public void setUseLandmarks(boolean useLandmarks) {
+        this.useLandmarks = useLandmarks;
+    }
+
+    /**
+     * @return Number of tiles expanded by the last query
+     */
+    public int getExpandedCount() {
+        return expanded;
+    }
+
+    /**
+     * Make sure the open set fits the map and start a new search
+     */
+    private void prepare(Map map) {
+        if (open == null || map.getWidth() != width || map.getHeight() != height) {
+            width = map.getWidth();
+            height = map.getHeight();
+            open = new OpenSet(width * height);
+        }
+        open.reset();
+        landmarks = useLandmarks ? map.getLandmarks() : null;
+        if (landmarks != null && landmarks.isBuiltFor(map)) {
+            // Copies of the map on worker threads use the tables as they are, see Map.copySolidity
+            landmarks.update();
+        }
+    }
+
+    private int heuristic(int index, int targetX, int targetY) {
+        int x = index / height;
+        int y = index - x * height;
+        int manhattan = Math.abs(x - targetX) + Math.abs(y - targetY);
+        if (landmarks == null) {
+            return manhattan;
+        }
+        return Math.max(manhattan, landmarks.lowerBound(index, targetX * height + targetY));
+    }
+}
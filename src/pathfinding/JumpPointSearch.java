@@ -0,0 +1,416 @@
+package pathfinding;
+
+import game.map.Map;
+import game.map.MapListener;
+import game.map.tile.Tile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Jump Point Search for 4-connected grids with uniform costs.
+ * <p>
+ * Shortest paths on such a grid can always be reordered so that a vertical stretch only turns
+ * horizontally where the tile next to the previous tile is blocked. Vertical jumps therefore run
+ * until they hit such a forced turn, horizontal jumps run until a vertical jump from the current
+ * tile would find something, and only the tiles where a jump stops end up in the open set. In open
+ * rooms this skips almost all of the tiles A* would expand.
+ * <p>
+ * With precomputation enabled (JPS+) the distance to the next jump point and to the next wall is
+ * stored for every tile and direction, so a jump is a lookup instead of a scan. The tables are
+ * built for the first query on a map and repaired when a tile changes solidity.
+ * <p>
+ * Paths have the same length as those of IndexedAStar. When the target cannot be reached the
+ * query is handed to IndexedAStar, which returns the path to the closest reachable tile.
+ */
+public class JumpPointSearch implements Pathfinding, MapListener {
+
+    /* Directions: -x, +x, -y, +y */
+    private static final int LEFT = 0, RIGHT = 1, DOWN = 2, UP = 3;
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+    /* Arrival direction of the start tile, all directions are expanded */
+    private static final int NONE = -1;
+
+    private final boolean precompute;
+    private final IndexedAStar fallback = new IndexedAStar();
+
+    private Map map;
+    private int width, height;
+
+    /* Per direction: free tiles before a wall, and distance to the next jump point or 0 */
+    private int[][] wall;
+    private int[][] jump;
+
+    /* Search state, indexed by x * height + y */
+    private OpenSet open;
+    private byte[] arrival;
+    private int targetIndex, targetX, targetY;
+
+    /* Number of jump points expanded by the last query */
+    private int expanded;
+
+    public JumpPointSearch() {
+        this(true);
+    }
+
+    /**
+     * @param precompute Whether jump distances are stored per tile (JPS+) instead of scanned per query
+     */
+    public JumpPointSearch(boolean precompute) {
+        this.precompute = precompute;
+    }
+
+    @Override
+    public List<Tile> computePath(Tile start, Tile target, Map map) {
+        List<Tile> path = new ArrayList<>();
+        computePath(start, target, map, path);
+        return path;
+    }
+
+    /**
+     * Compute the path from start to target into an existing list
+     *
+     * @param start  Tile which is the start of our search
+     * @param target Tile which is the end of our search
+     * @param map    Map which contains the space to search through
+     * @param path   List that is cleared and filled with the path, including the start tile
+     * @return Whether the target was reached, if not the path leads to the closest reachable tile
+     */
+    @Override
+    public boolean computePath(Tile start, Tile target, Map map, List<Tile> path) {
+        path.clear();
+        prepare(map);
+
+        targetX = target.getPosition().x;
+        targetY = target.getPosition().y;
+        targetIndex = targetX * height + targetY;
+        int startIndex = start.getPosition().x * height + start.getPosition().y;
+
+        expanded = 0;
+        open(startIndex, 0, -1, NONE);
+        boolean found = startIndex == targetIndex;
+        int[] g = open.g;
+
+        while (!open.isEmpty() && !found) {
+            int current = open.pop();
+            if (current == targetIndex) {
+                found = true;
+                break;
+            }
+            expanded++;
+
+            int x = current / height;
+            int y = current - x * height;
+            int from = arrival[current];
+            for (int dir = 0; dir < 4; dir++) {
+                if (from != NONE && !isSuccessor(x, y, from, dir)) {
+                    continue;
+                }
+                int distance = jumpTo(x, y, dir);
+                if (distance <= 0) {
+                    continue;
+                }
+                int next = (x + DX[dir] * distance) * height + y + DY[dir] * distance;
+                open(next, g[current] + distance, current, dir);
+            }
+        }
+
+        if (!found) {
+            // Only jump points were visited, let A* find the closest reachable tile
+            return fallback.computePath(start, target, map, path);
+        }
+
+        // Expand the straight segments between jump points, from the target back to the start
+        int index = targetIndex;
+        path.add(tileAt(index));
+        while (open.parent[index] >= 0) {
+            int previous = open.parent[index];
+            // Jump points are on the same row or column
+            boolean sameColumn = previous / height == index / height;
+            int step = Integer.signum(previous - index) * (sameColumn ? 1 : height);
+            for (int i = index + step; i != previous; i += step) {
+                path.add(tileAt(i));
+            }
+            path.add(tileAt(previous));
+            index = previous;
+        }
+        Collections.reverse(path);
+        return true;
+    }
+
+    /**
+     * @return Number of jump points expanded by the last query
+     */
+    public int getExpandedCount() {
+        return expanded;
+    }
+
+    /**
+     * Build the jump tables for a map ahead of the first query, e.g. right after it is loaded
+     */
+    public void precompute(Map map) {
+        prepare(map);
+    }
+
+    @Override
+    public void onTileChanged(Map map, Tile tile) {
+        if (map != this.map || wall == null) {
+            return;
+        }
+        int x = tile.getPosition().x;
+        int y = tile.getPosition().y;
+
+        // Vertical tables depend on the column and the columns next to it
+        boolean[] rows = new boolean[height];
+        rows[y] = true;
+        boolean[] before = new boolean[height];
+        for (int column = Math.max(0, x - 1); column <= Math.min(width - 1, x + 1); column++) {
+            for (int row = 0; row < height; row++) {
+                before[row] = hasVerticalJump(column * height + row);
+            }
+            buildColumn(column);
+            for (int row = 0; row < height; row++) {
+                rows[row] |= before[row] != hasVerticalJump(column * height + row);
+            }
+        }
+        // Horizontal tables stop at tiles with a vertical jump, so only rows where one appeared or
+        // disappeared need to be rebuilt
+        for (int row = 0; row < height; row++) {
+            if (rows[row]) {
+                buildRow(row);
+            }
+        }
+    }
+
+    /**
+     * Make sure the state fits the map and start a new generation
+     */
+    private void prepare(Map map) {
+        if (this.map != map || open == null || map.getWidth() != width || map.getHeight() != height) {
+            if (this.map != null) {
+                this.map.removeListener(this);
+            }
+            this.map = map;
+            width = map.getWidth();
+            height = map.getHeight();
+            int size = width * height;
+            open = new OpenSet(size);
+            arrival = new byte[size];
+
+            wall = null;
+            jump = null;
+            if (precompute) {
+                wall = new int[4][size];
+                jump = new int[4][size];
+                for (int column = 0; column < width; column++) {
+                    buildColumn(column);
+                }
+                for (int row = 0; row < height; row++) {
+                    buildRow(row);
+                }
+                map.addListener(this);
+            }
+        }
+        open.reset();
+    }
+
+    /**
+     * Directions a jump point expands into, depending on how it was reached
+     */
+    private boolean isSuccessor(int x, int y, int from, int dir) {
+        if (dir == from) {
+            return true;
+        }
+        if (from == LEFT || from == RIGHT) {
+            // Horizontal stretches may turn vertically anywhere
+            return dir == DOWN || dir == UP;
+        }
+        if (dir == DOWN || dir == UP) {
+            return false;
+        }
+        // Vertical stretches only turn where the tile beside the previous tile is blocked, or into the target
+        int side = x + DX[dir];
+        if (side == targetX && y == targetY) {
+            return true;
+        }
+        return isWalkable(side, y) && !isWalkable(side, y - DY[from]);
+    }
+
+    /**
+     * Jump from a tile in a direction
+     *
+     * @return Distance to the tile where the jump stops, 0 if it runs into a wall
+     */
+    private int jumpTo(int x, int y, int dir) {
+        int index = x * height + y;
+        int walls = wallDistance(index, dir);
+        int best = jumpDistance(index, dir);
+        if (best == 0) {
+            best = Integer.MAX_VALUE;
+        }
+
+        if (dir == LEFT || dir == RIGHT) {
+            int k = (targetX - x) * DX[dir];
+            if (k > 0 && k <= walls + 1) {
+                if (targetY == y) {
+                    // The target is on this row, it may be the solid tile that ends the jump
+                    best = Math.min(best, k);
+                } else if (k <= walls) {
+                    // Stop above or below the target if a vertical jump from there reaches it
+                    int column = targetX * height + y;
+                    int vertical = targetY > y ? UP : DOWN;
+                    if (Math.abs(targetY - y) <= wallDistance(column, vertical) + 1) {
+                        best = Math.min(best, k);
+                    }
+                }
+            }
+            if (targetY != y) {
+                // Also stop in the columns next to the target, a vertical jump from there may turn into it
+                int vertical = targetY > y ? UP : DOWN;
+                for (int side = -1; side <= 1; side += 2) {
+                    int c = (targetX + side - x) * DX[dir];
+                    if (c > 0 && c <= walls && c < best
+                            && Math.abs(targetY - y) <= wallDistance((targetX + side) * height + y, vertical)) {
+                        best = c;
+                    }
+                }
+            }
+        } else if (targetX == x) {
+            int k = (targetY - y) * DY[dir];
+            if (k > 0 && k <= walls + 1) {
+                best = Math.min(best, k);
+            }
+        } else if (Math.abs(targetX - x) == 1) {
+            // The target is solid or open, either way a stretch may have to turn into it from the next column
+            int k = (targetY - y) * DY[dir];
+            if (k > 0 && k <= walls) {
+                best = Math.min(best, k);
+            }
+        }
+
+        return best == Integer.MAX_VALUE ? 0 : best;
+    }
+
+    private int wallDistance(int index, int dir) {
+        if (wall != null) {
+            return wall[dir][index];
+        }
+        int x = index / height + DX[dir];
+        int y = index % height + DY[dir];
+        int distance = 0;
+        while (isWalkable(x, y)) {
+            distance++;
+            x += DX[dir];
+            y += DY[dir];
+        }
+        return distance;
+    }
+
+    private int jumpDistance(int index, int dir) {
+        if (jump != null) {
+            return jump[dir][index];
+        }
+        int x = index / height;
+        int y = index % height;
+        for (int distance = 1; ; distance++) {
+            x += DX[dir];
+            y += DY[dir];
+            if (!isWalkable(x, y)) {
+                return 0;
+            }
+            if (dir == LEFT || dir == RIGHT ? hasVerticalJump(x * height + y) : isForced(x, y, dir)) {
+                return distance;
+            }
+        }
+    }
+
+    /**
+     * Whether a vertical stretch is forced to be able to turn at this tile
+     */
+    private boolean isForced(int x, int y, int dir) {
+        return (isWalkable(x - 1, y) && !isWalkable(x - 1, y - DY[dir]))
+                || (isWalkable(x + 1, y) && !isWalkable(x + 1, y - DY[dir]));
+    }
+
+    private boolean hasVerticalJump(int index) {
+        return jumpDistance(index, DOWN) > 0 || jumpDistance(index, UP) > 0;
+    }
+
+    /**
+     * Fill the vertical tables of a column, from the far end back so every tile reuses the next one
+     */
+    private void buildColumn(int x) {
+        for (int dir = DOWN; dir <= UP; dir++) {
+            int first = dir == UP ? height - 1 : 0;
+            for (int y = first; y >= 0 && y < height; y -= DY[dir]) {
+                int index = x * height + y;
+                int ny = y + DY[dir];
+                if (!isWalkable(x, ny)) {
+                    wall[dir][index] = 0;
+                    jump[dir][index] = 0;
+                    continue;
+                }
+                int next = x * height + ny;
+                wall[dir][index] = wall[dir][next] + 1;
+                if (isForced(x, ny, dir)) {
+                    jump[dir][index] = 1;
+                } else {
+                    jump[dir][index] = jump[dir][next] > 0 ? jump[dir][next] + 1 : 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fill the horizontal tables of a row, requires the vertical tables to be up to date
+     */
+    private void buildRow(int y) {
+        for (int dir = LEFT; dir <= RIGHT; dir++) {
+            int first = dir == RIGHT ? width - 1 : 0;
+            for (int x = first; x >= 0 && x < width; x -= DX[dir]) {
+                int index = x * height + y;
+                int nx = x + DX[dir];
+                if (!isWalkable(nx, y)) {
+                    wall[dir][index] = 0;
+                    jump[dir][index] = 0;
+                    continue;
+                }
+                int next = nx * height + y;
+                wall[dir][index] = wall[dir][next] + 1;
+                if (hasVerticalJump(next)) {
+                    jump[dir][index] = 1;
+                } else {
+                    jump[dir][index] = jump[dir][next] > 0 ? jump[dir][next] + 1 : 0;
+                }
+            }
+        }
+    }
+
+    private boolean isWalkable(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+        return map.isWalkable(x * height + y);
+    }
+
+    private Tile tileAt(int index) {
+        return map.getTile(index / height, index % height);
+    }
+
+    private int heuristic(int index) {
+        int x = index / height;
+        int y = index - x * height;
+        return Math.abs(x - targetX) + Math.abs(y - targetY);
+    }
+
+    /**
+     * Open a jump point or update it when it was reached along a shorter path
+     */
+    private void open(int index, int cost, int from, int dir) {
+        if (open.relax(index, cost, heuristic(index), from)) {
+            arrival[index] = (byte) dir;
+        }
+    }
+}
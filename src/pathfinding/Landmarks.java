@@ -0,0 +1,236 @@
+package pathfinding;
+
+import game.map.Map;
+import game.map.MapListener;
+import game.map.tile.Tile;
+
+import java.util.Arrays;
+
+/**
+ * Landmark lower bounds for A* (ALT).
+ * <p>
+ * A few landmark tiles are picked far apart from each other and the exact walking distance from
+ * every landmark to every tile is stored. By the triangle inequality the walking distance between
+ * two tiles is at least the difference of their distances to any landmark, which is much closer
+ * to the real distance than Manhattan distance in levels full of walls and corridors.
+ * <p>
+ * Landmarks are picked by farthest point selection: each next landmark is the tile that is
+ * furthest from all landmarks picked so far. The tables are built again on the first query after a
+ * tile became walkable, until then a stale table could overestimate. A tile that becomes solid or
+ * disappears only makes paths longer, so the old distances stay lower bounds and nothing is
+ * rebuilt. A rebuild keeps the landmarks that can still be walked on, new landmarks are only picked
+ * to replace the ones that were lost.
+ * <p>
+ * Copies of the map for worker threads share the tables, see Map.copySolidity. Only the thread
+ * that owns the map rebuilds them, into new arrays that are published all at once through a
+ * volatile field, so readers on other threads see either the old or the new tables, never a table
+ * that is half filled. Published tables are never written again.
+ */
+public class Landmarks implements MapListener {
+
+    public static final int DEFAULT_COUNT = 8;
+
+    private static final short UNREACHABLE = -1;
+
+    private final Map map;
+    private final int width, height;
+    private final int count;
+
+    /* Landmarks and their distances, replaced as a whole by update */
+    private volatile Tables tables = new Tables(new int[0], new short[0][]);
+    /* Bit per tile, set when the tile was walkable when the tables were last built */
+    private final long[] built;
+    private int[] queue;
+    private boolean dirty = true;
+
+    public Landmarks(Map map) {
+        this(map, DEFAULT_COUNT);
+    }
+
+    public Landmarks(Map map, int count) {
+        this.map = map;
+        this.count = count;
+        width = map.getWidth();
+        height = map.getHeight();
+        queue = new int[width * height];
+        built = new long[(width * height + 63) >> 6];
+        map.addListener(this);
+        update();
+    }
+
+    /**
+     * Build the tables again if a tile became walkable since they were last built
+     */
+    public void update() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+
+        int size = width * height;
+        Arrays.fill(built, 0);
+        for (int i = 0; i < size; i++) {
+            if (isWalkable(i)) {
+                built[i >> 6] |= 1L << i;
+            }
+        }
+        // Smallest distance from every tile to the landmarks picked so far
+        int[] nearest = new int[size];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        short[][] distances = new short[count][];
+        int[] picked = new int[count];
+        int found = 0;
+
+        int[] previous = tables.landmarks;
+        for (int i = 0; i < previous.length && found < count; i++) {
+            if (isWalkable(previous[i])) {
+                short[] table = new short[size];
+                search(previous[i], table);
+                addLandmark(previous[i], table, distances, picked, found++, nearest);
+            }
+        }
+
+        int next = -1;
+        if (found > 0) {
+            next = furthest(null, nearest);
+        } else {
+            int seed = -1;
+            for (int i = 0; i < size && seed < 0; i++) {
+                if (isWalkable(i)) {
+                    seed = i;
+                }
+            }
+            if (seed >= 0) {
+                // The first landmark is the tile furthest from an arbitrary tile, which lies on the edge
+                short[] fromSeed = new short[size];
+                search(seed, fromSeed);
+                next = furthest(fromSeed, null);
+                if (next < 0) {
+                    next = seed;
+                }
+            }
+        }
+        while (next >= 0 && found < count) {
+            short[] table = new short[size];
+            search(next, table);
+            addLandmark(next, table, distances, picked, found++, nearest);
+            next = furthest(null, nearest);
+        }
+        picked = Arrays.copyOf(picked, found);
+        tables = new Tables(Arrays.equals(picked, previous) ? previous : picked, Arrays.copyOf(distances, found));
+    }
+
+    private void addLandmark(int landmark, short[] table, short[][] distances, int[] picked, int slot, int[] nearest) {
+        distances[slot] = table;
+        picked[slot] = landmark;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != UNREACHABLE) {
+                nearest[i] = Math.min(nearest[i], table[i]);
+            }
+        }
+    }
+
+    /**
+     * @return A lower bound of the walking distance between two tiles, 0 if no landmark reaches both
+     */
+    public int lowerBound(int from, int to) {
+        int bound = 0;
+        for (short[] table : tables.distances) {
+            int a = table[from];
+            int b = table[to];
+            if (a != UNREACHABLE && b != UNREACHABLE) {
+                bound = Math.max(bound, Math.abs(a - b));
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * @return Tile indices of the landmarks
+     */
+    public int[] getLandmarks() {
+        return tables.landmarks;
+    }
+
+    /**
+     * @return Whether the tables were built for the given map, copies of it only share them
+     */
+    public boolean isBuiltFor(Map map) {
+        return map == this.map;
+    }
+
+    @Override
+    public void onTileChanged(Map map, Tile tile) {
+        int index = tile.getPosition().x * height + tile.getPosition().y;
+        // Solid or missing tiles only make paths longer, the tables stay lower bounds
+        if (isWalkable(index) && (built[index >> 6] & 1L << index) == 0) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * @return The walkable tile with the largest distance, either from the table or the given
+     * smallest distances, -1 if there is none or every tile is a landmark
+     */
+    private int furthest(short[] table, int[] nearest) {
+        int best = -1;
+        long bestDistance = 0;
+        for (int i = 0; i < width * height; i++) {
+            if (!isWalkable(i)) {
+                continue;
+            }
+            long distance = table != null ? table[i] : nearest[i];
+            if (distance > bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Breadth first search over the walkable tiles
+     */
+    private void search(int origin, short[] table) {
+        Arrays.fill(table, UNREACHABLE);
+        table[origin] = 0;
+        int head = 0, tail = 0;
+        queue[tail++] = origin;
+        while (head < tail) {
+            int current = queue[head++];
+            int x = current / height;
+            int y = current - x * height;
+            short next = (short) Math.min(table[current] + 1, Short.MAX_VALUE);
+            if (x > 0) tail = visit(current - height, next, table, tail);
+            if (x < width - 1) tail = visit(current + height, next, table, tail);
+            if (y > 0) tail = visit(current - 1, next, table, tail);
+            if (y < height - 1) tail = visit(current + 1, next, table, tail);
+        }
+    }
+
+    private int visit(int index, short distance, short[] table, int tail) {
+        if (table[index] != UNREACHABLE || !isWalkable(index)) {
+            return tail;
+        }
+        table[index] = distance;
+        queue[tail] = index;
+        return tail + 1;
+    }
+
+    private boolean isWalkable(int index) {
+        return map.isWalkable(index);
+    }
+
+    /**
+     * Landmarks together with their distance tables, so both are published at once
+     */
+    private static class Tables {
+        private final int[] landmarks;
+        private final short[][] distances;
+
+        private Tables(int[] landmarks, short[][] distances) {
+            this.landmarks = landmarks;
+            this.distances = distances;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * Open set of a grid search over tile indices.
+ * <p>
+ * A binary heap of tile indices ordered by f, ties going to the tile furthest along its path. The
+ * heap knows where every tile is stored, so a shorter path to an open tile moves it up in place.
+ * Scores and parents are stored in arrays that are reused between searches: every search starts
+ * a new generation and a tile only counts as seen when its stamp matches the current one.
+ */
+class OpenSet {
+
+    /* Cost of the best known path to a tile */
+    final int[] g;
+    /* g + heuristic */
+    final int[] f;
+    /* Previous tile on the best known path, -1 for the start */
+    final int[] parent;
+
+    private final int[] heapIndex;
+    private final int[] seen;
+    private final int[] heap;
+    private int size;
+    private int generation;
+
+    OpenSet(int capacity) {
+        g = new int[capacity];
+        f = new int[capacity];
+        parent = new int[capacity];
+        heapIndex = new int[capacity];
+        seen = new int[capacity];
+        heap = new int[capacity];
+    }
+
+    int capacity() {
+        return heap.length;
+    }
+
+    /**
+     * Forget all tiles, without touching the arrays
+     */
+    void reset() {
+        generation++;
+        if (generation == 0) {
+            // Wrapped around, stamps of old generations could match again
+            Arrays.fill(seen, 0);
+            generation = 1;
+        }
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Whether the tile was opened in this search, it may be closed already
+     */
+    boolean isSeen(int index) {
+        return seen[index] == generation;
+    }
+
+    /**
+     * @return Whether the tile is in the heap
+     */
+    boolean isOpen(int index) {
+        return seen[index] == generation && heapIndex[index] >= 0;
+    }
+
+    void open(int index, int cost, int h, int from) {
+        seen[index] = generation;
+        g[index] = cost;
+        f[index] = cost + h;
+        parent[index] = from;
+        heap[size] = index;
+        heapIndex[index] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Open a tile or lower its cost if the new path is shorter
+     *
+     * @return Whether the tile was opened or updated
+     */
+    boolean relax(int index, int cost, int h, int from) {
+        if (seen[index] != generation) {
+            open(index, cost, h, from);
+            return true;
+        }
+        if (heapIndex[index] >= 0 && cost < g[index]) {
+            f[index] -= g[index] - cost;
+            g[index] = cost;
+            parent[index] = from;
+            siftUp(heapIndex[index]);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove the tile with the lowest f, it counts as closed from now on
+     */
+    int pop() {
+        int top = heap[0];
+        heapIndex[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            heapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private boolean before(int a, int b) {
+        return f[a] < f[b] || (f[a] == f[b] && g[a] > g[b]);
+    }
+
+    private void siftUp(int position) {
+        int index = heap[position];
+        while (position > 0) {
+            int up = (position - 1) >> 1;
+            if (!before(index, heap[up])) {
+                break;
+            }
+            heap[position] = heap[up];
+            heapIndex[heap[position]] = position;
+            position = up;
+        }
+        heap[position] = index;
+        heapIndex[index] = position;
+    }
+
+    private void siftDown(int position) {
+        int index = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], index)) {
+                break;
+            }
+            heap[position] = heap[child];
+            heapIndex[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = index;
+        heapIndex[index] = position;
+    }
+}
@@ -0,0 +1,87 @@
+package pathfinding;
+
+import game.map.tile.Tile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Handle of a path query submitted to a PathfindingService.
+ * <p>
+ * The handle is only touched by the game loop thread: the service fills it in during its update,
+ * so a mob can simply poll isDone every tick or pass a callback when submitting.
+ */
+public class PathRequest {
+
+    private final Tile start, target;
+    private final Consumer<PathRequest> callback;
+    private final List<Tile> path = new ArrayList<>();
+    private boolean found;
+    private RuntimeException error;
+    private boolean done;
+    private boolean cancelled;
+
+    PathRequest(Tile start, Tile target, Consumer<PathRequest> callback) {
+        this.start = start;
+        this.target = target;
+        this.callback = callback;
+    }
+
+    public Tile getStart() {
+        return start;
+    }
+
+    public Tile getTarget() {
+        return target;
+    }
+
+    /**
+     * @return The path from start to target, including the start tile, empty until the request is done
+     */
+    public List<Tile> getPath() {
+        return path;
+    }
+
+    /**
+     * @return Whether the target was reached, if not the path leads as close as possible
+     */
+    public boolean isFound() {
+        return found;
+    }
+
+    /**
+     * @return The exception the search failed with, null if it did not fail. A failed request is
+     * done with an empty path.
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Drop the request, its result will not be delivered. The search itself is only skipped if no
+     * other request is waiting for the same path.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    void complete(List<Tile> path, boolean found, RuntimeException error) {
+        this.path.clear();
+        this.path.addAll(path);
+        this.found = found;
+        this.error = error;
+        done = true;
+        if (callback != null) {
+            callback.accept(this);
+        }
+    }
+}
@@ -14,4 +14,19 @@ public interface Pathfinding {
      * @return List<Tile> containing the shortest computed path from start to target
      */
     List<Tile> computePath(Tile start, Tile target, Map map);
+
+    /**
+     * Method that computes the path into an existing list, implementations may override this to avoid
+     * allocating a new list for every path.
+     * @param start Tile which is the start of our search
+     * @param target Tile which is the end of our search
+     * @param map Map which contains the space to search through
+     * @param path List that is cleared and filled with the path, including the start tile
+     * @return whether the target was reached, if not the path leads as close as possible
+     */
+    default boolean computePath(Tile start, Tile target, Map map, List<Tile> path) {
+        path.clear();
+        path.addAll(computePath(start, target, map));
+        return !path.isEmpty() && path.get(path.size() - 1) == target;
+    }
 }
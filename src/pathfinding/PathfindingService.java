@@ -0,0 +1,251 @@
+package pathfinding;
+
+import game.map.Map;
+import game.map.MapListener;
+import game.map.tile.Tile;
+import org.joml.Vector2i;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs path queries on worker threads so a long search does not stall the frame.
+ * <p>
+ * Mobs submit a request and get a PathRequest handle back. Once per tick the game loop calls
+ * update, which delivers the results that finished since the last tick, drops searches that every
+ * requester cancelled and hands at most maxSearchesPerTick new searches to the workers. Requests
+ * for the same start and target share a single search.
+ * <p>
+ * The workers never touch the live map: they search a copy that only holds the solidity of every
+ * tile, see Map.copySolidity. The copy is taken again on the first update after a tile changed,
+ * searches that already run keep the copy they started with. Every worker thread has its own
+ * pathfinder made by the factory, the resulting paths are translated back to the tiles of the live
+ * map. A search that throws is delivered as an empty path together with the exception, see
+ * PathRequest.getError.
+ */
+public class PathfindingService implements MapListener {
+
+    private final Map map;
+    private final int height;
+    private final ExecutorService workers;
+    private final ThreadLocal<Pathfinding> pathfinders;
+    private final ThreadLocal<List<Tile>> workerPaths = ThreadLocal.withInitial(ArrayList::new);
+
+    /* Searches that were submitted but not handed to a worker yet, oldest first */
+    private final ArrayDeque<Search> waiting = new ArrayDeque<>();
+    /* Searches that are waiting or running by start and target, so requests can share them */
+    private final HashMap<Long, Search> searches = new HashMap<>();
+    /* Searches that completed on a worker and wait to be delivered by the game loop */
+    private final ConcurrentLinkedQueue<Search> finished = new ConcurrentLinkedQueue<>();
+    private final List<Tile> path = new ArrayList<>();
+
+    /* Solidity copy of the map that new searches run on */
+    private Map snapshot;
+    /* Tiles of the copies, created on the first copy */
+    private Tile[][] cells;
+    private boolean dirty = true;
+    private int maxSearchesPerTick = 8;
+
+    /**
+     * @param map     Map to find paths on
+     * @param threads Number of worker threads
+     * @param factory Creates the pathfinder of every worker thread
+     */
+    public PathfindingService(Map map, int threads, Supplier<Pathfinding> factory) {
+        this.map = map;
+        height = map.getHeight();
+        pathfinders = ThreadLocal.withInitial(factory);
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "PATHFINDING_WORKER");
+            thread.setDaemon(true);
+            return thread;
+        });
+        map.addListener(this);
+    }
+
+    public PathRequest submit(Tile start, Tile target) {
+        return submit(start, target, null);
+    }
+
+    /**
+     * Queue a path query, the result is delivered during one of the next updates
+     *
+     * @param start    Tile to start from
+     * @param target   Tile to find a path to
+     * @param callback Called by update with the finished request, may be null
+     * @return Handle to poll or cancel the request
+     */
+    public PathRequest submit(Tile start, Tile target, Consumer<PathRequest> callback) {
+        PathRequest request = new PathRequest(start, target, callback);
+        int from = index(start);
+        int to = index(target);
+        long key = (long) from << 32 | to;
+
+        Search search = searches.get(key);
+        // A search that already runs is only shared if the map did not change since it started
+        if (search == null || (search.snapshot != null && (dirty || search.snapshot != snapshot))) {
+            search = new Search(key, from, to);
+            searches.put(key, search);
+            waiting.add(search);
+        }
+        search.requests.add(request);
+        return request;
+    }
+
+    /**
+     * Deliver finished paths and start new searches, called once at the start of every tick
+     */
+    public void update() {
+        Search search;
+        while ((search = finished.poll()) != null) {
+            if (searches.get(search.key) == search) {
+                searches.remove(search.key);
+            }
+            path.clear();
+            for (int index : search.path) {
+                path.add(map.getTile(index / height, index % height));
+            }
+            for (PathRequest request : search.requests) {
+                if (!request.isCancelled()) {
+                    request.complete(path, search.found, search.error);
+                }
+            }
+        }
+
+        Iterator<Search> iterator = searches.values().iterator();
+        while (iterator.hasNext()) {
+            search = iterator.next();
+            if (search.isAbandoned()) {
+                search.cancelled = true;
+                iterator.remove();
+            }
+        }
+
+        if (dirty) {
+            if (cells == null) {
+                cells = createCells(map.getWidth(), map.getHeight());
+            }
+            snapshot = map.copySolidity(cells);
+            dirty = false;
+        }
+
+        int started = 0;
+        while (started < maxSearchesPerTick && !waiting.isEmpty()) {
+            Search next = waiting.poll();
+            if (next.cancelled) {
+                continue;
+            }
+            next.snapshot = snapshot;
+            workers.execute(() -> run(next));
+            started++;
+        }
+    }
+
+    /**
+     * Stop the workers, requests that did not finish yet are never delivered
+     */
+    public void terminate() {
+        workers.shutdownNow();
+        map.removeListener(this);
+        waiting.clear();
+        searches.clear();
+        finished.clear();
+    }
+
+    public void setMaxSearchesPerTick(int maxSearchesPerTick) {
+        this.maxSearchesPerTick = maxSearchesPerTick;
+    }
+
+    public int getWaitingCount() {
+        return waiting.size();
+    }
+
+    @Override
+    public void onTileChanged(Map map, Tile tile) {
+        dirty = true;
+    }
+
+    private int index(Tile tile) {
+        return tile.getPosition().x * height + tile.getPosition().y;
+    }
+
+    /**
+     * Runs on a worker thread
+     */
+    private void run(Search search) {
+        if (search.cancelled) {
+            return;
+        }
+        Map map = search.snapshot;
+        List<Tile> path = workerPaths.get();
+        try {
+            Tile start = map.getTile(search.start / height, search.start % height);
+            Tile target = map.getTile(search.target / height, search.target % height);
+            search.found = pathfinders.get().computePath(start, target, map, path);
+            search.path = new int[path.size()];
+            for (int i = 0; i < path.size(); i++) {
+                search.path[i] = index(path.get(i));
+            }
+        } catch (RuntimeException e) {
+            // Deliver an empty path with the error, otherwise the requesters would wait forever
+            search.error = e;
+            search.found = false;
+            search.path = new int[0];
+        }
+        finished.add(search);
+    }
+
+    /**
+     * Tiles that only carry their position, shared by all copies of the map
+     */
+    private static Tile[][] createCells(int width, int height) {
+        Tile[][] cells = new Tile[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                cells[x][y] = new Tile(new Vector2i(x, y), null);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * A single search, shared by all requests with the same start and target
+     */
+    private static class Search {
+
+        final long key;
+        final int start, target;
+        final List<PathRequest> requests = new ArrayList<>();
+        /* Set by the game loop, read by the worker */
+        volatile boolean cancelled;
+        /* Copy of the map the search runs on, null while it is waiting */
+        Map snapshot;
+        /* Result, written by the worker before it is handed back through the finished queue */
+        int[] path;
+        boolean found;
+        RuntimeException error;
+
+        Search(long key, int start, int target) {
+            this.key = key;
+            this.start = start;
+            this.target = target;
+        }
+
+        boolean isAbandoned() {
+            for (PathRequest request : requests) {
+                if (!request.isCancelled()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}